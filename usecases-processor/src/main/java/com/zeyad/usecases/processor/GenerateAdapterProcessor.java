@@ -0,0 +1,584 @@
+package com.zeyad.usecases.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a streaming Gson {@code TypeAdapter} named {@code <Model>_JsonAdapter} for every class
+ * annotated with {@code com.zeyad.usecases.adapters.GenerateAdapter}. The adapters read and write
+ * the properties through their accessors, so models keep working once they are obfuscated.
+ */
+public final class GenerateAdapterProcessor extends AbstractProcessor {
+
+    static final String GENERATE_ADAPTER = "com.zeyad.usecases.adapters.GenerateAdapter";
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+    private static final String INTERN = "com.zeyad.usecases.adapters.Intern";
+    private static final String INTERNED_STRINGS = "com.zeyad.usecases.adapters.InternedStrings";
+    private static final String JSON_SYNTAX_EXCEPTION = "com.google.gson.JsonSyntaxException";
+    private static final String SUFFIX = "_JsonAdapter";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GENERATE_ADAPTER);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GenerateAdapter only applies to classes");
+                    continue;
+                }
+                TypeElement model = (TypeElement) element;
+                if (isValid(model)) {
+                    generate(model);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isValid(TypeElement model) {
+        Set<Modifier> modifiers = model.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+            error(model, "@GenerateAdapter models must be concrete and not private");
+            return false;
+        }
+        if (model.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            error(model, "@GenerateAdapter models can not be inner classes");
+            return false;
+        }
+        if (!model.getTypeParameters().isEmpty()) {
+            error(model, "@GenerateAdapter models can not be generic");
+            return false;
+        }
+        List<ExecutableElement> constructors =
+                ElementFilter.constructorsIn(model.getEnclosedElements());
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty()
+                    && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(model, "@GenerateAdapter models need a non-private no-arg constructor");
+        return false;
+    }
+
+    private void generate(TypeElement model) {
+        List<ModelField> fields = collectFields(model);
+        if (fields == null) {
+            return;
+        }
+        String packageName = packageOf(model).getQualifiedName().toString();
+        String adapterName = flatNameOf(model) + SUFFIX;
+        String modelName = model.getQualifiedName().toString();
+        StringBuilder code = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            code.append("package ").append(packageName).append(";\n\n");
+        }
+        code.append("import com.google.gson.Gson;\n")
+                .append("import com.google.gson.TypeAdapter;\n")
+                .append("import com.google.gson.reflect.TypeToken;\n")
+                .append("import com.google.gson.stream.JsonReader;\n")
+                .append("import com.google.gson.stream.JsonToken;\n")
+                .append("import com.google.gson.stream.JsonWriter;\n")
+                .append("import java.io.IOException;\n\n")
+                .append("/**\n * Generated by the usecases-processor for {@link ").append(modelName)
+                .append("}, do not edit.\n */\n")
+                .append("public final class ").append(adapterName).append(" extends TypeAdapter<")
+                .append(modelName).append("> {\n")
+                .append("    private final Gson gson;\n");
+        for (ModelField field : fields) {
+            if (field.kind == Kind.DELEGATE) {
+                code.append("    private TypeAdapter<").append(field.type).append("> ")
+                        .append(field.adapterField()).append(";\n");
+            }
+        }
+        code.append("\n    public ").append(adapterName).append("(Gson gson) {\n")
+                .append("        this.gson = gson;\n")
+                .append("    }\n\n");
+        writeMethod(code, modelName, fields);
+        readMethod(code, modelName, fields);
+        boolean readsChar = false;
+        for (ModelField field : fields) {
+            if (field.kind == Kind.DELEGATE) {
+                delegateMethod(code, field);
+            }
+            readsChar |= field.kind == Kind.CHAR;
+        }
+        if (readsChar) {
+            charMethod(code);
+        }
+        code.append("}\n");
+        String qualifiedAdapterName =
+                packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        try {
+            JavaFileObject file =
+                    processingEnv.getFiler().createSourceFile(qualifiedAdapterName, model);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(code.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(model, "Could not write " + qualifiedAdapterName + ": " + e.getMessage());
+        }
+    }
+
+    private void writeMethod(StringBuilder code, String modelName, List<ModelField> fields) {
+        code.append("    @Override\n")
+                .append("    public void write(JsonWriter out, ").append(modelName)
+                .append(" value) throws IOException {\n")
+                .append("        if (value == null) {\n")
+                .append("            out.nullValue();\n")
+                .append("            return;\n")
+                .append("        }\n")
+                .append("        out.beginObject();\n");
+        for (ModelField field : fields) {
+            code.append("        out.name(\"").append(escape(field.jsonName)).append("\");\n");
+            String read = field.read("value");
+            switch (field.kind) {
+                case CHAR:
+                    code.append("        out.value(String.valueOf(").append(read).append("));\n");
+                    break;
+                case DELEGATE:
+                    code.append("        ").append(field.adapterMethod()).append("().write(out, ")
+                            .append(read).append(");\n");
+                    break;
+                default:
+                    code.append("        out.value(").append(read).append(");\n");
+                    break;
+            }
+        }
+        code.append("        out.endObject();\n")
+                .append("    }\n\n");
+    }
+
+    private void readMethod(StringBuilder code, String modelName, List<ModelField> fields) {
+        code.append("    @Override\n")
+                .append("    public ").append(modelName)
+                .append(" read(JsonReader in) throws IOException {\n")
+                .append("        if (in.peek() == JsonToken.NULL) {\n")
+                .append("            in.nextNull();\n")
+                .append("            return null;\n")
+                .append("        }\n")
+                .append("        ").append(modelName).append(" value = new ").append(modelName)
+                .append("();\n")
+                .append("        in.beginObject();\n")
+                .append("        while (in.hasNext()) {\n")
+                .append("            switch (in.nextName()) {\n");
+        for (ModelField field : fields) {
+            for (String name : field.names()) {
+                code.append("                case \"").append(escape(name)).append("\":\n");
+            }
+            if (field.kind.primitive) {
+                code.append("                    if (in.peek() == JsonToken.NULL) {\n")
+                        .append("                        in.nextNull();\n")
+                        .append("                    } else {\n")
+                        .append("                        ")
+                        .append(field.write("value", field.kind.read)).append(";\n")
+                        .append("                    }\n");
+            } else if (field.kind == Kind.DELEGATE) {
+                code.append("                    ").append(field.write("value",
+                        field.adapterMethod() + "().read(in)")).append(";\n");
+            } else {
+                code.append("                    if (in.peek() == JsonToken.NULL) {\n")
+                        .append("                        in.nextNull();\n")
+                        .append("                        ").append(field.write("value", "null"))
+                        .append(";\n")
+                        .append("                    } else {\n")
+                        .append("                        ")
+                        .append(field.write("value", readOf(field))).append(";\n")
+                        .append("                    }\n");
+            }
+            code.append("                    break;\n");
+        }
+        code.append("                default:\n")
+                .append("                    in.skipValue();\n")
+                .append("                    break;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        in.endObject();\n")
+                .append("        return value;\n")
+                .append("    }\n");
+    }
+
+    /**
+     * @return the expression reading a non-primitive field, strings go through the string pool of
+     * the library.
+     */
+    private static String readOf(ModelField field) {
+        if (field.kind == Kind.STRING) {
+            return INTERNED_STRINGS + ".read(in, " + field.intern + ")";
+        }
+        return field.kind.read;
+    }
+
+    private void delegateMethod(StringBuilder code, ModelField field) {
+        code.append("\n    private TypeAdapter<").append(field.type).append("> ")
+                .append(field.adapterMethod()).append("() {\n")
+                .append("        TypeAdapter<").append(field.type).append("> adapter = ")
+                .append(field.adapterField()).append(";\n")
+                .append("        if (adapter == null) {\n")
+                .append("            adapter = gson.getAdapter(new TypeToken<").append(field.type)
+                .append(">() {\n")
+                .append("            });\n")
+                .append("            ").append(field.adapterField()).append(" = adapter;\n")
+                .append("        }\n")
+                .append("        return adapter;\n")
+                .append("    }\n");
+    }
+
+    /**
+     * Reads a char the way Gson does, failing on a string that is not exactly one character.
+     */
+    private void charMethod(StringBuilder code) {
+        code.append("\n    private static char readChar(JsonReader in) throws IOException {\n")
+                .append("        String value = in.nextString();\n")
+                .append("        if (value.length() != 1) {\n")
+                .append("            throw new ").append(JSON_SYNTAX_EXCEPTION)
+                .append("(\"Expecting character, got: \" + value);\n")
+                .append("        }\n")
+                .append("        return value.charAt(0);\n")
+                .append("    }\n");
+    }
+
+    /**
+     * @return the serialized fields of the model and its super classes, or null if one of them
+     * can not be accessed.
+     */
+    private List<ModelField> collectFields(TypeElement model) {
+        Map<String, ModelField> fields = new LinkedHashMap<>();
+        Set<String> names = new HashSet<>();
+        TypeElement type = model;
+        boolean valid = true;
+        while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (VariableElement variable : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                Set<Modifier> modifiers = variable.getModifiers();
+                String fieldName = variable.getSimpleName().toString();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                        || fields.containsKey(fieldName)) {
+                    continue;
+                }
+                ModelField field = toModelField(model, type, variable);
+                if (field == null) {
+                    valid = false;
+                    continue;
+                }
+                for (String name : field.names()) {
+                    if (!names.add(name)) {
+                        error(variable, "Duplicate JSON name \"" + name + "\" in "
+                                + model.getQualifiedName());
+                        valid = false;
+                    }
+                }
+                fields.put(fieldName, field);
+            }
+            TypeMirror superclass = type.getSuperclass();
+            type = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return valid ? new ArrayList<>(fields.values()) : null;
+    }
+
+    private ModelField toModelField(TypeElement model, TypeElement owner,
+                                    VariableElement variable) {
+        String fieldName = variable.getSimpleName().toString();
+        TypeMirror type = variable.asType();
+        Set<Modifier> modifiers = variable.getModifiers();
+        boolean samePackage = packageOf(owner).equals(packageOf(model));
+        boolean visible = modifiers.contains(Modifier.PUBLIC)
+                || samePackage && !modifiers.contains(Modifier.PRIVATE);
+        String getter = null;
+        String setter = null;
+        if (!visible || modifiers.contains(Modifier.FINAL)) {
+            setter = findSetter(owner, fieldName, type);
+            if (setter == null) {
+                error(variable, fieldName
+                        + " needs a setter or to be a non-private, non-final field");
+                return null;
+            }
+        }
+        if (!visible) {
+            getter = findGetter(owner, fieldName, type);
+            if (getter == null) {
+                error(variable, fieldName + " needs a getter or to be a non-private field");
+                return null;
+            }
+        }
+        String[] serializedName = serializedNameOf(variable);
+        String jsonName = serializedName != null ? serializedName[0] : fieldName;
+        List<String> alternates = new ArrayList<>();
+        if (serializedName != null) {
+            for (int i = 1; i < serializedName.length; i++) {
+                alternates.add(serializedName[i]);
+            }
+        }
+        Kind kind = kindOf(type);
+        boolean intern = hasAnnotation(variable, INTERN);
+        if (intern && kind != Kind.STRING) {
+            error(variable, "@Intern only applies to String fields");
+            return null;
+        }
+        return new ModelField(fieldName, type.toString(), kind, jsonName, alternates, getter,
+                setter, intern);
+    }
+
+    private String findGetter(TypeElement owner, String fieldName, TypeMirror type) {
+        List<String> candidates = new ArrayList<>();
+        candidates.add("get" + capitalize(fieldName));
+        if (type.getKind() == TypeKind.BOOLEAN) {
+            candidates.add(fieldName.startsWith("is") ? fieldName : "is" + capitalize(fieldName));
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+            if (candidates.contains(method.getSimpleName().toString())
+                    && method.getParameters().isEmpty()
+                    && isAccessible(method)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), type)) {
+                return method.getSimpleName().toString();
+            }
+        }
+        return null;
+    }
+
+    private String findSetter(TypeElement owner, String fieldName, TypeMirror type) {
+        List<String> candidates = new ArrayList<>();
+        candidates.add("set" + capitalize(fieldName));
+        if (fieldName.startsWith("is") && fieldName.length() > 2
+                && Character.isUpperCase(fieldName.charAt(2))) {
+            candidates.add("set" + fieldName.substring(2));
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+            if (candidates.contains(method.getSimpleName().toString())
+                    && method.getParameters().size() == 1
+                    && isAccessible(method)
+                    && processingEnv.getTypeUtils()
+                    .isSameType(method.getParameters().get(0).asType(), type)) {
+                return method.getSimpleName().toString();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAccessible(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        return !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.STATIC);
+    }
+
+    private static boolean hasAnnotation(VariableElement variable, String annotation) {
+        for (AnnotationMirror mirror : variable.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the name followed by the alternate names of the SerializedName annotation, or null
+     * if the field is not annotated.
+     */
+    private static String[] serializedNameOf(VariableElement variable) {
+        for (AnnotationMirror mirror : variable.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(SERIALIZED_NAME)) {
+                continue;
+            }
+            List<String> names = new ArrayList<>();
+            String value = null;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                String key = entry.getKey().getSimpleName().toString();
+                if (key.equals("value")) {
+                    value = (String) entry.getValue().getValue();
+                } else if (key.equals("alternate")) {
+                    for (Object alternate : (List<?>) entry.getValue().getValue()) {
+                        names.add((String) ((AnnotationValue) alternate).getValue());
+                    }
+                }
+            }
+            names.add(0, value);
+            return names.toArray(new String[names.size()]);
+        }
+        return null;
+    }
+
+    private static Kind kindOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case BYTE:
+                return Kind.BYTE;
+            case SHORT:
+                return Kind.SHORT;
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case FLOAT:
+                return Kind.FLOAT;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case CHAR:
+                return Kind.CHAR;
+            default:
+                break;
+        }
+        switch (type.toString()) {
+            case "java.lang.String":
+                return Kind.STRING;
+            case "java.lang.Boolean":
+                return Kind.BOXED_BOOLEAN;
+            case "java.lang.Integer":
+                return Kind.BOXED_INT;
+            case "java.lang.Long":
+                return Kind.BOXED_LONG;
+            case "java.lang.Double":
+                return Kind.BOXED_DOUBLE;
+            default:
+                return Kind.DELEGATE;
+        }
+    }
+
+    private static PackageElement packageOf(Element element) {
+        Element current = element;
+        while (current.getKind() != ElementKind.PACKAGE) {
+            current = current.getEnclosingElement();
+        }
+        return (PackageElement) current;
+    }
+
+    /**
+     * @return the simple names of the class and the classes enclosing it, joined by underscores.
+     */
+    private static String flatNameOf(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing.getKind() != ElementKind.PACKAGE) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.toString();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        Messager messager = processingEnv.getMessager();
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private enum Kind {
+        BOOLEAN(true, "in.nextBoolean()"),
+        BYTE(true, "(byte) in.nextInt()"),
+        SHORT(true, "(short) in.nextInt()"),
+        INT(true, "in.nextInt()"),
+        LONG(true, "in.nextLong()"),
+        FLOAT(true, "(float) in.nextDouble()"),
+        DOUBLE(true, "in.nextDouble()"),
+        CHAR(true, "readChar(in)"),
+        STRING(false, "in.nextString()"),
+        BOXED_BOOLEAN(false, "in.nextBoolean()"),
+        BOXED_INT(false, "in.nextInt()"),
+        BOXED_LONG(false, "in.nextLong()"),
+        BOXED_DOUBLE(false, "in.nextDouble()"),
+        DELEGATE(false, null);
+
+        final boolean primitive;
+        final String read;
+
+        Kind(boolean primitive, String read) {
+            this.primitive = primitive;
+            this.read = read;
+        }
+    }
+
+    private static final class ModelField {
+        final String name;
+        final String type;
+        final Kind kind;
+        final String jsonName;
+        final List<String> alternates;
+        final String getter;
+        final String setter;
+        final boolean intern;
+
+        ModelField(String name, String type, Kind kind, String jsonName, List<String> alternates,
+                   String getter, String setter, boolean intern) {
+            this.name = name;
+            this.type = type;
+            this.kind = kind;
+            this.jsonName = jsonName;
+            this.alternates = alternates;
+            this.getter = getter;
+            this.setter = setter;
+            this.intern = intern;
+        }
+
+        List<String> names() {
+            List<String> names = new ArrayList<>(alternates.size() + 1);
+            names.add(jsonName);
+            names.addAll(alternates);
+            return names;
+        }
+
+        String read(String target) {
+            return getter != null ? target + "." + getter + "()" : target + "." + name;
+        }
+
+        String write(String target, String value) {
+            return setter != null ? target + "." + setter + "(" + value + ")"
+                    : target + "." + name + " = " + value;
+        }
+
+        String adapterField() {
+            return name + "Adapter";
+        }
+
+        String adapterMethod() {
+            return name + "Adapter";
+        }
+    }
+}
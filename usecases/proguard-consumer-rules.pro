@@ -0,0 +1,22 @@
+# Models annotated with @GenerateAdapter are read and written by the adapters the
+# usecases-processor generates for them, which GeneratedAdapterFactory looks up by the name of
+# the model. Keep the annotation, the model names and the adapter constructors.
+-keep @interface com.zeyad.usecases.adapters.GenerateAdapter
+-keepattributes RuntimeVisibleAnnotations
+-if @com.zeyad.usecases.adapters.GenerateAdapter class *
+-keepnames class <1>
+-if @com.zeyad.usecases.adapters.GenerateAdapter class **$*
+-keep class <1>_<2>_JsonAdapter {
+    public <init>(com.google.gson.Gson);
+}
+-if @com.zeyad.usecases.adapters.GenerateAdapter class *
+-keep class <1>_JsonAdapter {
+    public <init>(com.google.gson.Gson);
+}
+
+# MoshiSerializer, KotlinxSerializer and the wire formats are only loaded when the app configures
+# them, and the app brings their runtime along when it does.
+-dontwarn com.squareup.moshi.**
+-dontwarn kotlinx.serialization.**
+-dontwarn com.fasterxml.jackson.**
+-dontwarn org.msgpack.**
@@ -3,7 +3,16 @@ package com.zeyad.usecases
 import android.annotation.SuppressLint
 import android.content.Context
 import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import com.zeyad.usecases.adapters.GeneratedAdapterFactory
+import com.zeyad.usecases.adapters.InternedStringAdapter
+import com.zeyad.usecases.cache.StringPool
+import com.zeyad.usecases.cache.Weigher
 import com.zeyad.usecases.network.ApiConnection
+import com.zeyad.usecases.network.FingerprintStore
+import com.zeyad.usecases.network.ValidatorStore
+import com.zeyad.usecases.serialization.GsonSerializer
+import com.zeyad.usecases.serialization.Serializer
 import com.zeyad.usecases.stores.CloudStore
 import io.reactivex.Scheduler
 import io.reactivex.schedulers.Schedulers
@@ -11,15 +20,26 @@ import java.util.concurrent.TimeUnit
 
 @SuppressLint("StaticFieldLeak")
 object Config {
-    val gson: Gson = Gson()
+    val gson: Gson = GsonBuilder()
+            .registerTypeAdapterFactory(GeneratedAdapterFactory())
+            .registerTypeAdapterFactory(InternedStringAdapter.Factory())
+            .create()
+    var serializer: Serializer = GsonSerializer(gson)
+    var wireFormats: Map<String, Serializer> = emptyMap()
     var baseURL: String = ""
     var cacheTimeUnit: TimeUnit = TimeUnit.SECONDS
     var backgroundThread: Scheduler = Schedulers.io()
     var apiConnection: ApiConnection? = null
     var cloudStore: CloudStore? = null
     var withCache: Boolean = false
+    var withStoro: Boolean = true
     var withSQLite: Boolean = false
     var useApiWithCache: Boolean = false
     var cacheDuration: Long = 0
+    var heapCacheSize: Long = 0
+    var cacheWeigher: Weigher? = null
+    var stringPool: StringPool? = null
+    var validators: ValidatorStore? = null
+    var fingerprints: FingerprintStore? = null
     lateinit var context: Context
 }
\ No newline at end of file
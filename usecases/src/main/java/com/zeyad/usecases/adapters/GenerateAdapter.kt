@@ -0,0 +1,13 @@
+package com.zeyad.usecases.adapters
+
+/**
+ * Marks a model for the usecases-processor, which generates a streaming Gson adapter for it at
+ * compile time. [GeneratedAdapterFactory] picks the adapter up, so the model is read and written
+ * without reflection.
+ *
+ * The model needs a no-arg constructor and mutable properties, or non-private fields. JSON names
+ * come from [com.google.gson.annotations.SerializedName] if present, transient fields are skipped.
+ */
+@Retention(AnnotationRetention.RUNTIME)
+@Target(AnnotationTarget.CLASS)
+annotation class GenerateAdapter
@@ -0,0 +1,43 @@
+package com.zeyad.usecases.adapters
+
+import com.google.gson.Gson
+import com.google.gson.TypeAdapter
+import com.google.gson.TypeAdapterFactory
+import com.google.gson.reflect.TypeToken
+
+/**
+ * Serves the adapters generated for models annotated with [GenerateAdapter]. Gson caches the
+ * adapter per type, so the generated class is only looked up once per type.
+ */
+class GeneratedAdapterFactory : TypeAdapterFactory {
+
+    override fun <T> create(gson: Gson, type: TypeToken<T>): TypeAdapter<T>? {
+        val rawType = type.rawType
+        if (!rawType.isAnnotationPresent(GenerateAdapter::class.java)) {
+            return null
+        }
+        val adapterName = adapterNameOf(rawType)
+        return try {
+            Class.forName(adapterName, true, rawType.classLoader)
+                    .getConstructor(Gson::class.java)
+                    .newInstance(gson) as TypeAdapter<T>
+        } catch (e: ClassNotFoundException) {
+            throw IllegalStateException("$adapterName was not generated, add the " +
+                    "usecases-processor to the kapt configuration of the module of ${rawType.name}", e)
+        }
+    }
+
+    companion object {
+        const val SUFFIX = "_JsonAdapter"
+
+        /**
+         * @return the binary name of the adapter generated for [rawType], nested classes are
+         * flattened with underscores.
+         */
+        fun adapterNameOf(rawType: Class<*>): String {
+            val name = rawType.name
+            val packageEnd = name.lastIndexOf('.') + 1
+            return name.substring(0, packageEnd) + name.substring(packageEnd).replace('$', '_') + SUFFIX
+        }
+    }
+}
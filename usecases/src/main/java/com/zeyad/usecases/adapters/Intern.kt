@@ -0,0 +1,12 @@
+package com.zeyad.usecases.adapters
+
+/**
+ * Pools the values of a String field whatever their length, once
+ * [com.zeyad.usecases.api.DataServiceConfig.Builder.internStrings] turned the pool on.
+ *
+ * Honored by the adapters of [GenerateAdapter] models. Fields of other models get the same
+ * behavior from `@JsonAdapter(InternedStringAdapter::class)`.
+ */
+@Retention(AnnotationRetention.RUNTIME)
+@Target(AnnotationTarget.FIELD)
+annotation class Intern
@@ -0,0 +1,34 @@
+package com.zeyad.usecases.adapters
+
+import com.google.gson.Gson
+import com.google.gson.TypeAdapter
+import com.google.gson.TypeAdapterFactory
+import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonWriter
+
+/**
+ * Gson adapter of the strings read through [InternedStrings]. Annotate a field with
+ * `@JsonAdapter(InternedStringAdapter::class)` to pool it whatever its length.
+ */
+class InternedStringAdapter @JvmOverloads constructor(private val annotated: Boolean = true)
+    : TypeAdapter<String>() {
+
+    override fun read(reader: JsonReader): String? = InternedStrings.read(reader, annotated)
+
+    override fun write(out: JsonWriter, value: String?) {
+        out.value(value)
+    }
+
+    /**
+     * Reads every string through the pool, those over its length limit are left as they are.
+     */
+    class Factory : TypeAdapterFactory {
+
+        private val adapter = InternedStringAdapter(false)
+
+        override fun <T> create(gson: Gson, type: TypeToken<T>): TypeAdapter<T>? {
+            return if (type.rawType == String::class.java) adapter as TypeAdapter<T> else null
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.zeyad.usecases.adapters
+
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.zeyad.usecases.Config
+
+/**
+ * Reads strings through [Config.stringPool], or as they are if the pool is off. Called by the
+ * generated adapters as well, so keep its signature.
+ */
+object InternedStrings {
+
+    /**
+     * @param annotated whether the field is annotated with [Intern], which pools it whatever its
+     * length.
+     */
+    @JvmStatic
+    fun read(reader: JsonReader, annotated: Boolean): String? {
+        val value = when (reader.peek()) {
+            JsonToken.NULL -> {
+                reader.nextNull()
+                return null
+            }
+            JsonToken.BOOLEAN -> reader.nextBoolean().toString()
+            else -> reader.nextString()
+        }
+        val pool = Config.stringPool ?: return value
+        return if (annotated) pool.intern(value) else pool.internIfShort(value)
+    }
+}
@@ -2,22 +2,32 @@ package com.zeyad.usecases.api
 
 import android.util.Log
 import com.jakewharton.rx.ReplayingShare
+import com.zeyad.usecases.exceptions.NetworkConnectionException
+import com.zeyad.usecases.exceptions.WriteQueuedException
+import com.zeyad.usecases.outbox.Outbox
+import com.zeyad.usecases.requests.CachePolicy
 import com.zeyad.usecases.requests.FileIORequest
 import com.zeyad.usecases.requests.GetRequest
 import com.zeyad.usecases.requests.PostRequest
+import com.zeyad.usecases.stores.DataStore
 import com.zeyad.usecases.stores.DataStoreFactory
 import com.zeyad.usecases.withCache
 import com.zeyad.usecases.withDisk
 import io.reactivex.*
 import org.json.JSONException
 import java.io.File
+import java.io.IOException
 
 /**
  * @author by ZIaDo on 5/9/17.
  */
 internal class DataService(private val mDataStoreFactory: DataStoreFactory,
                            private val mPostExecutionThread: Scheduler?,
-                           private val mBackgroundThread: Scheduler) : IDataService {
+                           private val mBackgroundThread: Scheduler,
+                           private val mRequestCoalescer: RequestCoalescer = RequestCoalescer(),
+                           private val mOutbox: Outbox? = null,
+                           private val mWriteBatcher: WriteBatcher? = null) :
+        IDataService {
     private val mPostThreadExist: Boolean = mPostExecutionThread != null
 
     override fun <M> getList(getListRequest: GetRequest): Flowable<List<M>> {
@@ -25,20 +35,18 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
         try {
             val dataClass = getListRequest.getTypedDataClass<M>()
             val url = getListRequest.fullUrl
-            val simpleName = dataClass.simpleName
-            val shouldCache = getListRequest.cache
-            val dynamicGetList = mDataStoreFactory.dynamically(url, dataClass)
-                    .dynamicGetList(url, getListRequest.idColumnName, dataClass,
-                            getListRequest.persist, shouldCache)
-            result = if (withCache(shouldCache)) {
-                mDataStoreFactory.memory()!!.getAllItems(dataClass)
-                        .doOnSuccess { Log.d("getList", CACHE_HIT + simpleName) }
-                        .doOnError { Log.d("getList", CACHE_MISS + simpleName) }
-                        .toFlowable()
-                        .onErrorResumeNext { _: Throwable -> dynamicGetList }
-            } else {
-                dynamicGetList
-            }
+            val shouldCache = getListRequest.isCacheable()
+            val dynamicGetList = coalesce(getListRequest, dataClass, shouldCache, true,
+                    getListFrom(mDataStoreFactory.dynamically(url, dataClass),
+                    getListRequest, dataClass, shouldCache))
+            val memoryStore = mDataStoreFactory.memory()
+            result = applyCachePolicy(getListRequest,
+                    { memoryStore!!.getQueryItems(url, dataClass) },
+                    {
+                        memoryStore!!.getStaleQueryItems(url, dataClass,
+                                getListRequest.staleGracePeriod)
+                    }, { memoryStore!!.isQueryExpired(url, dataClass) }, dynamicGetList,
+                    "getList")
         } catch (e: IllegalAccessException) {
             result = Flowable.error(e)
         }
@@ -46,27 +54,38 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
         return result.compose(applySchedulers())
     }
 
+    override fun <M> streamList(getRequest: GetRequest): Flowable<M> {
+        var result: Flowable<M>
+        try {
+            val dataClass = getRequest.getTypedDataClass<M>()
+            result = mDataStoreFactory.cloud(dataClass)
+                    .dynamicStreamList(getRequest.fullUrl, getRequest.idColumnName, dataClass,
+                            getRequest.persist, getRequest.isCacheable(), getRequest.cacheTtl,
+                            getRequest.getHeaders())
+        } catch (e: IllegalAccessException) {
+            result = Flowable.error(e)
+        }
+        return result.compose(applySchedulers())
+    }
+
     override fun <M> getObject(getRequest: GetRequest): Flowable<M> {
         var result: Flowable<M>
         try {
             val itemId = getRequest.itemId
             val dataClass = getRequest.getTypedDataClass<M>()
-            val shouldCache = getRequest.cache
+            val shouldCache = getRequest.isCacheable()
             val url = getRequest.fullUrl
-            val simpleName = dataClass.simpleName
-            val dynamicGetObject = mDataStoreFactory.dynamically(url, dataClass)
-                    .dynamicGetObject(url, getRequest.idColumnName, itemId, dataClass,
-                            getRequest.persist, shouldCache)
-            result = if (withCache(shouldCache)) {
-                mDataStoreFactory.memory()!!
-                        .getItem<M>(itemId.toString(), dataClass)
-                        .doOnSuccess { Log.d("getObject", CACHE_HIT + simpleName) }
-                        .doOnError { Log.d("getObject", CACHE_MISS + simpleName) }
-                        .toFlowable()
-                        .onErrorResumeNext { _: Throwable -> dynamicGetObject }
-            } else {
-                dynamicGetObject
-            }
+            val dynamicGetObject = coalesce(getRequest, dataClass, shouldCache, false,
+                    getObjectFrom(mDataStoreFactory.dynamically(url, dataClass),
+                    getRequest, dataClass, shouldCache))
+            val memoryStore = mDataStoreFactory.memory()
+            result = applyCachePolicy(getRequest,
+                    { memoryStore!!.getItem<M>(itemId.toString(), dataClass) },
+                    {
+                        memoryStore!!.getStaleItem<M>(itemId.toString(), dataClass,
+                                getRequest.staleGracePeriod)
+                    }, { memoryStore!!.isExpired(itemId.toString(), dataClass) },
+                    dynamicGetObject, "getObject")
         } catch (e: IllegalAccessException) {
             result = Flowable.error(e)
         }
@@ -78,74 +97,84 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
         val result: Single<M> = try {
             mDataStoreFactory.dynamically(postRequest.fullUrl, postRequest.requestType)
                     .dynamicPatchObject(postRequest.fullUrl, postRequest.idColumnName,
-                            postRequest.getObjectBundle(), postRequest.requestType,
+                            postRequest.payload, postRequest.requestType,
                             postRequest.getTypedResponseClass(), postRequest.persist,
-                            postRequest.cache)
+                            postRequest.cache,
+                            postRequest.cacheTtl)
         } catch (e: IllegalAccessException) {
             Single.error(e)
         } catch (e: JSONException) {
             Single.error(e)
         }
 
-        return result.compose(applySingleSchedulers())
+        return queueIfUnreachable(postRequest, PostRequest.PATCH, result)
+                .compose(applySingleSchedulers())
     }
 
     override fun <M> postObject(postRequest: PostRequest): Single<M> {
-        val result: Single<M> = try {
+        val result: Single<M> = batched(postRequest, PostRequest.POST) ?: try {
             mDataStoreFactory.dynamically(postRequest.fullUrl, postRequest.requestType)
                     .dynamicPostObject(postRequest.fullUrl, postRequest.idColumnName,
-                            postRequest.getObjectBundle(), postRequest.requestType,
-                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache)
+                            postRequest.payload, postRequest.requestType,
+                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache,
+                            postRequest.cacheTtl)
         } catch (e: IllegalAccessException) {
             Single.error(e)
         } catch (e: JSONException) {
             Single.error(e)
         }
 
-        return result.compose(applySingleSchedulers())
+        return queueIfUnreachable(postRequest, PostRequest.POST, result)
+                .compose(applySingleSchedulers())
     }
 
     override fun <M> postList(postRequest: PostRequest): Single<M> {
         val result: Single<M> = try {
             mDataStoreFactory.dynamically(postRequest.fullUrl, postRequest.requestType)
                     .dynamicPostList(postRequest.fullUrl, postRequest.idColumnName,
-                            postRequest.getArrayBundle(), postRequest.requestType,
-                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache)
+                            postRequest.payload, postRequest.requestType,
+                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache,
+                            postRequest.cacheTtl)
         } catch (e: Exception) {
             Single.error(e)
         } catch (e: JSONException) {
             Single.error(e)
         }
-        return result.compose(applySingleSchedulers())
+        return queueIfUnreachable(postRequest, PostRequest.POST, result)
+                .compose(applySingleSchedulers())
     }
 
     override fun <M> putObject(postRequest: PostRequest): Single<M> {
-        val result: Single<M> = try {
+        val result: Single<M> = batched(postRequest, PostRequest.PUT) ?: try {
             mDataStoreFactory.dynamically(postRequest.fullUrl, postRequest.requestType)
                     .dynamicPutObject(postRequest.fullUrl, postRequest.idColumnName,
-                            postRequest.getObjectBundle(), postRequest.requestType,
-                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache)
+                            postRequest.payload, postRequest.requestType,
+                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache,
+                            postRequest.cacheTtl)
         } catch (e: IllegalAccessException) {
             Single.error(e)
         } catch (e: JSONException) {
             Single.error(e)
         }
 
-        return result.compose(applySingleSchedulers())
+        return queueIfUnreachable(postRequest, PostRequest.PUT, result)
+                .compose(applySingleSchedulers())
     }
 
     override fun <M> putList(postRequest: PostRequest): Single<M> {
         val result: Single<M> = try {
             mDataStoreFactory.dynamically(postRequest.fullUrl, postRequest.requestType)
                     .dynamicPutList(postRequest.fullUrl, postRequest.idColumnName,
-                            postRequest.getArrayBundle(), postRequest.requestType,
-                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache)
+                            postRequest.payload, postRequest.requestType,
+                            postRequest.getTypedResponseClass(), postRequest.persist, postRequest.cache,
+                            postRequest.cacheTtl)
         } catch (e: IllegalAccessException) {
             Single.error(e)
         } catch (e: JSONException) {
             Single.error(e)
         }
-        return result.compose(applySingleSchedulers())
+        return queueIfUnreachable(postRequest, PostRequest.PUT, result)
+                .compose(applySingleSchedulers())
     }
 
     override fun <M> deleteItemById(request: PostRequest): Single<M> {
@@ -165,7 +194,8 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
         } catch (e: JSONException) {
             Single.error(e)
         }
-        return result.compose(applySingleSchedulers())
+        return queueIfUnreachable(deleteRequest, PostRequest.DELETE, result)
+                .compose(applySingleSchedulers())
     }
 
     override fun deleteAll(deleteRequest: PostRequest): Single<Boolean> {
@@ -201,13 +231,15 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
             val simpleName = dataClass.simpleName
             val idColumnName = getRequest.idColumnName
             val persist = getRequest.persist
-            val shouldCache = getRequest.cache
+            val shouldCache = getRequest.isCacheable()
             val withDisk = withDisk(persist)
             val withCache = withCache(shouldCache)
-            val cloud = mDataStoreFactory.cloud(dataClass)
-                    .dynamicGetList(getRequest.fullUrl, idColumnName, dataClass, persist, shouldCache)
+            val cloud = coalesce(getRequest, dataClass, shouldCache, true,
+                    getListFrom(mDataStoreFactory.cloud(dataClass), getRequest, dataClass,
+                            shouldCache))
             val disk = mDataStoreFactory.disk(dataClass)
-                    .dynamicGetList("", idColumnName, dataClass, persist, shouldCache)
+                    .dynamicGetList(getRequest.fullUrl, idColumnName, dataClass, persist, shouldCache,
+                            getRequest.cacheTtl, getRequest.getHeaders())
                     .doOnNext { Log.d(GET_LIST_OFFLINE_FIRST, "Disk Hit $simpleName") }
                     .doOnError { throwable ->
                         Log.e(GET_LIST_OFFLINE_FIRST, "Disk Miss $simpleName",
@@ -216,11 +248,12 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
                     .flatMap { m -> if (m.isEmpty()) cloud else Flowable.just(m) }
                     .onErrorResumeNext { _: Throwable -> cloud }
             result = when {
-                withCache -> mDataStoreFactory.memory()!!.getAllItems(dataClass)
+                withCache -> mDataStoreFactory.memory()!!
+                        .getQueryItems(getRequest.fullUrl, dataClass)
                         .doOnSuccess { Log.d(GET_LIST_OFFLINE_FIRST, CACHE_HIT + simpleName) }
-                        .doOnError { Log.d(GET_LIST_OFFLINE_FIRST, CACHE_MISS + simpleName) }
+                        .doOnComplete { Log.d(GET_LIST_OFFLINE_FIRST, CACHE_MISS + simpleName) }
                         .toFlowable()
-                        .onErrorResumeNext { _: Throwable -> if (withDisk) disk else cloud }
+                        .switchIfEmpty(if (withDisk) disk else cloud)
                 withDisk -> disk
                 else -> cloud
             }
@@ -228,7 +261,7 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
             result = Flowable.error(e)
         }
 
-        return result.compose(ReplayingShare.instance()).compose(applySchedulers())
+        return result.compose(applySchedulers())
     }
 
     override fun <M> getObjectOffLineFirst(getRequest: GetRequest): Flowable<M> {
@@ -239,15 +272,16 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
             val idColumnName = getRequest.idColumnName
             val simpleName = dataClass.simpleName
             val persist = getRequest.persist
-            val shouldCache = getRequest.cache
+            val shouldCache = getRequest.isCacheable()
             val withDisk = withDisk(persist)
             val withCache = withCache(shouldCache)
-            val cloud = mDataStoreFactory.cloud(dataClass)
-                    .dynamicGetObject(getRequest.fullUrl, idColumnName, itemId, dataClass,
-                            persist, shouldCache)
+            val cloud = coalesce(getRequest, dataClass, shouldCache, false,
+                    getObjectFrom(mDataStoreFactory.cloud(dataClass), getRequest, dataClass,
+                            shouldCache))
                     .doOnNext { Log.d(GET_OBJECT_OFFLINE_FIRST, "Cloud Hit $simpleName") }
             val disk = mDataStoreFactory.disk(dataClass)
-                    .dynamicGetObject("", idColumnName, itemId, dataClass, persist, shouldCache)
+                    .dynamicGetObject(getRequest.fullUrl, idColumnName, itemId, dataClass, persist,
+                            shouldCache, getRequest.cacheTtl, getRequest.getHeaders())
                     .doOnNext { Log.d(GET_OBJECT_OFFLINE_FIRST, "Disk Hit $simpleName") }
                     .doOnError { throwable ->
                         Log.e(GET_OBJECT_OFFLINE_FIRST, "Disk Miss $simpleName",
@@ -258,9 +292,9 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
                 withCache -> mDataStoreFactory.memory()!!
                         .getItem<M>(itemId.toString(), dataClass)
                         .doOnSuccess { Log.d(GET_OBJECT_OFFLINE_FIRST, CACHE_HIT + simpleName) }
-                        .doOnError { Log.d(GET_OBJECT_OFFLINE_FIRST, CACHE_MISS + simpleName) }
+                        .doOnComplete { Log.d(GET_OBJECT_OFFLINE_FIRST, CACHE_MISS + simpleName) }
                         .toFlowable()
-                        .onErrorResumeNext { _: Throwable -> if (withDisk) disk else cloud }
+                        .switchIfEmpty(if (withDisk) disk else cloud)
                 withDisk -> disk
                 else -> cloud
             }
@@ -268,7 +302,7 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
             result = Flowable.error(e)
         }
 
-        return result.compose(ReplayingShare.instance()).compose(applySchedulers())
+        return result.compose(applySchedulers())
     }
 
     override fun <M> uploadFile(fileIORequest: FileIORequest): Single<M> {
@@ -291,6 +325,154 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
         }!!
     }
 
+    /**
+     * Routes a get request to the memory cache and/or the network according to its
+     * [CachePolicy]. Requests that are not cached only ever go to the network.
+     */
+    private fun <M> applyCachePolicy(getRequest: GetRequest, cached: () -> Maybe<M>,
+                                     stale: () -> Maybe<M>, isExpired: () -> Boolean,
+                                     network: Flowable<M>, tag: String): Flowable<M> {
+        val cachePolicy = getRequest.cachePolicy
+        if (!withCache(getRequest.isCacheable())) {
+            return if (cachePolicy == CachePolicy.CACHE_ONLY) Flowable.empty<M>() else network
+        }
+        val simpleName = getRequest.dataClass.simpleName
+        val memory = Flowable.defer {
+            cached.invoke()
+                    .doOnSuccess { Log.d(tag, CACHE_HIT + simpleName) }
+                    .doOnComplete { Log.d(tag, CACHE_MISS + simpleName) }
+                    .toFlowable()
+        }
+        return when (cachePolicy) {
+            CachePolicy.CACHE_ONLY -> memory
+            CachePolicy.NETWORK_FIRST -> network.onErrorResumeNext { throwable: Throwable ->
+                memory.switchIfEmpty(Flowable.error<M>(throwable))
+            }
+            CachePolicy.NETWORK_ONLY -> network
+            CachePolicy.STALE_WHILE_REVALIDATE ->
+                staleWhileRevalidate(Maybe.defer { stale.invoke() }, isExpired, network, tag,
+                        simpleName)
+            CachePolicy.CACHE_FIRST -> memory.switchIfEmpty(network)
+        }
+    }
+
+    /**
+     * Emits the cached value, even if it expired within the grace period, and then revalidates it
+     * from the network when it is expired. Falls back to the network on a cache miss.
+     */
+    private fun <M> staleWhileRevalidate(cached: Maybe<M>, isExpired: () -> Boolean,
+                                         network: Flowable<M>, tag: String,
+                                         simpleName: String): Flowable<M> {
+        val revalidate = network
+                .doOnSubscribe { Log.d(tag, STALE_HIT + simpleName) }
+                .onErrorResumeNext { throwable: Throwable ->
+                    Log.e(tag, "Revalidation failed $simpleName", throwable)
+                    Flowable.empty<M>()
+                }
+        return cached.doOnSuccess { Log.d(tag, CACHE_HIT + simpleName) }
+                .doOnComplete { Log.d(tag, CACHE_MISS + simpleName) }
+                .flatMapPublisher { item ->
+                    Flowable.just(item).concatWith(Flowable.defer {
+                        if (isExpired()) revalidate else Flowable.empty<M>()
+                    })
+                }
+                .switchIfEmpty(network)
+    }
+
+    /**
+     * Gets the list from [store], hashing the response if the request asked for a fingerprint.
+     */
+    private fun <M> getListFrom(store: DataStore, getRequest: GetRequest, dataClass: Class<M>,
+                                shouldCache: Boolean): Flowable<List<M>> {
+        val url = getRequest.fullUrl
+        return if (getRequest.fingerprint)
+            store.dynamicGetList(url, getRequest.idColumnName, dataClass, getRequest.persist,
+                    shouldCache, getRequest.cacheTtl, getRequest.getHeaders(), true)
+        else
+            store.dynamicGetList(url, getRequest.idColumnName, dataClass, getRequest.persist,
+                    shouldCache, getRequest.cacheTtl, getRequest.getHeaders())
+    }
+
+    private fun <M> getObjectFrom(store: DataStore, getRequest: GetRequest, dataClass: Class<M>,
+                                  shouldCache: Boolean): Flowable<M> {
+        val url = getRequest.fullUrl
+        return if (getRequest.fingerprint)
+            store.dynamicGetObject(url, getRequest.idColumnName, getRequest.itemId, dataClass,
+                    getRequest.persist, shouldCache, getRequest.cacheTtl, getRequest.getHeaders(),
+                    true)
+        else
+            store.dynamicGetObject(url, getRequest.idColumnName, getRequest.itemId, dataClass,
+                    getRequest.persist, shouldCache, getRequest.cacheTtl, getRequest.getHeaders())
+    }
+
+    /**
+     * Adds a batchable item write to the open batch of its endpoint, to be sent with the others as
+     * a list write and persisted locally in one transaction.
+     *
+     * @return null if the write is not batched.
+     */
+    private fun <M> batched(postRequest: PostRequest, method: String): Single<M>? {
+        val batcher = mWriteBatcher
+        val payload = postRequest.payload
+        if (!postRequest.batchable || batcher == null || postRequest.fullUrl.isEmpty()
+                || payload.isArray || payload.contentType.isNotEmpty() || payload.accept.isNotEmpty()) {
+            return null
+        }
+        val responseType = postRequest.getTypedResponseClass<Any>()
+        val key = WriteBatcher.Key(method, postRequest.fullUrl, postRequest.requestType,
+                responseType, postRequest.idColumnName, postRequest.persist, postRequest.cache,
+                postRequest.cacheTtl)
+        return batcher.add(key, payload) { items ->
+            val dataStore = mDataStoreFactory.dynamically(postRequest.fullUrl, postRequest.requestType)
+            if (method == PostRequest.PUT) {
+                dataStore.dynamicPutList(postRequest.fullUrl, postRequest.idColumnName, items,
+                        postRequest.requestType, responseType, postRequest.persist,
+                        postRequest.cache, postRequest.cacheTtl)
+            } else {
+                dataStore.dynamicPostList(postRequest.fullUrl, postRequest.idColumnName, items,
+                        postRequest.requestType, responseType, postRequest.persist,
+                        postRequest.cache, postRequest.cacheTtl)
+            }
+        }
+    }
+
+    /**
+     * Queues a queuable [write] to the server in the outbox if the network is not reachable or
+     * fails on the way. The caller then gets a [WriteQueuedException].
+     */
+    private fun <M> queueIfUnreachable(postRequest: PostRequest, method: String,
+                                       write: Single<M>): Single<M> {
+        val outbox = mOutbox
+        if (!postRequest.queuable || postRequest.fullUrl.isEmpty() || outbox == null) {
+            return write
+        }
+        return write.onErrorResumeNext { throwable: Throwable ->
+            if (throwable is NetworkConnectionException || throwable is IOException) {
+                Completable.fromAction { outbox.enqueue(method, postRequest) }
+                        .andThen(Single.error<M>(WriteQueuedException(throwable)))
+            } else {
+                Single.error<M>(throwable)
+            }
+        }
+    }
+
+    /**
+     * Shares the cloud call with identical requests that are already in flight. Requests without
+     * a url are served locally and are not coalesced.
+     */
+    private fun <M> coalesce(getRequest: GetRequest, dataClass: Class<*>, cache: Boolean,
+                             isList: Boolean, upstream: Flowable<M>): Flowable<M> {
+        val url = getRequest.fullUrl
+        return if (url.isEmpty()) {
+            upstream
+        } else {
+            mRequestCoalescer.coalesce(RequestCoalescer.Key(url, getRequest.getHeaders(),
+                    dataClass, getRequest.idColumnName, if (isList) null else getRequest.itemId,
+                    getRequest.persist, cache, getRequest.cacheTtl, getRequest.fingerprint, isList),
+                    upstream)
+        }
+    }
+
     /**
      * Apply the default android schedulers to a observable
      *
@@ -323,6 +505,7 @@ internal class DataService(private val mDataStoreFactory: DataStoreFactory,
 
         private const val CACHE_HIT = "cache Hit "
         private const val CACHE_MISS = "cache Miss "
+        private const val STALE_HIT = "stale Hit, revalidating "
         private const val GET_LIST_OFFLINE_FIRST = "getListOffLineFirst"
         private const val GET_OBJECT_OFFLINE_FIRST = "getObjectOffLineFirst"
     }
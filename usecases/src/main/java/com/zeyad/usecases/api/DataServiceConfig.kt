@@ -2,7 +2,13 @@ package com.zeyad.usecases.api
 
 import android.arch.persistence.room.RoomDatabase
 import android.content.Context
+import com.zeyad.usecases.cache.StringPool
+import com.zeyad.usecases.cache.Weigher
 import com.zeyad.usecases.mapper.DAOMapper
+import com.zeyad.usecases.network.ValidatorStore
+import com.zeyad.usecases.outbox.Outbox
+import com.zeyad.usecases.serialization.GsonSerializer
+import com.zeyad.usecases.serialization.Serializer
 import com.zeyad.usecases.utils.DataBaseManagerUtil
 import io.reactivex.Scheduler
 import io.reactivex.schedulers.Schedulers
@@ -25,7 +31,18 @@ data class DataServiceConfig internal constructor(val context: Context,
                                                   val postExecutionThread: Scheduler = Schedulers.io(),
                                                   val dataBaseManagerUtil: DataBaseManagerUtil? = null,
                                                   val db: RoomDatabase? = null,
-                                                  val entityMapper: DAOMapper = DAOMapper()) {
+                                                  val withStoro: Boolean = true,
+                                                  val heapCacheSize: Long = 0,
+                                                  val cacheWeigher: Weigher? = null,
+                                                  val serializer: Serializer = GsonSerializer(),
+                                                  val wireFormats: List<Serializer> = emptyList(),
+                                                  val entityMapper: DAOMapper = DAOMapper(),
+                                                  val stringPool: StringPool? = null,
+                                                  val validatorStore: ValidatorStore? = null,
+                                                  val outboxBatchSize: Int = 0,
+                                                  val outboxParallelism: Int = Outbox.DEFAULT_PARALLELISM,
+                                                  val writeBatchWindow: Long = 0,
+                                                  val writeBatchSize: Int = 0) {
 
     constructor(dataUseCaseConfigBuilder: Builder) : this(
             dataUseCaseConfigBuilder.context,
@@ -39,7 +56,20 @@ data class DataServiceConfig internal constructor(val context: Context,
             dataUseCaseConfigBuilder.withSQLite,
             dataUseCaseConfigBuilder.postExecutionThread,
             dataUseCaseConfigBuilder.dataBaseManagerUtil,
-            dataUseCaseConfigBuilder.db
+            dataUseCaseConfigBuilder.db,
+            dataUseCaseConfigBuilder.withStoro,
+            dataUseCaseConfigBuilder.heapCacheSize,
+            dataUseCaseConfigBuilder.cacheWeigher,
+            dataUseCaseConfigBuilder.serializer,
+            dataUseCaseConfigBuilder.wireFormats.toList(),
+            DAOMapper(parallelThreshold = dataUseCaseConfigBuilder.parallelMappingThreshold,
+                    parallelism = dataUseCaseConfigBuilder.mappingParallelism),
+            dataUseCaseConfigBuilder.stringPool,
+            dataUseCaseConfigBuilder.validatorStore,
+            dataUseCaseConfigBuilder.outboxBatchSize,
+            dataUseCaseConfigBuilder.outboxParallelism,
+            dataUseCaseConfigBuilder.writeBatchWindow,
+            dataUseCaseConfigBuilder.writeBatchSize
     )
 
     class Builder(internal val context: Context) {
@@ -47,6 +77,19 @@ data class DataServiceConfig internal constructor(val context: Context,
         internal var okHttpCache: Cache? = null
         internal var baseUrl: String = ""
         internal var withCache: Boolean = false
+        internal var withStoro: Boolean = true
+        internal var heapCacheSize: Long = 0
+        internal var cacheWeigher: Weigher? = null
+        internal var serializer: Serializer = GsonSerializer()
+        internal val wireFormats: MutableList<Serializer> = mutableListOf()
+        internal var parallelMappingThreshold: Int = 0
+        internal var mappingParallelism: Int = Runtime.getRuntime().availableProcessors()
+        internal var stringPool: StringPool? = null
+        internal var validatorStore: ValidatorStore? = null
+        internal var outboxBatchSize: Int = 0
+        internal var outboxParallelism: Int = Outbox.DEFAULT_PARALLELISM
+        internal var writeBatchWindow: Long = 0
+        internal var writeBatchSize: Int = 0
         internal var withSQLite: Boolean = false
         internal var cacheSize: Int = 0
         internal var cacheDuration: Long = 0
@@ -75,6 +118,10 @@ data class DataServiceConfig internal constructor(val context: Context,
             return this
         }
 
+        /**
+         * Caches the items for [expiryAmount] [timeUnit]s, with at most [cacheSize] bytes in Storo.
+         * The heap tier in front of it is bounded by [heapCacheSize].
+         */
         fun withCache(expiryAmount: Long, timeUnit: TimeUnit, cacheSize: Int = 0): Builder {
             this.withCache = true
             this.cacheDuration = expiryAmount
@@ -83,6 +130,108 @@ data class DataServiceConfig internal constructor(val context: Context,
             return this
         }
 
+        /**
+         * Keeps the cache in the heap only, without Storo as a second tier behind it.
+         */
+        fun inMemoryCacheOnly(): Builder {
+            this.withStoro = false
+            return this
+        }
+
+        /**
+         * Bounds the number of decoded instances kept in the heap, or their total weight if a
+         * [cacheWeigher] is set. 0 keeps
+         * [com.zeyad.usecases.cache.ObjectCache.DEFAULT_MAXIMUM_SIZE].
+         */
+        fun heapCacheSize(maximumSize: Long): Builder {
+            this.heapCacheSize = maximumSize
+            return this
+        }
+
+        /**
+         * Weighs the cached instances, making the [heapCacheSize] a bound on their total weight
+         * rather than on the number of entries.
+         */
+        fun cacheWeigher(weigher: Weigher): Builder {
+            this.cacheWeigher = weigher
+            return this
+        }
+
+        /**
+         * Reads and writes JSON with [serializer] instead of Gson, on the network, in the database
+         * and in the cache.
+         */
+        fun serializer(serializer: Serializer): Builder {
+            this.serializer = serializer
+            return this
+        }
+
+        /**
+         * Registers a wire format, e.g. [com.zeyad.usecases.serialization.ProtoBufSerializer],
+         * for the requests that ask for its media type through `accept` or `contentType`.
+         */
+        fun wireFormat(serializer: Serializer): Builder {
+            wireFormats.add(serializer)
+            return this
+        }
+
+        /**
+         * Pools the strings Gson decodes, so equal values repeated across the cached models share
+         * one instance. Strings longer than [maxLength] are only pooled for fields annotated with
+         * [com.zeyad.usecases.adapters.Intern].
+         */
+        fun internStrings(maxLength: Int = StringPool.DEFAULT_MAX_LENGTH,
+                          maxSize: Int = StringPool.DEFAULT_MAX_SIZE): Builder {
+            this.stringPool = StringPool(maxSize, maxLength)
+            return this
+        }
+
+        /**
+         * Sends the ETag and Last-Modified validators of the last response to a url with the next
+         * GET to it. On a 304 the persisted or cached result is served without decoding or writing
+         * it again, with or without an [okHttpCache].
+         */
+        fun conditionalGets(): Builder {
+            this.validatorStore = ValidatorStore(context)
+            return this
+        }
+
+        /**
+         * Queues the writes marked [com.zeyad.usecases.requests.PostRequest.Builder.queuable] that
+         * can not be sent, and replays them [batchSize] at a time with up to [parallelism] of them
+         * in flight. Without it they are sent like any other write.
+         */
+        fun outbox(batchSize: Int = Outbox.DEFAULT_BATCH_SIZE,
+                   parallelism: Int = Outbox.DEFAULT_PARALLELISM): Builder {
+            this.outboxBatchSize = batchSize
+            this.outboxParallelism = parallelism
+            return this
+        }
+
+        /**
+         * Sends the postObject and putObject calls marked
+         * [com.zeyad.usecases.requests.PostRequest.Builder.batchable] that reach the same url within
+         * [window] of each other as one list write, of up to [maxItems] items.
+         */
+        fun batchWrites(window: Long, timeUnit: TimeUnit,
+                        maxItems: Int = WriteBatcher.DEFAULT_MAX_ITEMS): Builder {
+            this.writeBatchWindow = timeUnit.toMillis(window)
+            this.writeBatchSize = maxItems
+            return this
+        }
+
+        /**
+         * Maps the lists of at least [threshold] items that writes and deletes respond with into
+         * the response class on the computation pool, [parallelism] chunks at a time, one per
+         * processor by default, keeping their order.
+         */
+        fun parallelMapping(threshold: Int = DAOMapper.DEFAULT_PARALLEL_THRESHOLD,
+                            parallelism: Int = mappingParallelism): Builder {
+            this.parallelMappingThreshold = threshold
+            this.mappingParallelism = parallelism
+            return this
+        }
+
         fun withRoom(dataBaseManagerUtil: DataBaseManagerUtil): Builder {
             this.dataBaseManagerUtil = dataBaseManagerUtil
             this.withSQLite = true
@@ -5,9 +5,15 @@ import android.content.Context
 import com.zeyad.usecases.Config
 import com.zeyad.usecases.db.DataBaseManager
 import com.zeyad.usecases.network.ApiConnection
+import com.zeyad.usecases.network.FingerprintStore
+import com.zeyad.usecases.outbox.Outbox
+import com.zeyad.usecases.outbox.OutboxLog
+import com.zeyad.usecases.serialization.Serializer
 import com.zeyad.usecases.stores.DataStoreFactory
 import com.zeyad.usecases.utils.DataBaseManagerUtil
 import st.lowlevel.storo.StoroBuilder
+import java.io.File
+import java.util.concurrent.TimeUnit
 
 class DataServiceFactory(val config: DataServiceConfig) {
 
@@ -22,8 +28,17 @@ class DataServiceFactory(val config: DataServiceConfig) {
         Config.cacheDuration = config.cacheDuration
         Config.cacheTimeUnit = config.timeUnit
         Config.withSQLite = config.withSQL
+        Config.withStoro = config.withStoro
+        Config.heapCacheSize = config.heapCacheSize
+        Config.cacheWeigher = config.cacheWeigher
+        Config.stringPool = config.stringPool
+        Config.validators = config.validatorStore
+        Config.fingerprints = FingerprintStore(config.context)
+        Config.serializer = config.serializer
+        Config.wireFormats = config.wireFormats.associateBy { Serializer.normalize(it.mediaType) }
 
-        if (config.isWithCache) {
+        if (config.isWithCache && config.withStoro) {
+            // Items are stored as the serializer's JSON strings, so Storo's Gson only wraps them.
             StoroBuilder.configure(config.cacheSize.toLong())
                     .setCacheDirectory(config.context, StoroBuilder.Storage.INTERNAL)
                     .setDefaultCacheDirectory(config.context)
@@ -31,8 +46,8 @@ class DataServiceFactory(val config: DataServiceConfig) {
                     .initialize()
         }
 
-        val apiConnection = ApiConnection(ApiConnection.init(config.okHttpBuilder),
-                ApiConnection.initWithCache(config.okHttpBuilder, config.okHttpCache))
+        val apiConnection =
+                ApiConnection(ApiConnection.init(config.okHttpBuilder, config.okHttpCache))
 
         dataBaseManagerUtil =
                 if (config.withSQL)
@@ -44,19 +59,37 @@ class DataServiceFactory(val config: DataServiceConfig) {
                         }
                     }
 
+        outbox?.close()
+        outbox = if (config.outboxBatchSize > 0) {
+            Outbox(OutboxLog(File(config.context.filesDir, Outbox.FILE_NAME)), apiConnection,
+                    config.context, config.outboxBatchSize, config.outboxParallelism)
+                    .apply { resume() }
+        } else {
+            null
+        }
+
+        val writeBatcher = if (config.writeBatchWindow > 0 && config.writeBatchSize > 1)
+            WriteBatcher(config.writeBatchWindow, TimeUnit.MILLISECONDS, config.writeBatchSize)
+        else
+            null
+
         dataService = DataService(DataStoreFactory(dataBaseManagerUtil, apiConnection,
-                config.entityMapper), config.postExecutionThread, Config.backgroundThread)
+                config.entityMapper), config.postExecutionThread, Config.backgroundThread,
+                RequestCoalescer(), outbox, writeBatcher)
         Config.apiConnection = apiConnection
     }
 
     fun destoryInstance() {
         dataService = null
+        outbox?.close()
+        outbox = null
     }
 
     fun getInstance() = dataService!!
 
     companion object {
         var dataService: IDataService? = null
+        private var outbox: Outbox? = null
     }
 
     private fun doesContextBelongsToApplication(context: Context): Boolean = context is Application
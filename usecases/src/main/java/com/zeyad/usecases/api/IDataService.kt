@@ -97,6 +97,15 @@ interface IDataService {
      */
     fun <M> queryDisk(query: String, clazz: Class<M>): Single<List<M>>
 
+    /**
+     * Streams a list from the server item by item while it downloads, persisting and caching it in
+     * chunks. Meant for large lists that should not be held in memory at once.
+     *
+     * @param getRequest contains the attributes of the request.
+     * @return [Flowable] with the items of the list.
+     */
+    fun <M> streamList(getRequest: GetRequest): Flowable<M>
+
     /**
      * Creates a repository pattern with live objects
      *
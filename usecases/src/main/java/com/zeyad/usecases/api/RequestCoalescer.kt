@@ -0,0 +1,38 @@
+package com.zeyad.usecases.api
+
+import io.reactivex.Flowable
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Single-flight registry for GET requests. Identical requests that are in flight at the same
+ * time attach to one upstream [Flowable], so the network call, the mapping and the local write
+ * happen once. The entry is dropped as soon as the upstream terminates or every subscriber is
+ * gone, so later requests hit the network again.
+ */
+internal class RequestCoalescer {
+
+    private val inFlight = ConcurrentHashMap<Key, Flowable<*>>()
+
+    fun <M> coalesce(key: Key, upstream: Flowable<M>): Flowable<M> {
+        return Flowable.defer {
+            lateinit var shared: Flowable<M>
+            shared = upstream.doFinally { inFlight.remove(key, shared) }
+                    .replay(1)
+                    .refCount()
+            val existing = inFlight.putIfAbsent(key, shared)
+            if (existing == null) shared else existing as Flowable<M>
+        }
+    }
+
+    fun inFlightCount(): Int = inFlight.size
+
+    /**
+     * Everything that changes what is sent for a request or how its result is saved. Requests that
+     * differ in any of it, e.g. in their Accept or Cache-Control [headers], [idColumnName] or
+     * [cacheTtl], are not shared. [itemId] is null for lists.
+     */
+    data class Key(val url: String, val headers: Map<String, String>, val dataClass: Class<*>,
+                   val idColumnName: String, val itemId: Any?, val persist: Boolean,
+                   val cache: Boolean, val cacheTtl: Long, val fingerprint: Boolean,
+                   val isList: Boolean)
+}
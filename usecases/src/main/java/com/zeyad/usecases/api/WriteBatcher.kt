@@ -0,0 +1,102 @@
+package com.zeyad.usecases.api
+
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.requests.Payload
+import io.reactivex.Scheduler
+import io.reactivex.Single
+import io.reactivex.disposables.Disposable
+import io.reactivex.subjects.SingleSubject
+import java.util.concurrent.TimeUnit
+
+/**
+ * Merges the item writes to the same endpoint that are made within [window] of the first one into
+ * one write of a JSON array, sent when the window closes or once it holds [maxItems] items.
+ *
+ * A list response is split back in order and fails every caller unless it holds one result per
+ * item. Any other response is returned to every caller, and a failure fails them all. A write is
+ * sent with its batch even if its caller disposed in the meantime.
+ */
+internal class WriteBatcher(private val window: Long,
+                            private val timeUnit: TimeUnit,
+                            private val maxItems: Int,
+                            private val scheduler: Scheduler = Config.backgroundThread) {
+
+    private val open = HashMap<Key, Batch>()
+
+    /**
+     * Adds [payload] to the open batch of [key] on subscription. [send] writes the merged payload,
+     * it is called once per batch, with the first caller's.
+     */
+    fun <M> add(key: Key, payload: Payload, send: (Payload) -> Single<Any>): Single<M> {
+        return Single.defer {
+            val result = SingleSubject.create<Any>()
+            var full: Batch? = null
+            synchronized(open) {
+                val batch = open.getOrPut(key) {
+                    val opened = Batch(send)
+                    opened.timer = scheduler.scheduleDirect({ flush(key, opened) }, window,
+                            timeUnit)
+                    opened
+                }
+                batch.payloads.add(payload)
+                batch.results.add(result)
+                if (batch.results.size >= maxItems) {
+                    full = open.remove(key)
+                }
+            }
+            full?.let {
+                it.timer?.dispose()
+                dispatch(it)
+            }
+            result as Single<M>
+        }
+    }
+
+    fun openCount(): Int = synchronized(open) { open.size }
+
+    private fun flush(key: Key, batch: Batch) {
+        val due = synchronized(open) {
+            if (open[key] === batch) open.remove(key) else null
+        }
+        due?.let { dispatch(it) }
+    }
+
+    private fun dispatch(batch: Batch) {
+        val results = batch.results
+        Single.defer { batch.send(Payload.concat(batch.payloads)) }
+                .subscribeOn(scheduler)
+                .subscribe({ response ->
+                    if (response !is List<*>) {
+                        results.forEach { it.onSuccess(response) }
+                    } else if (response.size != results.size) {
+                        val error = IllegalStateException("The batch of ${results.size} items " +
+                                "got a list of ${response.size} results, expected one per item")
+                        results.forEach { it.onError(error) }
+                    } else {
+                        results.forEachIndexed { index, result ->
+                            val item = response[index]
+                            if (item == null) {
+                                result.onError(IllegalStateException(
+                                        "No result for item $index of the batch"))
+                            } else {
+                                result.onSuccess(item)
+                            }
+                        }
+                    }
+                }, { error -> results.forEach { it.onError(error) } })
+    }
+
+    private class Batch(val send: (Payload) -> Single<Any>) {
+        val payloads = mutableListOf<Payload>()
+        val results = mutableListOf<SingleSubject<Any>>()
+        var timer: Disposable? = null
+    }
+
+    data class Key(val method: String, val url: String, val requestType: Class<*>,
+                   val responseType: Class<*>, val idColumnName: String, val persist: Boolean,
+                   val cache: Boolean, val cacheTtl: Long)
+
+    companion object {
+        const val DEFAULT_MAX_ITEMS = 50
+    }
+}
@@ -0,0 +1,130 @@
+package com.zeyad.usecases.cache
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Identifies a cached item by the [ClassToken] of its data class and its id.
+ *
+ * Numeric ids, and strings holding a canonical number such as "42", are kept as a primitive
+ * long, so `1`, `1L` and `"1"` address the same item and hashing them allocates nothing. Any
+ * other id is kept as a string. Keys of classes that share a simple name never collide, since
+ * the token is unique per class.
+ */
+class CacheKey private constructor(val token: ClassToken,
+                                   private val numericId: Long,
+                                   private val stringId: String?) {
+
+    val dataClass: Class<*>
+        get() = token.dataClass
+
+    val id: String
+        get() = stringId ?: numericId.toString()
+
+    /**
+     * @return the key this item is stored under in Storo.
+     */
+    fun storoKey(): String = token.storoPrefix + id
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) {
+            return true
+        }
+        if (other !is CacheKey) {
+            return false
+        }
+        return token === other.token && numericId == other.numericId && stringId == other.stringId
+    }
+
+    override fun hashCode(): Int {
+        val idHash = stringId?.hashCode() ?: (numericId xor (numericId ushr 32)).toInt()
+        return 31 * token.hashCode() + idHash
+    }
+
+    override fun toString(): String = token.storoPrefix + id
+
+    companion object {
+
+        fun of(dataClass: Class<*>, id: Long): CacheKey {
+            return CacheKey(ClassToken.of(dataClass), id, null)
+        }
+
+        fun of(dataClass: Class<*>, id: String): CacheKey {
+            val token = ClassToken.of(dataClass)
+            val numericId = parseCanonicalLong(id)
+            return if (numericId != null) CacheKey(token, numericId, null) else CacheKey(token, 0, id)
+        }
+
+        fun of(dataClass: Class<*>, id: Any): CacheKey {
+            return when (id) {
+                is Long -> of(dataClass, id)
+                is Int -> of(dataClass, id.toLong())
+                is Short -> of(dataClass, id.toLong())
+                is Byte -> of(dataClass, id.toLong())
+                else -> of(dataClass, id.toString())
+            }
+        }
+
+        /**
+         * @return the value of [id] if it is written exactly as [Long.toString] would write it,
+         * null otherwise, so that "01" or "+1" keep their own identity.
+         */
+        private fun parseCanonicalLong(id: String): Long? {
+            val length = id.length
+            if (length == 0 || length > 20) {
+                return null
+            }
+            val negative = id[0] == '-'
+            val start = if (negative) 1 else 0
+            if (start == length || (id[start] == '0' && length > start + 1) ||
+                    (negative && id[start] == '0')) {
+                return null
+            }
+            var value = 0L
+            for (i in start until length) {
+                val digit = id[i] - '0'
+                if (digit < 0 || digit > 9) {
+                    return null
+                }
+                if (value < (Long.MIN_VALUE + digit) / 10) {
+                    return null
+                }
+                value = value * 10 - digit
+            }
+            if (!negative) {
+                if (value == Long.MIN_VALUE) {
+                    return null
+                }
+                value = -value
+            }
+            return value
+        }
+    }
+}
+
+/**
+ * Interned stand in for a data class, one instance per class, so keys compare it by reference.
+ */
+class ClassToken private constructor(val dataClass: Class<*>) {
+
+    internal val storoPrefix: String = dataClass.name + SEPARATOR
+
+    private val hash: Int = dataClass.name.hashCode()
+
+    override fun hashCode(): Int = hash
+
+    override fun toString(): String = dataClass.name
+
+    companion object {
+        private const val SEPARATOR = '#'
+        private val tokens = ConcurrentHashMap<Class<*>, ClassToken>()
+
+        fun of(dataClass: Class<*>): ClassToken {
+            val token = tokens[dataClass]
+            if (token != null) {
+                return token
+            }
+            val created = ClassToken(dataClass)
+            return tokens.putIfAbsent(dataClass, created) ?: created
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.zeyad.usecases.cache
+
+/**
+ * Count-Min sketch of 4-bit counters used by the [ObjectCache] to estimate how often a key has
+ * been seen recently. Counters are halved once the number of increments reaches ten times the
+ * cache size, so the popularity of old keys fades away.
+ */
+internal class FrequencySketch(maximumSize: Int) {
+
+    private val table: LongArray
+    private val tableMask: Int
+    private val sampleSize: Int
+    private var size: Int = 0
+
+    init {
+        val capacity = ceilingPowerOfTwo(Math.max(maximumSize, 1))
+        table = LongArray(capacity)
+        tableMask = capacity - 1
+        sampleSize = if (maximumSize <= 0) SAMPLE_FACTOR else SAMPLE_FACTOR * maximumSize
+    }
+
+    /**
+     * @return the estimated number of occurrences of the element, up to 15.
+     */
+    fun frequency(element: Any): Int {
+        val hash = spread(element.hashCode())
+        val start = (hash and 3) shl 2
+        var frequency = Int.MAX_VALUE
+        for (i in 0..3) {
+            val index = indexOf(hash, i)
+            val count = ((table[index] ushr ((start + i) shl 2)) and 0xfL).toInt()
+            frequency = Math.min(frequency, count)
+        }
+        return frequency
+    }
+
+    fun increment(element: Any) {
+        val hash = spread(element.hashCode())
+        val start = (hash and 3) shl 2
+        var added = false
+        for (i in 0..3) {
+            val index = indexOf(hash, i)
+            added = incrementAt(index, start + i) or added
+        }
+        if (added && ++size >= sampleSize) {
+            reset()
+        }
+    }
+
+    private fun incrementAt(i: Int, j: Int): Boolean {
+        val offset = j shl 2
+        val mask = 0xfL shl offset
+        if ((table[i] and mask) != mask) {
+            table[i] += 1L shl offset
+            return true
+        }
+        return false
+    }
+
+    private fun reset() {
+        var count = 0
+        for (i in table.indices) {
+            count += java.lang.Long.bitCount(table[i] and ONE_MASK)
+            table[i] = (table[i] ushr 1) and RESET_MASK
+        }
+        size = (size ushr 1) - (count ushr 2)
+    }
+
+    private fun indexOf(item: Int, i: Int): Int {
+        var hash = (item.toLong() + SEEDS[i]) * SEEDS[i]
+        hash += hash ushr 32
+        return hash.toInt() and tableMask
+    }
+
+    private fun spread(x: Int): Int {
+        var h = ((x ushr 16) xor x) * 0x45d9f3b
+        h = ((h ushr 16) xor h) * 0x45d9f3b
+        return (h ushr 16) xor h
+    }
+
+    private fun ceilingPowerOfTwo(x: Int): Int {
+        if (x >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY
+        }
+        return 1 shl (32 - Integer.numberOfLeadingZeros(x - 1))
+    }
+
+    companion object {
+        private const val SAMPLE_FACTOR = 10
+        private const val MAXIMUM_CAPACITY = 1 shl 30
+        private const val RESET_MASK = 0x7777777777777777L
+        private const val ONE_MASK = 0x1111111111111111L
+        private val SEEDS = longArrayOf(0x2545F4914F6CDD1DL, 0x3C6EF372FE94F82BL,
+                0x27BB2EE687B0B0FDL, 0x1B873593CC9E2D51L)
+    }
+}
@@ -0,0 +1,86 @@
+package com.zeyad.usecases.cache
+
+import com.google.gson.FieldNamingStrategy
+import com.google.gson.annotations.SerializedName
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.serialization.GsonSerializer
+import org.json.JSONException
+import org.json.JSONObject
+import java.lang.reflect.Field
+import java.lang.reflect.Modifier
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Reads the id of a decoded item, so typed writes can be keyed without serializing the item.
+ *
+ * With the [GsonSerializer] the id is read from the field Gson serializes as the id column, going by
+ * [SerializedName] and the field naming strategy. That field is looked up once per class and id
+ * column. Classes without one, and every class under another serializer, whose names reflection
+ * cannot know, fall back to the JSON of the item.
+ */
+object IdReader {
+
+    private val fields = ConcurrentHashMap<Class<*>, ConcurrentHashMap<String, FieldRef>>()
+
+    fun read(item: Any, idColumnName: String): Any? {
+        val serializer = Config.serializer
+        if (serializer is GsonSerializer) {
+            val field = fieldOf(item.javaClass, idColumnName, serializer.gson.fieldNamingStrategy())
+                    .field
+            if (field != null) {
+                return field.get(item)
+            }
+        }
+        return try {
+            JSONObject(Config.serializer.toJson(item)).opt(idColumnName)
+        } catch (e: JSONException) {
+            null
+        }
+    }
+
+    private fun fieldOf(dataClass: Class<*>, idColumnName: String,
+                        naming: FieldNamingStrategy): FieldRef {
+        var classFields = fields[dataClass]
+        if (classFields == null) {
+            val created = ConcurrentHashMap<String, FieldRef>()
+            classFields = fields.putIfAbsent(dataClass, created) ?: created
+        }
+        val cached = classFields[idColumnName]
+        if (cached != null) {
+            return cached
+        }
+        val resolved = FieldRef(findField(dataClass, idColumnName, naming))
+        return classFields.putIfAbsent(idColumnName, resolved) ?: resolved
+    }
+
+    private fun findField(dataClass: Class<*>, idColumnName: String,
+                          naming: FieldNamingStrategy): Field? {
+        var named: Field? = null
+        var current: Class<*>? = dataClass
+        while (current != null && current != Any::class.java) {
+            for (field in current.declaredFields) {
+                if (Modifier.isStatic(field.modifiers) || Modifier.isTransient(field.modifiers)) {
+                    continue
+                }
+                val serializedName = field.getAnnotation(SerializedName::class.java)
+                if (serializedName != null && (serializedName.value == idColumnName
+                                || serializedName.alternate.contains(idColumnName))) {
+                    field.isAccessible = true
+                    return field
+                }
+                if (named == null && serializedName == null
+                        && naming.translateName(field) == idColumnName) {
+                    named = field
+                }
+            }
+            current = current.superclass
+        }
+        named?.isAccessible = true
+        return named
+    }
+
+    /**
+     * Holds the resolved field, or null if the class has none, so misses are cached too.
+     */
+    private class FieldRef(val field: Field?)
+}
@@ -0,0 +1,77 @@
+package com.zeyad.usecases.cache
+
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Thread safe index of the keys cached per data class.
+ *
+ * Classes and keys are held in [ConcurrentHashMap]s, which lock per bin rather than per map, so
+ * writers of different keys rarely contend and readers never block. Iteration goes through
+ * [snapshot], which copies the keys of a class without stopping concurrent writers.
+ *
+ * A class whose keys can no longer be trusted to be all of its cached items, e.g. after one was
+ * evicted, is [invalidate]d. It then has no snapshot and indexes nothing until a whole list of it
+ * is cached again and [revalidate]s it, so a list of it is never served short of an item.
+ */
+class KeyIndex {
+
+    private val keys = ConcurrentHashMap<ClassToken, MutableSet<CacheKey>>()
+    private val incomplete = Collections.newSetFromMap(ConcurrentHashMap<ClassToken, Boolean>())
+
+    fun add(key: CacheKey) {
+        if (key.token !in incomplete) {
+            keysOf(key.token).add(key)
+        }
+    }
+
+    fun remove(key: CacheKey) {
+        keys[key.token]?.remove(key)
+    }
+
+    /**
+     * Marks the class of [key] incomplete and drops its keys.
+     */
+    fun invalidate(key: CacheKey) {
+        incomplete.add(key.token)
+        keys.remove(key.token)
+    }
+
+    /**
+     * Lets an invalidated [dataClass] index its keys again, before a whole list of it is cached.
+     */
+    fun revalidate(dataClass: Class<*>) {
+        incomplete.remove(ClassToken.of(dataClass))
+    }
+
+    fun contains(key: CacheKey): Boolean = keys[key.token]?.contains(key) == true
+
+    /**
+     * @return a copy of the keys indexed for [dataClass], or null if none was ever added or the
+     * class was invalidated.
+     */
+    fun snapshot(dataClass: Class<*>): List<CacheKey>? {
+        val token = ClassToken.of(dataClass)
+        if (token in incomplete) {
+            return null
+        }
+        val classKeys = keys[token] ?: return null
+        return ArrayList(classKeys)
+    }
+
+    fun size(dataClass: Class<*>): Int = keys[ClassToken.of(dataClass)]?.size ?: 0
+
+    fun clear() {
+        incomplete.clear()
+        keys.clear()
+    }
+
+    private fun keysOf(token: ClassToken): MutableSet<CacheKey> {
+        val classKeys = keys[token]
+        if (classKeys != null) {
+            return classKeys
+        }
+        val created = Collections.newSetFromMap(ConcurrentHashMap<CacheKey, Boolean>())
+        return keys.putIfAbsent(token, created) ?: created
+    }
+}
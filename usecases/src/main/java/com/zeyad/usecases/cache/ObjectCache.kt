@@ -0,0 +1,228 @@
+package com.zeyad.usecases.cache
+
+import java.util.*
+
+/**
+ * In-heap tier of the [com.zeyad.usecases.stores.MemoryStore]. Holds the decoded model
+ * instances keyed by their [CacheKey], so a hit hands back the very same reference without
+ * going through Storo or Gson.
+ *
+ * Entries are bounded by [maximumWeight] using a W-TinyLFU policy: new entries land in a small
+ * LRU window, and only make it into the main space if the [FrequencySketch] estimates them to be
+ * used more often than the entry they would replace. One-off scans therefore stay in the window
+ * and do not push the hot working set out.
+ */
+class ObjectCache(private val maximumWeight: Long = DEFAULT_MAXIMUM_SIZE.toLong(),
+                  private val weigher: Weigher = Weigher.SINGLETON) {
+
+    /**
+     * Notified with the keys that are no longer resident, and whether they expired rather than lost
+     * their place to other entries, after the cache lock is released.
+     */
+    var evictionListener: ((CacheKey, Boolean) -> Unit)? = null
+
+    private val windowMaximum: Long = Math.max(1L, maximumWeight / 100)
+    private val mainMaximum: Long = Math.max(0L, maximumWeight - windowMaximum)
+    private val protectedMaximum: Long = mainMaximum * 4 / 5
+    private val sketch = FrequencySketch(Math.min(maximumWeight, MAXIMUM_SKETCH_SIZE).toInt())
+    private val window = LinkedHashMap<CacheKey, Entry>()
+    private val probation = LinkedHashMap<CacheKey, Entry>()
+    private val protectedSegment = LinkedHashMap<CacheKey, Entry>()
+    private var windowWeight: Long = 0
+    private var probationWeight: Long = 0
+    private var protectedWeight: Long = 0
+    private var longestGracePeriod: Long = 0
+
+    /**
+     * @return the cached instance, or null if it is absent or expired.
+     */
+    fun get(key: CacheKey): Any? = getStale(key, 0)
+
+    /**
+     * @return the cached instance while it is fresh or expired for less than [gracePeriod]
+     * milliseconds, or null otherwise.
+     *
+     * An expired entry is only dropped once it is past the longest grace period asked for so far,
+     * so a plain [get] does not take away the stale value a revalidating request would serve.
+     */
+    fun getStale(key: CacheKey, gracePeriod: Long): Any? {
+        var expired = false
+        val value = synchronized(this) {
+            sketch.increment(key)
+            longestGracePeriod = Math.max(longestGracePeriod, gracePeriod)
+            val entry = find(key)
+            val now = System.currentTimeMillis()
+            when {
+                entry == null -> null
+                entry.expiresAt <= now - gracePeriod -> {
+                    if (entry.expiresAt <= now - longestGracePeriod) {
+                        removeEntry(key)
+                        expired = true
+                    }
+                    null
+                }
+                else -> {
+                    onHit(key, entry)
+                    entry.value
+                }
+            }
+        }
+        if (expired) {
+            notifyEvicted(listOf(key), true)
+        }
+        return value
+    }
+
+    /**
+     * @return true if the entry is absent or past its expiry, without counting as an access.
+     */
+    @Synchronized
+    fun isExpired(key: CacheKey): Boolean {
+        val entry = find(key) ?: return true
+        return entry.expiresAt <= System.currentTimeMillis()
+    }
+
+    fun put(key: CacheKey, value: Any, expiresAt: Long) {
+        val evicted = ArrayList<CacheKey>()
+        synchronized(this) {
+            sketch.increment(key)
+            val weight = weigher.weigh(key, value)
+            val existing = find(key)
+            if (existing != null) {
+                addWeight(existing.segment, weight.toLong() - existing.weight)
+                existing.value = value
+                existing.expiresAt = expiresAt
+                existing.weight = weight
+                onHit(key, existing)
+            } else {
+                window[key] = Entry(value, expiresAt, weight, Segment.WINDOW)
+                windowWeight += weight
+            }
+            evict(evicted)
+        }
+        notifyEvicted(evicted, false)
+    }
+
+    @Synchronized
+    fun remove(key: CacheKey) {
+        removeEntry(key)
+    }
+
+    @Synchronized
+    fun size(): Int = window.size + probation.size + protectedSegment.size
+
+    @Synchronized
+    fun clear() {
+        window.clear()
+        probation.clear()
+        protectedSegment.clear()
+        windowWeight = 0
+        probationWeight = 0
+        protectedWeight = 0
+    }
+
+    private fun find(key: CacheKey): Entry? = window[key] ?: probation[key] ?: protectedSegment[key]
+
+    private fun onHit(key: CacheKey, entry: Entry) {
+        when (entry.segment) {
+            Segment.WINDOW -> moveToTail(window, key, entry)
+            Segment.PROTECTED -> moveToTail(protectedSegment, key, entry)
+            Segment.PROBATION -> {
+                probation.remove(key)
+                probationWeight -= entry.weight
+                entry.segment = Segment.PROTECTED
+                protectedSegment[key] = entry
+                protectedWeight += entry.weight
+                while (protectedWeight > protectedMaximum) {
+                    val demotedKey = eldestOf(protectedSegment) ?: break
+                    val demoted = protectedSegment.remove(demotedKey)!!
+                    protectedWeight -= demoted.weight
+                    demoted.segment = Segment.PROBATION
+                    probation[demotedKey] = demoted
+                    probationWeight += demoted.weight
+                }
+            }
+        }
+    }
+
+    private fun evict(evicted: MutableList<CacheKey>) {
+        while (windowWeight > windowMaximum) {
+            val candidateKey = eldestOf(window) ?: break
+            val candidate = window.remove(candidateKey)!!
+            windowWeight -= candidate.weight
+            admit(candidateKey, candidate, evicted)
+        }
+        while (windowWeight + probationWeight + protectedWeight > maximumWeight) {
+            val victimKey = eldestOf(probation) ?: eldestOf(protectedSegment) ?: eldestOf(window)
+            ?: break
+            removeEntry(victimKey)
+            evicted.add(victimKey)
+        }
+    }
+
+    /**
+     * Lets the candidate leaving the window into the main space only if it is estimated to be
+     * more popular than every victim it has to replace.
+     */
+    private fun admit(candidateKey: CacheKey, candidate: Entry, evicted: MutableList<CacheKey>) {
+        if (candidate.weight > mainMaximum) {
+            evicted.add(candidateKey)
+            return
+        }
+        val candidateFrequency = sketch.frequency(candidateKey)
+        while (probationWeight + protectedWeight + candidate.weight > mainMaximum) {
+            val victimKey = eldestOf(probation) ?: eldestOf(protectedSegment)
+            if (victimKey == null || candidateFrequency <= sketch.frequency(victimKey)) {
+                evicted.add(candidateKey)
+                return
+            }
+            removeEntry(victimKey)
+            evicted.add(victimKey)
+        }
+        candidate.segment = Segment.PROBATION
+        probation[candidateKey] = candidate
+        probationWeight += candidate.weight
+    }
+
+    private fun removeEntry(key: CacheKey) {
+        val entry = window.remove(key) ?: probation.remove(key) ?: protectedSegment.remove(key)
+        ?: return
+        addWeight(entry.segment, -entry.weight.toLong())
+    }
+
+    private fun addWeight(segment: Segment, delta: Long) {
+        when (segment) {
+            Segment.WINDOW -> windowWeight += delta
+            Segment.PROBATION -> probationWeight += delta
+            Segment.PROTECTED -> protectedWeight += delta
+        }
+    }
+
+    private fun moveToTail(segment: LinkedHashMap<CacheKey, Entry>, key: CacheKey, entry: Entry) {
+        segment.remove(key)
+        segment[key] = entry
+    }
+
+    private fun eldestOf(segment: LinkedHashMap<CacheKey, Entry>): CacheKey? {
+        return if (segment.isEmpty()) null else segment.keys.iterator().next()
+    }
+
+    private fun notifyEvicted(keys: List<CacheKey>, expired: Boolean) {
+        val listener = evictionListener ?: return
+        for (key in keys) {
+            listener.invoke(key, expired)
+        }
+    }
+
+    private enum class Segment {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private class Entry(var value: Any, var expiresAt: Long, var weight: Int, var segment: Segment)
+
+    companion object {
+        const val DEFAULT_MAXIMUM_SIZE = 1024
+        const val NO_EXPIRY = Long.MAX_VALUE
+        private const val MAXIMUM_SKETCH_SIZE = 1L shl 20
+    }
+}
@@ -0,0 +1,61 @@
+package com.zeyad.usecases.cache
+
+import java.util.*
+
+/**
+ * Remembers which items a list request returned, as the ordered keys of the entries held by the
+ * [ObjectCache], keyed by the data class and the url of the request. Items are stored once in
+ * the [ObjectCache] no matter how many queries reference them.
+ *
+ * Holds at most [maximumSize] queries, evicting the least recently used one.
+ */
+class QueryCache(private val maximumSize: Int = DEFAULT_MAXIMUM_SIZE) {
+
+    private val queries = object : LinkedHashMap<Key, Query>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Query>): Boolean {
+            return size > maximumSize
+        }
+    }
+
+    /**
+     * @return the query while it is fresh or expired for less than [gracePeriod] milliseconds,
+     * or null otherwise.
+     */
+    @Synchronized
+    fun get(key: Key, gracePeriod: Long): Query? {
+        val query = queries[key] ?: return null
+        if (query.expiresAt <= System.currentTimeMillis() - gracePeriod) {
+            queries.remove(key)
+            return null
+        }
+        return query
+    }
+
+    @Synchronized
+    fun put(key: Key, keys: List<CacheKey>, expiresAt: Long) {
+        queries[key] = Query(keys, expiresAt)
+    }
+
+    @Synchronized
+    fun remove(key: Key) {
+        queries.remove(key)
+    }
+
+    @Synchronized
+    fun size(): Int = queries.size
+
+    @Synchronized
+    fun clear() {
+        queries.clear()
+    }
+
+    data class Key(val dataClass: Class<*>, val url: String)
+
+    class Query(val keys: List<CacheKey>, val expiresAt: Long) {
+        fun isExpired(): Boolean = expiresAt <= System.currentTimeMillis()
+    }
+
+    companion object {
+        const val DEFAULT_MAXIMUM_SIZE = 256
+    }
+}
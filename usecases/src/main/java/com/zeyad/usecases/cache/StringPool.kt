@@ -0,0 +1,51 @@
+package com.zeyad.usecases.cache
+
+import java.lang.ref.WeakReference
+import java.util.*
+
+/**
+ * Bounded pool of decoded strings, so equal values repeated across the cached models, such as
+ * logins, languages or statuses, share one instance instead of one each.
+ *
+ * Entries are held weakly and dropped once no model references them. Each segment is cleared when
+ * it reaches its share of [maxSize], which bounds the pool without tracking recency.
+ *
+ * @param maxLength strings longer than this are only pooled when read into a field annotated with
+ * [com.zeyad.usecases.adapters.Intern].
+ */
+class StringPool(maxSize: Int = DEFAULT_MAX_SIZE, val maxLength: Int = DEFAULT_MAX_LENGTH) {
+
+    private val segmentSize = Math.max(1, maxSize / SEGMENTS)
+    private val segments = Array(SEGMENTS) { WeakHashMap<String, WeakReference<String>>() }
+
+    /**
+     * @return the pooled instance equal to [value], [value] itself if there was none.
+     */
+    fun intern(value: String): String {
+        val hash = value.hashCode()
+        val segment = segments[(hash xor (hash ushr 16)) and (SEGMENTS - 1)]
+        synchronized(segment) {
+            val pooled = segment[value]?.get()
+            if (pooled != null) {
+                return pooled
+            }
+            if (segment.size >= segmentSize) {
+                segment.clear()
+            }
+            segment[value] = WeakReference(value)
+            return value
+        }
+    }
+
+    /**
+     * Pools [value] if it is at most [maxLength] characters long.
+     */
+    fun internIfShort(value: String): String =
+            if (value.length <= maxLength) intern(value) else value
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 8192
+        const val DEFAULT_MAX_LENGTH = 32
+        private const val SEGMENTS = 16
+    }
+}
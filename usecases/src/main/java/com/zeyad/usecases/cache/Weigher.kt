@@ -0,0 +1,17 @@
+package com.zeyad.usecases.cache
+
+/**
+ * Calculates the weight of a cached instance, the [ObjectCache] bounds the sum of the weights
+ * by the configured cache size. The default weighs every entry as one, so the cache size is a
+ * number of entries; return an estimate in bytes to bound the cache by memory instead.
+ */
+interface Weigher {
+
+    fun weigh(key: CacheKey, value: Any): Int
+
+    companion object {
+        val SINGLETON: Weigher = object : Weigher {
+            override fun weigh(key: CacheKey, value: Any): Int = 1
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.zeyad.usecases.db
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+
+/**
+ * Single table database of serialized entities, keyed by their class and id, for [BlobManager].
+ *
+ * The primary key on (type, id) is the index lookups by id go through.
+ */
+class BlobDatabase(context: Context, name: String = NAME)
+    : SQLiteOpenHelper(context.applicationContext, name, null, VERSION) {
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL("CREATE TABLE $TABLE ($TYPE TEXT NOT NULL, $ID TEXT NOT NULL, "
+                + "$JSON BLOB NOT NULL, $UPDATED_AT INTEGER NOT NULL, PRIMARY KEY ($TYPE, $ID))")
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        db.execSQL("DROP TABLE IF EXISTS $TABLE")
+        onCreate(db)
+    }
+
+    companion object {
+        const val NAME = "usecases_blobs.db"
+        const val TABLE = "blobs"
+        const val TYPE = "type"
+        const val ID = "id"
+        const val JSON = "json"
+        const val UPDATED_AT = "updated_at"
+        private const val VERSION = 1
+    }
+}
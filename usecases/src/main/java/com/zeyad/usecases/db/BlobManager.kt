@@ -0,0 +1,215 @@
+package com.zeyad.usecases.db
+
+import android.arch.persistence.room.EmptyResultSetException
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.Mockable
+import com.zeyad.usecases.cache.IdReader
+import com.zeyad.usecases.db.BlobDatabase.Companion.ID
+import com.zeyad.usecases.db.BlobDatabase.Companion.JSON
+import com.zeyad.usecases.db.BlobDatabase.Companion.TABLE
+import com.zeyad.usecases.db.BlobDatabase.Companion.TYPE
+import com.zeyad.usecases.db.BlobDatabase.Companion.UPDATED_AT
+import io.reactivex.Flowable
+import io.reactivex.Single
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * [DataBaseManager] that keeps the JSON of each entity in the generic table of a [BlobDatabase],
+ * so any class can be persisted without a Room entity, a [BaseDao] or a [DaoResolver] branch.
+ *
+ * JSON payloads are stored as they are, without being decoded, and entities are serialized once.
+ * Reads hand back lists that decode each item on first access. [getQuery] runs against the blobs
+ * table and has to select its json column.
+ *
+ * @param idColumnName the JSON property the entities are keyed by.
+ */
+@Mockable
+class BlobManager(private val db: BlobDatabase,
+                  private val idColumnName: String = "id") : DataBaseManager {
+
+    override fun <E> getById(idColumnName: String, itemId: Any, clazz: Class<E>): Flowable<E> {
+        return Single.fromCallable {
+            val rows = read("SELECT $JSON FROM $TABLE WHERE $TYPE = ? AND $ID = ?",
+                    arrayOf(clazz.name, keyOf(itemId)))
+            if (rows.isEmpty()) {
+                throw EmptyResultSetException("No ${clazz.simpleName} with $idColumnName $itemId")
+            }
+            decode(rows[0], clazz)
+        }.toFlowable()
+    }
+
+    override fun <E> getAll(clazz: Class<E>): Flowable<List<E>> {
+        return Single.fromCallable<List<E>> {
+            LazyList(read("SELECT $JSON FROM $TABLE WHERE $TYPE = ?", arrayOf(clazz.name)), clazz)
+        }.toFlowable()
+    }
+
+    override fun <E> getQuery(query: String, clazz: Class<E>): Flowable<List<E>> {
+        return Single.fromCallable<List<E>> { LazyList(read(query, null), clazz) }.toFlowable()
+    }
+
+    override fun <E> put(entity: E, clazz: Class<E>): Single<Any> {
+        return putAll(listOf(entity), clazz)
+    }
+
+    override fun <E> put(jsonObject: JSONObject, clazz: Class<E>): Single<Any> {
+        return write(clazz) { insert ->
+            insert(jsonObject.opt(idColumnName), jsonObject.toString())
+        }
+    }
+
+    override fun <E> putAll(entities: List<E>, clazz: Class<E>): Single<Any> {
+        return write(clazz) { insert ->
+            for (entity in entities) {
+                if (entity != null) {
+                    insert(IdReader.read(entity as Any, idColumnName),
+                            Config.serializer.toJson(entity))
+                }
+            }
+        }
+    }
+
+    override fun <E> putAll(jsonArray: JSONArray, clazz: Class<E>): Single<Any> {
+        return write(clazz) { insert ->
+            for (i in 0 until jsonArray.length()) {
+                val item = jsonArray.optJSONObject(i)
+                if (item != null) {
+                    insert(item.opt(idColumnName), item.toString())
+                }
+            }
+        }
+    }
+
+    override fun <E> evictAll(clazz: Class<E>): Single<Boolean> {
+        return Single.fromCallable {
+            db.writableDatabase.delete(TABLE, "$TYPE = ?", arrayOf(clazz.name)) > 0
+        }
+    }
+
+    override fun <E> evictCollection(list: List<E>, clazz: Class<E>): Single<Boolean> {
+        val ids = list.mapNotNull {
+            if (it == null) null else IdReader.read(it as Any, idColumnName)
+        }
+        return evictCollectionById(ids, clazz, idColumnName)
+    }
+
+    override fun <E> evictCollectionById(list: List<Any>, clazz: Class<E>,
+                                         idFieldName: String): Single<Boolean> {
+        if (list.isEmpty()) {
+            return Single.just(false)
+        }
+        return Single.fromCallable {
+            val database = db.writableDatabase
+            var deleted = 0
+            database.beginTransaction()
+            try {
+                for (ids in list.chunked(MAX_BIND_ARGS)) {
+                    val args = ArrayList<String>(ids.size + 1)
+                    args.add(clazz.name)
+                    ids.mapTo(args) { keyOf(it) }
+                    deleted += database.delete(TABLE, "$TYPE = ? AND $ID IN "
+                            + "(${ids.joinToString(",") { "?" }})", args.toTypedArray())
+                }
+                database.setTransactionSuccessful()
+            } finally {
+                database.endTransaction()
+            }
+            deleted > 0
+        }
+    }
+
+    override fun <E> evictById(clazz: Class<E>, idFieldName: String,
+                               idFieldValue: Any): Single<Boolean> {
+        return Single.fromCallable {
+            db.writableDatabase.delete(TABLE, "$TYPE = ? AND $ID = ?",
+                    arrayOf(clazz.name, keyOf(idFieldValue))) > 0
+        }
+    }
+
+    private fun read(query: String, args: Array<String>?): List<ByteArray> {
+        db.readableDatabase.rawQuery(query, args).use { cursor ->
+            val rows = ArrayList<ByteArray>(cursor.count)
+            val column = cursor.getColumnIndexOrThrow(JSON)
+            while (cursor.moveToNext()) {
+                rows.add(cursor.getBlob(column))
+            }
+            return rows
+        }
+    }
+
+    /**
+     * Inserts the rows [block] hands to its insert function in one transaction, through a single
+     * compiled statement. Items without an id are skipped.
+     */
+    private inline fun write(clazz: Class<*>,
+                             crossinline block: ((Any?, String) -> Unit) -> Unit): Single<Any> {
+        return Single.fromCallable<Any> {
+            val database = db.writableDatabase
+            val updatedAt = System.currentTimeMillis()
+            var inserted = 0
+            database.beginTransaction()
+            try {
+                val statement = database.compileStatement("INSERT OR REPLACE INTO $TABLE "
+                        + "($TYPE, $ID, $JSON, $UPDATED_AT) VALUES (?, ?, ?, ?)")
+                block { id, json ->
+                    if (id != null && id != JSONObject.NULL) {
+                        statement.bindString(1, clazz.name)
+                        statement.bindString(2, keyOf(id))
+                        statement.bindBlob(3, json.toByteArray(Charsets.UTF_8))
+                        statement.bindLong(4, updatedAt)
+                        statement.executeInsert()
+                        inserted++
+                    }
+                }
+                statement.close()
+                database.setTransactionSuccessful()
+            } finally {
+                database.endTransaction()
+            }
+            inserted > 0
+        }
+    }
+
+    private fun <E> decode(json: ByteArray, clazz: Class<E>): E =
+            Config.serializer.fromJson(String(json, Charsets.UTF_8), clazz)
+
+    /**
+     * Rows read from the table, decoded into [clazz] when they are first accessed.
+     */
+    private inner class LazyList<E>(private val rows: List<ByteArray>,
+                                    private val clazz: Class<E>) : AbstractList<E>() {
+        private val items = arrayOfNulls<Any>(rows.size)
+
+        override val size: Int
+            get() = rows.size
+
+        override fun get(index: Int): E {
+            var item = items[index]
+            if (item == null) {
+                item = decode(rows[index], clazz)
+                items[index] = item
+            }
+            return item as E
+        }
+    }
+
+    companion object {
+        /**
+         * Stays below the 999 host parameters SQLite allows in a single statement.
+         */
+        private const val MAX_BIND_ARGS = 500
+
+        /**
+         * Ids are stored as text, whole numbers without a fraction so 1, 1L and the 1.0 of a
+         * decoded map all match.
+         */
+        internal fun keyOf(id: Any): String {
+            if (id is Number && id.toDouble() == Math.floor(id.toDouble())
+                    && !java.lang.Double.isInfinite(id.toDouble())) {
+                return id.toLong().toString()
+            }
+            return id.toString()
+        }
+    }
+}
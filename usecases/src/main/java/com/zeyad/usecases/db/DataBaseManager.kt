@@ -44,6 +44,9 @@ interface DataBaseManager {
     /**
      * Puts and element into the DB.
      *
+     * Parses [jsonObject] first, callers holding the decoded entity should pass it to the typed
+     * overload instead.
+     *
      * @param jsonObject Element to insert in the DB.
      * @param clazz  Class type of the items to be put.
      */
@@ -60,6 +63,9 @@ interface DataBaseManager {
     /**
      * Puts and element into the DB.
      *
+     * Parses [jsonArray] first, callers holding the decoded entities should pass them to the
+     * typed overload instead.
+     *
      * @param jsonArray    Element to insert in the DB.
      * @param clazz    Class type of the items to be put.
      */
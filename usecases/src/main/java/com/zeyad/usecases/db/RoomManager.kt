@@ -4,6 +4,7 @@ import android.arch.persistence.db.SimpleSQLiteQuery
 import android.arch.persistence.room.RoomDatabase
 import com.zeyad.usecases.Config
 import com.zeyad.usecases.Mockable
+import com.zeyad.usecases.serialization.Serializer
 import io.reactivex.Flowable
 import io.reactivex.Single
 import org.json.JSONArray
@@ -42,7 +43,8 @@ class RoomManager(private val db: RoomDatabase, private val daoResolver: DaoReso
     override fun <E> put(jsonObject: JSONObject, clazz: Class<E>): Single<Any> {
         return db.singleTransactionBlock {
             Single.just(daoResolver.getDao(clazz)
-                    .insertItemsReplace(Config.gson.fromJson(jsonObject.toString(), clazz)).isNotEmpty())
+                    .insertItemsReplace(Config.serializer.fromJson<E>(jsonObject.toString(), clazz))
+                    .isNotEmpty())
         }
     }
 
@@ -53,11 +55,8 @@ class RoomManager(private val db: RoomDatabase, private val daoResolver: DaoReso
     }
 
     override fun <E> putAll(jsonArray: JSONArray, clazz: Class<E>): Single<Any> {
-        val list = mutableListOf<E>()
-        val length = jsonArray.length()
-        for (i in 0 until length) {
-            list.add(Config.gson.fromJson(jsonArray.get(i).toString(), clazz))
-        }
+        val list = Config.serializer.fromJson<List<E>>(jsonArray.toString(),
+                Serializer.listType(clazz))
         return putAll(list, clazz)
     }
 
@@ -75,16 +74,32 @@ class RoomManager(private val db: RoomDatabase, private val daoResolver: DaoReso
     }
 
     override fun <E> evictCollectionById(list: List<Any>, clazz: Class<E>, idFieldName: String): Single<Boolean> {
-        return db.singleTypedTransactionBlock {
-            Single.just(list).flatMap { evictById(clazz, idFieldName, it) }
+        if (list.isEmpty()) {
+            return Single.just(false)
         }
+        val dao = daoResolver.getDao(clazz)
+        return Flowable.fromIterable(list.chunked(MAX_BIND_ARGS))
+                .concatMapSingle { ids ->
+                    dao.getQuery(SimpleSQLiteQuery("Select * From ${clazz.simpleName} " +
+                            "Where $idFieldName IN (${ids.joinToString(",") { "?" }})", ids.toTypedArray()))
+                }
+                .map { dao.deleteItems(it) }
+                .reduce(0) { deleted, count -> deleted + count }
+                .map { it > 0 }
     }
 
     override fun <E> evictById(clazz: Class<E>, idFieldName: String, idFieldValue: Any): Single<Boolean> {
-        return db.singleTypedTransactionBlock {
-            Single.just(daoResolver.getDao(clazz)
-                    .deleteItems(getById(idFieldName, idFieldValue, clazz).blockingFirst()) > 0)
-        }
+        val dao = daoResolver.getDao(clazz)
+        return dao.getItem(SimpleSQLiteQuery("Select * From ${clazz.simpleName} " +
+                "Where $idFieldName=$idFieldValue"))
+                .map { dao.deleteItems(it) > 0 }
+    }
+
+    companion object {
+        /**
+         * Stays below the 999 host parameters SQLite allows in a single statement.
+         */
+        private const val MAX_BIND_ARGS = 500
     }
 }
 
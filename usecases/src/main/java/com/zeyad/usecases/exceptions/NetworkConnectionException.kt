@@ -3,7 +3,7 @@ package com.zeyad.usecases.exceptions
 /**
  * Exception throw by the application when a there is a network connection exception.
  */
-class NetworkConnectionException(message: String) : Exception(message), IErrorBundle {
+open class NetworkConnectionException(message: String) : Exception(message), IErrorBundle {
     override fun message(): String {
         return localizedMessage
     }
@@ -0,0 +1,12 @@
+package com.zeyad.usecases.exceptions
+
+/**
+ * Exception thrown for a queuable write that could not reach the server. It was saved locally and
+ * waits in the outbox to be sent once the network is back.
+ */
+class WriteQueuedException(cause: Throwable) :
+        NetworkConnectionException("Write queued until the server can be reached") {
+    init {
+        initCause(cause)
+    }
+}
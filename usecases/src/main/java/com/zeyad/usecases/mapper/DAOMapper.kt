@@ -1,13 +1,34 @@
 package com.zeyad.usecases.mapper
 
-import com.google.gson.Gson
 import com.zeyad.usecases.Config
+import com.zeyad.usecases.serialization.Serializer
+import io.reactivex.Completable
+import io.reactivex.Flowable
+import io.reactivex.Scheduler
+import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
 import java.util.*
 
-class DAOMapper(private val gson: Gson = Config.gson) {
+/**
+ * @param serializer converts the objects, [Config.serializer] at the time of the mapping if null.
+ * @param parallelThreshold size from which [mapAll] maps a list on [scheduler] in parallel, 0 to
+ * map on the subscribing thread only.
+ * @param parallelism how many chunks of a list are mapped at the same time.
+ */
+class DAOMapper(private val serializer: Serializer? = null,
+                private val parallelThreshold: Int = 0,
+                private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+                private val scheduler: Scheduler = Schedulers.computation()) {
 
+    /**
+     * Hands [object] back as is when it already is a [domainClass], otherwise converts it with
+     * [Serializer.convert].
+     */
     fun <M> mapTo(`object`: Any?, domainClass: Class<*>): M {
-        return gson.fromJson<Any>(gson.toJson(`object`), domainClass) as M
+        if (domainClass.isInstance(`object`)) {
+            return `object` as M
+        }
+        return (serializer ?: Config.serializer).convert<Any>(`object`, domainClass) as M
     }
 
     /**
@@ -24,4 +45,43 @@ class DAOMapper(private val gson: Gson = Config.gson) {
         }
         return objects as M
     }
+
+    /**
+     * Like [mapAllTo], without blocking. Lists of at least [parallelThreshold] items are split
+     * into contiguous chunks mapped on [scheduler], at most [parallelism] at a time. Each chunk
+     * writes its own slots of the result, so the order of the list is kept.
+     */
+    fun <M> mapAll(list: List<*>, domainClass: Class<*>): Single<M> {
+        val size = list.size
+        if (parallelThreshold !in 1..size || parallelism <= 1) {
+            return Single.fromCallable { mapAllTo<M>(list, domainClass) }
+        }
+        val mapped = arrayOfNulls<Any>(size)
+        val chunkCount = parallelism * CHUNKS_PER_WORKER
+        val chunkSize = Math.max(1, (size + chunkCount - 1) / chunkCount)
+        val chunks = ArrayList<Completable>(chunkCount)
+        var from = 0
+        while (from < size) {
+            val start = from
+            val end = Math.min(size, start + chunkSize)
+            chunks.add(Completable.fromAction {
+                for (i in start until end) {
+                    mapped[i] = mapTo(list[i], domainClass)
+                }
+            }.subscribeOn(scheduler))
+            from = end
+        }
+        return Completable.merge(Flowable.fromIterable(chunks), parallelism)
+                .toSingle { ArrayList(Arrays.asList(*mapped)) as M }
+    }
+
+    companion object {
+        /**
+         * A starting point below which lists map faster on one thread than it takes to hand them
+         * to the pool. The crossover depends on the models and the device, DAOMapperBenchmark
+         * prints it.
+         */
+        const val DEFAULT_PARALLEL_THRESHOLD = 2000
+        private const val CHUNKS_PER_WORKER = 4
+    }
 }
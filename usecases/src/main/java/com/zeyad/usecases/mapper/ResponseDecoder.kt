@@ -0,0 +1,54 @@
+package com.zeyad.usecases.mapper
+
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.serialization.Serializer
+import io.reactivex.Emitter
+import io.reactivex.Flowable
+import io.reactivex.functions.BiConsumer
+import io.reactivex.functions.Consumer
+import okhttp3.ResponseBody
+import java.util.concurrent.Callable
+
+/**
+ * Decodes a response body straight into the requested class with the [Serializer], so the payload
+ * is parsed once instead of into maps first and then converted by the [DAOMapper].
+ *
+ * Bodies whose Content-Type is a registered wire format are read by that format, any other body by
+ * [serializer].
+ */
+class ResponseDecoder(private val serializer: Serializer = Config.serializer) {
+
+    fun <M> decode(body: ResponseBody, dataClass: Class<M>): M {
+        body.use { return serializerOf(it).fromJson(it.source(), dataClass) }
+    }
+
+    fun <M> decodeList(body: ResponseBody, dataClass: Class<M>): List<M> {
+        body.use {
+            return serializerOf(it).fromJson(it.source(), Serializer.listType(dataClass))
+        }
+    }
+
+    /**
+     * Reads the items of a JSON array one at a time, as they are requested downstream, so only the
+     * items in flight are held in memory. The body is closed on completion, error or cancellation.
+     */
+    fun <M> stream(body: ResponseBody, dataClass: Class<M>): Flowable<M> {
+        return Flowable.generate<M, Serializer.ArrayReader<M>>(Callable {
+            try {
+                serializerOf(body).arrayReader(body.source(), dataClass)
+            } catch (e: Exception) {
+                body.close()
+                throw e
+            }
+        }, BiConsumer<Serializer.ArrayReader<M>, Emitter<M>> { reader, emitter ->
+            if (reader.hasNext()) {
+                emitter.onNext(reader.next())
+            } else {
+                emitter.onComplete()
+            }
+        }, Consumer { body.close() })
+    }
+
+    private fun serializerOf(body: ResponseBody): Serializer =
+            Serializer.forMediaType(body.contentType()?.toString(), serializer)
+}
@@ -4,23 +4,31 @@ import android.util.Log
 import com.zeyad.usecases.BuildConfig
 import com.zeyad.usecases.Config
 import com.zeyad.usecases.Mockable
+import com.zeyad.usecases.mapper.ResponseDecoder
+import com.zeyad.usecases.serialization.SerializerConverterFactory
 import io.reactivex.Flowable
 import io.reactivex.Single
 import okhttp3.*
 import okhttp3.logging.HttpLoggingInterceptor
+import okio.Buffer
+import retrofit2.HttpException
 import retrofit2.Retrofit
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory
-import retrofit2.converter.gson.GsonConverterFactory
 import java.util.concurrent.Callable
 import java.util.concurrent.TimeUnit
 /**
  * Api Connection class used to retrieve data from the cloud. Implements [Callable] so when
  * executed asynchronously can return a value.
+ *
+ * All calls go through one [RestApi], and so one OkHttpClient with a single connection pool,
+ * dispatcher and TLS session cache. It is created on first use, see [init].
  */
 @Mockable
-class ApiConnection(val restApiWithoutCache: RestApi, val restApiWithCache: RestApi) {
-    private val restApi: RestApi
-        get() = if (Config.useApiWithCache) restApiWithCache else restApiWithoutCache
+class ApiConnection(restApiProvider: Lazy<RestApi>) {
+    val restApi: RestApi by restApiProvider
+    private val responseDecoder = ResponseDecoder()
+
+    constructor(restApi: RestApi) : this(lazyOf(restApi))
 
     fun dynamicDownload(url: String): Single<ResponseBody> {
         return restApi.dynamicDownload(url)
@@ -37,6 +45,31 @@ class ApiConnection(val restApiWithoutCache: RestApi, val restApiWithCache: Rest
         return restApi.dynamicGetObject(url) as Flowable<M>
     }
 
+    /**
+     * @param headers per request headers, e.g. a Cache-Control directive for the http cache.
+     */
+    fun <M> dynamicGetObject(url: String, shouldCache: Boolean,
+                             headers: Map<String, String>): Flowable<M> {
+        if (headers.isEmpty()) {
+            return dynamicGetObject(url, shouldCache)
+        }
+        if (shouldCache && !Config.useApiWithCache) {
+            logNoCache()
+        }
+        return restApi.dynamicGetObject(url, headers) as Flowable<M>
+    }
+
+    /**
+     * Decodes the response straight into [dataClass], without going through maps first.
+     */
+    fun <M> dynamicGetObject(url: String, shouldCache: Boolean, headers: Map<String, String>,
+                             dataClass: Class<M>): Flowable<M> {
+        if (shouldCache && !Config.useApiWithCache) {
+            logNoCache()
+        }
+        return restApi.dynamicGetBody(url, headers).map { responseDecoder.decode(it, dataClass) }
+    }
+
     fun <M> dynamicGetList(url: String): Flowable<List<M>> {
         return restApi.dynamicGetList(url) as Flowable<List<M>>
     }
@@ -48,14 +81,98 @@ class ApiConnection(val restApiWithoutCache: RestApi, val restApiWithCache: Rest
         return restApi.dynamicGetList(url) as Flowable<List<M>>
     }
 
+    /**
+     * @param headers per request headers, e.g. a Cache-Control directive for the http cache.
+     */
+    fun <M> dynamicGetList(url: String, shouldCache: Boolean,
+                           headers: Map<String, String>): Flowable<List<M>> {
+        if (headers.isEmpty()) {
+            return dynamicGetList(url, shouldCache)
+        }
+        if (shouldCache && !Config.useApiWithCache) {
+            logNoCache()
+        }
+        return restApi.dynamicGetList(url, headers) as Flowable<List<M>>
+    }
+
+    /**
+     * Decodes the response straight into a list of [dataClass], without going through maps first.
+     */
+    fun <M> dynamicGetList(url: String, shouldCache: Boolean, headers: Map<String, String>,
+                           dataClass: Class<M>): Flowable<List<M>> {
+        if (shouldCache && !Config.useApiWithCache) {
+            logNoCache()
+        }
+        return restApi.dynamicGetBody(url, headers).map { responseDecoder.decodeList(it, dataClass) }
+    }
+
+    /**
+     * Like the typed [dynamicGetObject], but completes without a value if the response did not
+     * change: the server answers 304 Not Modified to the validators [validators] holds for [url],
+     * or the body hashes to the fingerprint [fingerprints] holds for it. Either store may be null.
+     */
+    fun <M> dynamicGetObjectIfModified(url: String, shouldCache: Boolean,
+                                       headers: Map<String, String>, dataClass: Class<M>,
+                                       validators: ValidatorStore?,
+                                       fingerprints: FingerprintStore?): Flowable<M> {
+        return getIfModified(url, shouldCache, headers, validators, fingerprints) {
+            responseDecoder.decode(it, dataClass)
+        }
+    }
+
+    /**
+     * Like the typed [dynamicGetList], but completes without a value if the response did not
+     * change, see [dynamicGetObjectIfModified].
+     */
+    fun <M> dynamicGetListIfModified(url: String, shouldCache: Boolean,
+                                     headers: Map<String, String>, dataClass: Class<M>,
+                                     validators: ValidatorStore?,
+                                     fingerprints: FingerprintStore?): Flowable<List<M>> {
+        return getIfModified(url, shouldCache, headers, validators, fingerprints) {
+            responseDecoder.decodeList(it, dataClass)
+        }
+    }
+
+    /**
+     * Emits the items of the JSON array response one by one while it downloads.
+     */
+    fun <M> dynamicStreamList(url: String, shouldCache: Boolean, headers: Map<String, String>,
+                              dataClass: Class<M>): Flowable<M> {
+        if (shouldCache && !Config.useApiWithCache) {
+            logNoCache()
+        }
+        return restApi.dynamicStreamBody(url, headers)
+                .concatMap { responseDecoder.stream(it, dataClass) }
+    }
+
     fun <M> dynamicPost(url: String, requestBody: RequestBody): Single<M> {
         return restApi.dynamicPost(url, requestBody) as Single<M>
     }
 
+    /**
+     * Sends [headers], e.g. an Accept header, and decodes the response straight into
+     * [responseType] with the wire format of its Content-Type.
+     */
+    fun <M> dynamicPost(url: String, requestBody: RequestBody, headers: Map<String, String>,
+                        responseType: Class<M>): Single<M> {
+        return restApi.dynamicPostBody(url, requestBody, headers)
+                .map { responseDecoder.decode(it, responseType) }
+    }
+
     fun <M> dynamicPut(url: String, requestBody: RequestBody): Single<M> {
         return restApi.dynamicPut(url, requestBody) as Single<M>
     }
 
+    /**
+     * Sends [headers], e.g. an Accept header, and decodes the response straight into
+     * [responseType] with the wire format of its Content-Type.
+     */
+    fun <M> dynamicPut(url: String, requestBody: RequestBody, headers: Map<String, String>,
+                       responseType: Class<M>): Single<M> {
+        return restApi.dynamicPutBody(url, requestBody, headers)
+                .map { responseDecoder.decode(it, responseType) }
+    }
+
     fun <M> dynamicUpload(url: String, partMap: Map<String, RequestBody>, files: List<MultipartBody.Part>): Single<M> {
         return restApi.dynamicUpload(url, partMap, files) as Single<M>
     }
@@ -68,6 +185,60 @@ class ApiConnection(val restApiWithoutCache: RestApi, val restApiWithCache: Rest
         return restApi.dynamicPatch(url, body) as Single<M>
     }
 
+    /**
+     * Sends [headers], e.g. an Accept header, and decodes the response straight into
+     * [responseType] with the wire format of its Content-Type.
+     */
+    fun <M> dynamicPatch(url: String, body: RequestBody, headers: Map<String, String>,
+                         responseType: Class<M>): Single<M> {
+        return restApi.dynamicPatchBody(url, body, headers)
+                .map { responseDecoder.decode(it, responseType) }
+    }
+
+    private fun <T> getIfModified(url: String, shouldCache: Boolean, headers: Map<String, String>,
+                                  validators: ValidatorStore?, fingerprints: FingerprintStore?,
+                                  decode: (ResponseBody) -> T): Flowable<T> {
+        if (shouldCache && !Config.useApiWithCache) {
+            logNoCache()
+        }
+        return Flowable.defer {
+            restApi.dynamicGetResponse(url, validators?.headersFor(url, headers) ?: headers)
+        }.flatMap { response ->
+            val body = response.body()
+            when {
+                response.code() == HTTP_NOT_MODIFIED -> {
+                    response.errorBody()?.close()
+                    Flowable.empty<T>()
+                }
+                response.isSuccessful && body != null ->
+                    decodeIfChanged(url, body, fingerprints, decode)
+                            .doOnComplete { validators?.save(url, response.headers()) }
+                else -> Flowable.error<T>(HttpException(response))
+            }
+        }
+    }
+
+    /**
+     * Hashes the body while reading it off the network when there are [fingerprints], and only
+     * decodes it if the hash is not the one stored for [url]. The new hash is stored once the
+     * body decoded.
+     */
+    private fun <T> decodeIfChanged(url: String, body: ResponseBody,
+                                    fingerprints: FingerprintStore?,
+                                    decode: (ResponseBody) -> T): Flowable<T> {
+        if (fingerprints == null) {
+            return Flowable.just(decode(body))
+        }
+        val bytes = Buffer()
+        val fingerprint = FingerprintStore.read(body.source(), bytes)
+        if (fingerprints.matches(url, fingerprint)) {
+            return Flowable.empty()
+        }
+        val decoded = decode(ResponseBody.create(body.contentType(), bytes.size(), bytes))
+        fingerprints.save(url, fingerprint)
+        return Flowable.just(decoded)
+    }
+
     private fun logNoCache() {
         Log.e(javaClass.simpleName, CACHING_DISABLED)
     }
@@ -156,17 +327,19 @@ class ApiConnection(val restApiWithoutCache: RestApi, val restApiWithCache: Rest
         private const val CACHING_DISABLED = "There would be no caching. Since caching module is disabled."//,
         //            CACHE_CONTROL = "Cache-Control";
         private const val TIME_OUT = 15
+        private const val HTTP_NOT_MODIFIED = 304
 
-        fun initWithCache(
-                okHttpBuilder: OkHttpClient.Builder?, cache: Cache?): RestApi {
-
-            return createRetrofitClient(provideOkHttpClient(okHttpBuilder
-                    ?: builderForOkHttp, cache)).create(RestApi::class.java)
-        }
-
-        fun init(okHttpBuilder: OkHttpClient.Builder?): RestApi {
-            return createRetrofitClient(provideOkHttpClient(okHttpBuilder
-                    ?: builderForOkHttp, null)).create(RestApi::class.java)
+        /**
+         * Defers building the OkHttpClient, with [cache] if given, and the Retrofit proxy to the
+         * first call. Requests choose how they use the http cache with a Cache-Control header,
+         * see [com.zeyad.usecases.requests.GetRequest.Builder.cacheControl].
+         */
+        fun init(okHttpBuilder: OkHttpClient.Builder?, cache: Cache? = null): Lazy<RestApi> {
+            Config.useApiWithCache = cache != null
+            return lazy {
+                createRetrofitClient(provideOkHttpClient(okHttpBuilder ?: builderForOkHttp, cache))
+                        .create(RestApi::class.java)
+            }
         }
 
         fun provideHttpLoggingInterceptor(): HttpLoggingInterceptor {
@@ -184,21 +357,20 @@ class ApiConnection(val restApiWithoutCache: RestApi, val restApiWithCache: Rest
                     .readTimeout(TIME_OUT.toLong(), TimeUnit.SECONDS)
                     .writeTimeout(TIME_OUT.toLong(), TimeUnit.SECONDS)
 
+        /**
+         * Sets [cache] on a copy of [okHttpBuilder], leaving the caller's builder untouched.
+         */
         private fun provideOkHttpClient(
                 okHttpBuilder: OkHttpClient.Builder, cache: Cache?): OkHttpClient {
-            val useApiWithCache = cache != null
-            Config.useApiWithCache = useApiWithCache
-            if (useApiWithCache) {
-                okHttpBuilder.cache(cache)
-            }
-            return okHttpBuilder.build()
+            val client = okHttpBuilder.build()
+            return if (cache != null) client.newBuilder().cache(cache).build() else client
         }
 
         private fun createRetrofitClient(okHttpClient: OkHttpClient): Retrofit {
             return Retrofit.Builder()
                     .baseUrl(Config.baseURL)
                     .client(okHttpClient)
-                    .addConverterFactory(GsonConverterFactory.create(Config.gson))
+                    .addConverterFactory(SerializerConverterFactory(Config.serializer))
                     .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
                     .build()
         }
@@ -0,0 +1,50 @@
+package com.zeyad.usecases.network
+
+import android.content.Context
+import android.content.SharedPreferences
+import com.zeyad.usecases.Mockable
+import okio.Buffer
+import okio.HashingSource
+import okio.Okio
+import okio.Source
+
+/**
+ * Keeps a hash of the last response body to each url, for requests that opt in with
+ * [com.zeyad.usecases.requests.GetRequest.Builder.fingerprint], so a body that did not change is
+ * recognised even if the server sends no validators.
+ */
+@Mockable
+class FingerprintStore(private val preferences: SharedPreferences) {
+
+    constructor(context: Context) : this(context.getSharedPreferences(NAME, Context.MODE_PRIVATE))
+
+    fun matches(url: String, fingerprint: String): Boolean =
+            fingerprint == preferences.getString(url, null)
+
+    fun save(url: String, fingerprint: String) {
+        preferences.edit().putString(url, fingerprint).apply()
+    }
+
+    fun remove(url: String) {
+        preferences.edit().remove(url).apply()
+    }
+
+    fun clear() {
+        preferences.edit().clear().apply()
+    }
+
+    companion object {
+        private const val NAME = "usecases_fingerprints"
+
+        /**
+         * Reads all of [source] into [sink], hashing the bytes as they are read.
+         *
+         * @return the hex SHA-1 of the bytes.
+         */
+        fun read(source: Source, sink: Buffer): String {
+            val hashingSource = HashingSource.sha1(source)
+            Okio.buffer(hashingSource).use { it.readAll(sink) }
+            return hashingSource.hash().hex()
+        }
+    }
+}
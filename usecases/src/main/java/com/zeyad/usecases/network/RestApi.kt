@@ -5,6 +5,7 @@ import io.reactivex.Single
 import okhttp3.MultipartBody
 import okhttp3.RequestBody
 import okhttp3.ResponseBody
+import retrofit2.Response
 import retrofit2.http.*
 
 /**
@@ -18,12 +19,29 @@ interface RestApi {
     @GET
     fun dynamicGetObject(@Url url: String, shouldCache: Boolean): Flowable<Any>
 
+    @GET
+    fun dynamicGetObject(@Url url: String, @HeaderMap headers: Map<String, String>): Flowable<Any>
+
     @GET
     fun dynamicGetList(@Url url: String): Flowable<List<Any>>
 
     @GET
     fun dynamicGetList(@Url url: String, shouldCache: Boolean): Flowable<List<Any>>
 
+    @GET
+    fun dynamicGetList(@Url url: String, @HeaderMap headers: Map<String, String>): Flowable<List<Any>>
+
+    @GET
+    fun dynamicGetBody(@Url url: String, @HeaderMap headers: Map<String, String>): Flowable<ResponseBody>
+
+    @GET
+    fun dynamicGetResponse(@Url url: String,
+                           @HeaderMap headers: Map<String, String>): Flowable<Response<ResponseBody>>
+
+    @Streaming
+    @GET
+    fun dynamicStreamBody(@Url url: String, @HeaderMap headers: Map<String, String>): Flowable<ResponseBody>
+
     @POST
     fun dynamicPost(@Url url: String, @Body body: RequestBody): Single<Any>
 
@@ -33,6 +51,18 @@ interface RestApi {
     @PATCH
     fun dynamicPatch(@Url url: String, @Body requestBody: RequestBody): Single<Any>
 
+    @POST
+    fun dynamicPostBody(@Url url: String, @Body body: RequestBody,
+                        @HeaderMap headers: Map<String, String>): Single<ResponseBody>
+
+    @PUT
+    fun dynamicPutBody(@Url url: String, @Body body: RequestBody,
+                       @HeaderMap headers: Map<String, String>): Single<ResponseBody>
+
+    @PATCH
+    fun dynamicPatchBody(@Url url: String, @Body requestBody: RequestBody,
+                         @HeaderMap headers: Map<String, String>): Single<ResponseBody>
+
     @DELETE
     fun dynamicDelete(@Url url: String, @Body requestBody: RequestBody): Single<Any>
 
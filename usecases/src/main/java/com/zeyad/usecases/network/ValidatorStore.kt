@@ -0,0 +1,68 @@
+package com.zeyad.usecases.network
+
+import android.content.Context
+import android.content.SharedPreferences
+import com.zeyad.usecases.Mockable
+import okhttp3.Headers
+
+/**
+ * Keeps the ETag and Last-Modified validators of the last response to each url, so a later GET
+ * can ask the server whether the copy in the stores is still current.
+ *
+ * Only the validators are kept, the bodies they describe live in the disk and memory stores,
+ * which is why this works without an okHttp cache.
+ */
+@Mockable
+class ValidatorStore(private val preferences: SharedPreferences) {
+
+    constructor(context: Context) : this(context.getSharedPreferences(NAME, Context.MODE_PRIVATE))
+
+    /**
+     * @return [headers] with If-None-Match and If-Modified-Since added for what is stored for [url].
+     */
+    fun headersFor(url: String, headers: Map<String, String>): Map<String, String> {
+        val stored = preferences.getString(url, null) ?: return headers
+        val separator = stored.indexOf(SEPARATOR)
+        val eTag = stored.substring(0, separator)
+        val lastModified = stored.substring(separator + 1)
+        val conditional = HashMap(headers)
+        if (eTag.isNotEmpty()) {
+            conditional[IF_NONE_MATCH] = eTag
+        }
+        if (lastModified.isNotEmpty()) {
+            conditional[IF_MODIFIED_SINCE] = lastModified
+        }
+        return conditional
+    }
+
+    /**
+     * Stores the validators in the [headers] of a response to [url], forgetting the previous ones
+     * if it carries none.
+     */
+    fun save(url: String, headers: Headers) {
+        val eTag = headers.get(ETAG).orEmpty()
+        val lastModified = headers.get(LAST_MODIFIED).orEmpty()
+        if (eTag.isEmpty() && lastModified.isEmpty()) {
+            remove(url)
+        } else {
+            preferences.edit().putString(url, eTag + SEPARATOR + lastModified).apply()
+        }
+    }
+
+    fun remove(url: String) {
+        preferences.edit().remove(url).apply()
+    }
+
+    fun clear() {
+        preferences.edit().clear().apply()
+    }
+
+    companion object {
+        const val ETAG = "ETag"
+        const val LAST_MODIFIED = "Last-Modified"
+        const val IF_NONE_MATCH = "If-None-Match"
+        const val IF_MODIFIED_SINCE = "If-Modified-Since"
+        private const val NAME = "usecases_validators"
+        private const val SEPARATOR = '\n'
+    }
+}
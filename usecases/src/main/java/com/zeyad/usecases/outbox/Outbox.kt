@@ -0,0 +1,220 @@
+package com.zeyad.usecases.outbox
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import android.os.BatteryManager
+import android.util.Log
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.Mockable
+import com.zeyad.usecases.isNetworkAvailable
+import com.zeyad.usecases.network.ApiConnection
+import com.zeyad.usecases.requests.PostRequest
+import io.reactivex.Completable
+import io.reactivex.Flowable
+import io.reactivex.Scheduler
+import retrofit2.HttpException
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Keeps the queuable writes that could not reach the server in an [OutboxLog], and replays them
+ * once the network is back, or the device charges for the writes waiting for it.
+ *
+ * Writes are replayed oldest first, [batchSize] at a time with up to [parallelism] in flight.
+ * Writes to the same item, by request type and id whatever their url, are sent one after the other
+ * in the order they were made, and a POST or PUT replaces the queued ones it directly supersedes.
+ */
+@Mockable
+class Outbox(private val log: OutboxLog,
+             private val apiConnection: ApiConnection,
+             private val context: Context,
+             private val batchSize: Int = DEFAULT_BATCH_SIZE,
+             private val parallelism: Int = DEFAULT_PARALLELISM,
+             private val scheduler: Scheduler = Config.backgroundThread) {
+
+    private val draining = AtomicBoolean()
+    private var receiver: BroadcastReceiver? = null
+    private var closed = false
+
+    /**
+     * Queues [request] to be sent as [method], one of the [PostRequest] method constants. A POST or
+     * PUT supersedes the queued ones of the same method and url to the same item, as long as no
+     * other write to that item or its whole type was queued after them.
+     */
+    fun enqueue(method: String, request: PostRequest) {
+        val entry = log.append(method, request)
+        val entityId = entry.entityId
+        if (entityId != null && (method == PostRequest.POST || method == PostRequest.PUT)) {
+            val superseded = ArrayList<Long>()
+            for (older in log.pending().asReversed()) {
+                if (older.sequence == entry.sequence
+                        || older.request.requestType != request.requestType
+                        || older.entityId != null && older.entityId != entityId) {
+                    continue
+                }
+                if (older.entityId == null || older.method != method
+                        || older.request.fullUrl != request.fullUrl) {
+                    break
+                }
+                superseded.add(older.sequence)
+            }
+            log.acknowledge(superseded)
+        }
+        listen()
+    }
+
+    /**
+     * Starts replaying the writes a previous process left queued.
+     */
+    fun resume() {
+        Completable.fromAction {
+            if (!log.isEmpty()) {
+                listen()
+                replay()
+            }
+        }.subscribeOn(scheduler).subscribe({}, { Log.e(TAG, "Could not read the outbox", it) })
+    }
+
+    /**
+     * Sends the queued writes on the [scheduler], unless they are already being sent or the
+     * network is not reachable. A write the server rejects with a client error is dropped, any
+     * other failure stops the replay and leaves the rest queued for the next one.
+     */
+    fun replay() {
+        if (!isNetworkAvailable(context) || !draining.compareAndSet(false, true)) {
+            return
+        }
+        drain().subscribeOn(scheduler)
+                .doFinally { draining.set(false) }
+                .subscribe({}, { Log.w(TAG, "Replay stopped, the remaining writes stay queued", it) })
+    }
+
+    /**
+     * Sends the queued writes batch by batch, completing once none that can be sent now is left.
+     */
+    fun drain(): Completable = Completable.defer {
+        val batch = nextBatch()
+        if (batch.isEmpty()) {
+            Completable.complete()
+        } else {
+            Completable.mergeDelayError(Flowable.fromIterable(batch)
+                    .map { writes -> Completable.concat(writes.map { send(it) }) }, parallelism)
+                    .andThen(drain())
+        }
+    }
+
+    /**
+     * @return up to [batchSize] writes that can be sent now, grouped by the item they write, keyed
+     * by its type and id. A write held back by its constraints also holds back the later writes to
+     * the same item. A write without an item id, e.g. a list, waits for every earlier write of its
+     * type and holds back the later ones.
+     */
+    private fun nextBatch(): Collection<List<OutboxLog.Entry>> {
+        val unmetered by lazy { isOnUnmeteredNetwork() }
+        val charging by lazy { isCharging() }
+        val held = HashSet<String>()
+        val heldTypes = HashSet<Class<*>>()
+        val touchedTypes = HashSet<Class<*>>()
+        val batch = LinkedHashMap<String, MutableList<OutboxLog.Entry>>()
+        var size = 0
+        for (entry in log.pending()) {
+            if (size == batchSize) {
+                break
+            }
+            val type = entry.request.requestType
+            val entityId = entry.entityId
+            val key = type.name + '#' + entityId.orEmpty()
+            if (type in heldTypes || key in held || entityId == null && type in touchedTypes
+                    || entry.request.onWifi && !unmetered
+                    || entry.request.whileCharging && !charging) {
+                if (entityId == null) heldTypes.add(type) else held.add(key)
+                touchedTypes.add(type)
+                continue
+            }
+            batch.getOrPut(key) { mutableListOf() }.add(entry)
+            touchedTypes.add(type)
+            if (entityId == null) {
+                heldTypes.add(type)
+            }
+            size++
+        }
+        return batch.values
+    }
+
+    private fun send(entry: OutboxLog.Entry): Completable {
+        val request = entry.request
+        return Completable.defer {
+            val url = request.fullUrl
+            val body = request.payload.toRequestBody(request.requestType)
+            val headers = request.payload.headers()
+            val restApi = apiConnection.restApi
+            when (entry.method) {
+                PostRequest.DELETE -> apiConnection.dynamicDelete<Any>(url, body).ignoreElement()
+                PostRequest.PUT -> restApi.dynamicPutBody(url, body, headers)
+                        .doOnSuccess { it.close() }.ignoreElement()
+                PostRequest.PATCH -> restApi.dynamicPatchBody(url, body, headers)
+                        .doOnSuccess { it.close() }.ignoreElement()
+                else -> restApi.dynamicPostBody(url, body, headers)
+                        .doOnSuccess { it.close() }.ignoreElement()
+            }
+        }.onErrorResumeNext { e ->
+            if (e is HttpException && e.code() in 400..499 && e.code() != HTTP_TIMEOUT
+                    && e.code() != HTTP_TOO_MANY_REQUESTS) {
+                Log.e(TAG, "Dropping the ${entry.method} to ${request.fullUrl}, it was rejected", e)
+                Completable.complete()
+            } else {
+                Completable.error(e)
+            }
+        }.doOnComplete { log.acknowledge(listOf(entry.sequence)) }
+    }
+
+    /**
+     * Stops replaying on network and charger changes, for an outbox that is being replaced. The
+     * queued writes stay in the log for the next one.
+     */
+    @Synchronized
+    fun close() {
+        closed = true
+        receiver?.let { context.applicationContext.unregisterReceiver(it) }
+        receiver = null
+    }
+
+    @Synchronized
+    private fun listen() {
+        if (closed || receiver != null) {
+            return
+        }
+        val filter = IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION)
+        filter.addAction(Intent.ACTION_POWER_CONNECTED)
+        val replayer = object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                replay()
+            }
+        }
+        context.applicationContext.registerReceiver(replayer, filter)
+        receiver = replayer
+    }
+
+    private fun isOnUnmeteredNetwork(): Boolean {
+        val connectivityManager =
+                context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+        return !connectivityManager.isActiveNetworkMetered
+    }
+
+    private fun isCharging(): Boolean {
+        val battery = context.applicationContext
+                .registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0
+    }
+
+    companion object {
+        const val FILE_NAME = "usecases_outbox"
+        const val DEFAULT_BATCH_SIZE = 20
+        const val DEFAULT_PARALLELISM = 4
+        private const val TAG = "Outbox"
+        private const val HTTP_TIMEOUT = 408
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+    }
+}
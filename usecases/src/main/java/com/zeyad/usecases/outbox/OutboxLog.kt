@@ -0,0 +1,202 @@
+package com.zeyad.usecases.outbox
+
+import android.util.Log
+import com.zeyad.usecases.requests.PostRequest
+import java.io.*
+
+/**
+ * Append-only file of the writes waiting in the [Outbox].
+ *
+ * A write is appended as an entry holding the fields of its [PostRequest], and its removal as an
+ * acknowledgement of the entry's sequence number, so nothing is rewritten in place and an append
+ * cut short by the process dying only loses that record. Requests are written field by field
+ * behind a format version rather than parcelled, as a parcel's layout may change with any update.
+ * The file is rewritten with just the pending entries once acknowledgements make up most of it, and
+ * deleted once none is pending.
+ */
+class OutboxLog(private val file: File) {
+
+    private val entries = LinkedHashMap<Long, Entry>()
+    private var nextSequence = 0L
+    private var acknowledged = 0
+    private var loaded = false
+
+    @Synchronized
+    fun append(method: String, request: PostRequest): Entry {
+        load()
+        val entry = Entry(nextSequence++, method, request)
+        write { it.writeEntry(entry) }
+        entries[entry.sequence] = entry
+        return entry
+    }
+
+    @Synchronized
+    fun acknowledge(sequences: Collection<Long>) {
+        load()
+        val removed = sequences.filter { entries.remove(it) != null }
+        if (removed.isEmpty()) {
+            return
+        }
+        when {
+            entries.isEmpty() -> {
+                file.delete()
+                acknowledged = 0
+            }
+            acknowledged + removed.size > entries.size + COMPACTION_SLACK -> compact()
+            else -> {
+                write { output -> removed.forEach { output.writeAcknowledgement(it) } }
+                acknowledged += removed.size
+            }
+        }
+    }
+
+    /**
+     * @return the pending entries, oldest first.
+     */
+    @Synchronized
+    fun pending(): List<Entry> {
+        load()
+        return entries.values.toList()
+    }
+
+    @Synchronized
+    fun isEmpty(): Boolean {
+        load()
+        return entries.isEmpty()
+    }
+
+    private fun load() {
+        if (loaded) {
+            return
+        }
+        loaded = true
+        if (!file.exists()) {
+            return
+        }
+        var complete = true
+        try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                while (true) {
+                    val type = input.read()
+                    if (type == -1) {
+                        break
+                    }
+                    val sequence = input.readLong()
+                    if (type == ENTRY) {
+                        val method = input.readUTF()
+                        val bytes = ByteArray(input.readInt())
+                        input.readFully(bytes)
+                        val request = readRequest(bytes)
+                        if (request == null) {
+                            Log.w(TAG, "Dropping a $method written in an unknown format")
+                        } else {
+                            entries[sequence] = Entry(sequence, method, request)
+                        }
+                    } else if (type == ACKNOWLEDGEMENT) {
+                        entries.remove(sequence)
+                        acknowledged++
+                    } else {
+                        throw IOException("Unknown record type $type")
+                    }
+                    nextSequence = maxOf(nextSequence, sequence + 1)
+                }
+            }
+        } catch (e: EOFException) {
+            complete = false
+        } catch (e: Exception) {
+            Log.e(TAG, "Outbox log is corrupt, keeping the writes read before the damage", e)
+            complete = false
+        }
+        if (!complete) {
+            compact()
+        }
+    }
+
+    /**
+     * Rewrites the file with only the pending entries, so it ends on a whole record again.
+     */
+    private fun compact() {
+        val temporary = File(file.path + ".tmp")
+        DataOutputStream(BufferedOutputStream(FileOutputStream(temporary))).use { output ->
+            entries.values.forEach { output.writeEntry(it) }
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete()
+            throw IOException("Could not replace $file")
+        }
+        acknowledged = 0
+    }
+
+    private inline fun write(block: (DataOutputStream) -> Unit) {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use(block)
+        FileOutputStream(file, true).use {
+            it.write(bytes.toByteArray())
+            it.fd.sync()
+        }
+    }
+
+    private fun DataOutputStream.writeEntry(entry: Entry) {
+        val bytes = writeRequest(entry.request)
+        writeByte(ENTRY)
+        writeLong(entry.sequence)
+        writeUTF(entry.method)
+        writeInt(bytes.size)
+        write(bytes)
+    }
+
+    private fun DataOutputStream.writeAcknowledgement(sequence: Long) {
+        writeByte(ACKNOWLEDGEMENT)
+        writeLong(sequence)
+    }
+
+    /**
+     * Writes the request behind a [FORMAT_VERSION] byte, so a later version of the library can tell
+     * the records it can not read from damaged ones.
+     */
+    private fun writeRequest(request: PostRequest): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use {
+            it.writeByte(FORMAT_VERSION)
+            request.writeTo(it)
+        }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * @return the request, or null if it was written in another format.
+     */
+    private fun readRequest(bytes: ByteArray): PostRequest? {
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        if (input.readUnsignedByte() != FORMAT_VERSION) {
+            return null
+        }
+        return PostRequest.readFrom(input)
+    }
+
+    /**
+     * A queued write, [method] is one of the [PostRequest] method constants.
+     */
+    class Entry(val sequence: Long, val method: String, val request: PostRequest) {
+
+        /**
+         * Id of the item the request writes, null for a list or a payload without one.
+         */
+        val entityId: String? by lazy {
+            val payload = request.payload
+            if (payload.isArray || request.idColumnName.isEmpty()) {
+                null
+            } else {
+                payload.toJSONObject().opt(request.idColumnName)?.toString()
+            }
+        }
+    }
+
+    companion object {
+        private const val TAG = "OutboxLog"
+        private const val ENTRY = 1
+        private const val ACKNOWLEDGEMENT = 2
+        private const val COMPACTION_SLACK = 64
+        private const val FORMAT_VERSION = 1
+    }
+}
@@ -0,0 +1,28 @@
+package com.zeyad.usecases.requests
+
+/**
+ * Decides which tier serves a request and whether its result is written to the memory cache.
+ */
+enum class CachePolicy {
+    /**
+     * Serve from the memory cache only, completing without a value on a miss.
+     */
+    CACHE_ONLY,
+    /**
+     * Serve from the memory cache and go to the network on a miss.
+     */
+    CACHE_FIRST,
+    /**
+     * Go to the network and fall back to the memory cache if the call fails.
+     */
+    NETWORK_FIRST,
+    /**
+     * Go to the network and do not read or write the memory cache.
+     */
+    NETWORK_ONLY,
+    /**
+     * Serve from the memory cache, even if expired within a grace period, then refresh from the
+     * network.
+     */
+    STALE_WHILE_REVALIDATE
+}
@@ -1,6 +1,7 @@
 package com.zeyad.usecases.requests
 
 import com.zeyad.usecases.Config
+import java.util.concurrent.TimeUnit
 
 /**
  * @author zeyad on 7/29/16.
@@ -10,22 +11,53 @@ data class GetRequest private constructor(val fullUrl: String = "",
                                           val persist: Boolean = false,
                                           val idColumnName: String = "id",
                                           val itemId: Any = Any(),
-                                          val cache: Boolean = false) {
+                                          val cache: Boolean = false,
+                                          val staleGracePeriod: Long = 0,
+                                          val cachePolicy: CachePolicy = CachePolicy.CACHE_FIRST,
+                                          val cacheTtl: Long = 0,
+                                          val cacheControl: String = "",
+                                          val accept: String = "",
+                                          val fingerprint: Boolean = false) {
 
     constructor(builder: Builder) : this(builder.url,
             builder.dataClass,
             builder.persist,
             builder.idColumnName,
             builder.itemId,
-            builder.shouldCache)
+            builder.shouldCache,
+            builder.staleGracePeriod,
+            builder.cachePolicy,
+            builder.cacheTtl,
+            builder.cacheControl,
+            builder.accept,
+            builder.fingerprint)
 
     fun <M> getTypedDataClass(): Class<M> = dataClass as Class<M>
 
+    /**
+     * @return whether the result of this request is read from or written to the memory cache.
+     */
+    fun isCacheable(): Boolean = cache && cachePolicy != CachePolicy.NETWORK_ONLY
+
+    fun getHeaders(): Map<String, String> {
+        if (accept.isEmpty()) {
+            return if (cacheControl.isEmpty()) emptyMap() else mapOf(CACHE_CONTROL to cacheControl)
+        }
+        return if (cacheControl.isEmpty()) mapOf(ACCEPT to accept)
+        else mapOf(CACHE_CONTROL to cacheControl, ACCEPT to accept)
+    }
+
     class Builder(internal val dataClass: Class<*>, internal val persist: Boolean = false) {
         internal var itemId: Any = Any()
         internal var shouldCache: Boolean = false
         internal var idColumnName: String = ""
         internal var url: String = ""
+        internal var staleGracePeriod: Long = 0
+        internal var cachePolicy: CachePolicy = CachePolicy.CACHE_FIRST
+        internal var cacheTtl: Long = 0
+        internal var cacheControl: String = ""
+        internal var accept: String = ""
+        internal var fingerprint: Boolean = false
 
         fun url(url: String): Builder {
             this.url = Config.baseURL + url
@@ -43,6 +75,60 @@ data class GetRequest private constructor(val fullUrl: String = "",
             return this
         }
 
+        /**
+         * Serves cached items that expired less than [gracePeriod] ago right away, then refreshes
+         * them from the network and emits the fresh value when it arrives.
+         */
+        fun staleWhileRevalidate(gracePeriod: Long, timeUnit: TimeUnit): Builder {
+            cachePolicy = CachePolicy.STALE_WHILE_REVALIDATE
+            staleGracePeriod = timeUnit.toMillis(gracePeriod)
+            return this
+        }
+
+        /**
+         * Policies other than [CachePolicy.NETWORK_ONLY] only take effect on cached requests, see
+         * [cache].
+         */
+        fun cachePolicy(cachePolicy: CachePolicy): Builder {
+            this.cachePolicy = cachePolicy
+            return this
+        }
+
+        /**
+         * Overrides the global cache duration for the items cached by this request.
+         */
+        fun cacheTtl(duration: Long, timeUnit: TimeUnit): Builder {
+            cacheTtl = timeUnit.toMillis(duration)
+            return this
+        }
+
+        /**
+         * Sends a Cache-Control directive, e.g. "max-age=60", for the http cache of the client.
+         */
+        fun cacheControl(directive: String): Builder {
+            cacheControl = directive
+            return this
+        }
+
+        /**
+         * Asks the server for [mediaType], e.g. "application/x-protobuf". The response is decoded
+         * by the wire format registered for its Content-Type, or as JSON if there is none.
+         */
+        fun accept(mediaType: String): Builder {
+            accept = mediaType
+            return this
+        }
+
+        /**
+         * Hashes the response while it downloads and, if it hashes like the last one, serves the
+         * persisted or cached result instead of decoding and saving the same items again. For
+         * servers that send no ETag or Last-Modified.
+         */
+        fun fingerprint(): Builder {
+            fingerprint = true
+            return this
+        }
+
         fun id(id: Any, idColumnName: String): Builder {
             itemId = id
             this.idColumnName = idColumnName
@@ -53,4 +139,9 @@ data class GetRequest private constructor(val fullUrl: String = "",
             return GetRequest(this)
         }
     }
+
+    companion object {
+        const val CACHE_CONTROL = "Cache-Control"
+        const val ACCEPT = "Accept"
+    }
 }
@@ -0,0 +1,172 @@
+package com.zeyad.usecases.requests
+
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.serialization.Serializer
+import com.zeyad.usecases.stores.CloudStore
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import okio.Buffer
+
+/**
+ * Body of a [PostRequest], kept as the caller supplied it until it is needed.
+ *
+ * It is serialized at most once, on first use, which the stores defer to subscription so the work
+ * runs on the background scheduler. The request body is written from those bytes, and local writes
+ * reuse the supplied instance when it already is of the request type.
+ *
+ * [contentType] and [accept] are the media types the body is sent in and the response asked for,
+ * empty for JSON. A body sent in a binary wire format is encoded from the instances directly.
+ */
+class Payload private constructor(private val source: Any?,
+                                  private val serializer: Serializer,
+                                  val contentType: String,
+                                  val accept: String) {
+
+    /**
+     * True if the payload is a JSON array, decided from the supplied type without serializing it.
+     */
+    val isArray: Boolean = source is JSONArray || source is Collection<*>
+            || (source != null && source.javaClass.isArray)
+            || (source is RawJson && source.json.trimStart().startsWith("["))
+
+    /**
+     * The supplied [JSONObject] or [JSONArray], null for any other payload.
+     */
+    val json: Any? = if (source is JSONObject || source is JSONArray) source else null
+
+    private val instance: Any? = if (json != null || source is RawJson) null else source
+
+    private val bytes: ByteArray by lazy { serialize() }
+
+    @Volatile
+    private var wireBody: RequestBody? = null
+
+    constructor(source: Any?) : this(source, Config.serializer, "", "")
+
+    constructor(source: Any?, contentType: String, accept: String)
+            : this(source, Config.serializer, contentType, accept)
+
+    fun bytes(): ByteArray = bytes
+
+    /**
+     * @param dataClass the request type, a JSON payload is decoded into to be sent in another
+     * wire format.
+     */
+    fun toRequestBody(dataClass: Class<*>): RequestBody {
+        val wire = Serializer.forMediaType(contentType, serializer)
+        if (wire === serializer) {
+            return RequestBody.create(MediaType.parse(CloudStore.APPLICATION_JSON), bytes)
+        }
+        return wireBody ?: encode(wire, dataClass as Class<Any>).also { wireBody = it }
+    }
+
+    /**
+     * @return the Accept header of the request, if it asked for a media type.
+     */
+    fun headers(): Map<String, String> =
+            if (accept.isEmpty()) emptyMap() else mapOf(GetRequest.ACCEPT to accept)
+
+    fun toJSONObject(): JSONObject {
+        if (source is JSONObject) {
+            return source
+        }
+        return try {
+            JSONObject(String(bytes, Charsets.UTF_8))
+        } catch (e: JSONException) {
+            JSONObject()
+        }
+    }
+
+    fun toJSONArray(): JSONArray {
+        if (source is JSONArray) {
+            return source
+        }
+        return try {
+            JSONArray(String(bytes, Charsets.UTF_8))
+        } catch (e: JSONException) {
+            JSONArray()
+        }
+    }
+
+    /**
+     * @return the supplied instance if it is a [dataClass], otherwise the payload decoded into one.
+     */
+    fun <M> toItem(dataClass: Class<M>): M {
+        if (dataClass.isInstance(instance)) {
+            return instance as M
+        }
+        return serializer.fromJson(Buffer().write(bytes), dataClass)
+    }
+
+    /**
+     * @return the supplied items if they all are [dataClass]es, otherwise the payload decoded into a
+     * list of them.
+     */
+    fun <M> toList(dataClass: Class<M>): List<M> {
+        val items = when (instance) {
+            is List<*> -> instance
+            is Array<*> -> instance.asList()
+            else -> null
+        }
+        if (items != null && items.all { dataClass.isInstance(it) }) {
+            return items as List<M>
+        }
+        return serializer.fromJson(Buffer().write(bytes), Serializer.listType(dataClass))
+    }
+
+    private fun encode(wire: Serializer, dataClass: Class<Any>): RequestBody {
+        val buffer = Buffer()
+        if (isArray) {
+            wire.toJson(toList(dataClass), Serializer.listType(dataClass), buffer)
+        } else {
+            wire.toJson(toItem(dataClass), dataClass, buffer)
+        }
+        return RequestBody.create(MediaType.parse(wire.mediaType), buffer.readByteString())
+    }
+
+    private fun serialize(): ByteArray {
+        return when (source) {
+            null -> EMPTY_OBJECT.toByteArray(Charsets.UTF_8)
+            is RawJson -> source.json.toByteArray(Charsets.UTF_8)
+            is JSONObject, is JSONArray -> source.toString().toByteArray(Charsets.UTF_8)
+            else -> {
+                val buffer = Buffer()
+                serializer.toJson(source, source.javaClass, buffer)
+                buffer.readByteArray()
+            }
+        }
+    }
+
+    /**
+     * JSON that was already serialized, as read back from a parcel.
+     */
+    private class RawJson(val json: String)
+
+    companion object {
+        private const val EMPTY_OBJECT = "{}"
+
+        /**
+         * @return a payload of already serialized [json], that is sent as is unless [contentType]
+         * is a wire format.
+         */
+        fun fromJson(json: String, contentType: String = "", accept: String = ""): Payload =
+                Payload(RawJson(json), Config.serializer, contentType, accept)
+
+        /**
+         * @return a JSON array of the [payloads], built from their serialized bytes.
+         */
+        fun concat(payloads: List<Payload>): Payload {
+            val json = StringBuilder("[")
+            payloads.forEachIndexed { index, payload ->
+                if (index > 0) {
+                    json.append(',')
+                }
+                json.append(String(payload.bytes, Charsets.UTF_8))
+            }
+            return fromJson(json.append(']').toString())
+        }
+    }
+}
@@ -4,9 +4,11 @@ import android.os.Parcel
 import android.os.Parcelable
 import com.zeyad.usecases.Config
 import org.json.JSONArray
-import org.json.JSONException
 import org.json.JSONObject
+import java.io.DataInput
+import java.io.DataOutput
 import java.util.*
+import java.util.concurrent.TimeUnit
 
 /**
  * @author zeyad on 7/29/16.
@@ -19,19 +21,12 @@ class PostRequest private constructor(val fullUrl: String = "",
                                       val idColumnName: String,
                                       val idType: Class<*> = Any::class.java,
                                       val method: String = "",
-                                      keyValuePairs: HashMap<String, Any>? = hashMapOf(),
-                                      jsonArray: JSONArray? = JSONArray(),
-                                      jsonObject: JSONObject? = JSONObject(),
-                                      val `object`: Any? = Any(),
-                                      private var payload: String = "") : Parcelable {
-    init {
-        val objectString = getObjectBundle(`object`, jsonObject, keyValuePairs).toString()
-        val arrayString = getArrayBundle(`object`, jsonArray, keyValuePairs).toString()
-        payload = when (objectString) {
-            "{}" -> arrayString
-            else -> objectString
-        }
-    }
+                                      val cacheTtl: Long = 0,
+                                      val payload: Payload,
+                                      val queuable: Boolean = false,
+                                      val onWifi: Boolean = false,
+                                      val whileCharging: Boolean = false,
+                                      val batchable: Boolean = false) : Parcelable {
 
     constructor(builder: Builder) : this(
             builder.url,
@@ -42,93 +37,83 @@ class PostRequest private constructor(val fullUrl: String = "",
             builder.idColumnName,
             builder.idType,
             builder.method,
-            builder.keyValuePairs,
-            builder.jsonArray,
-            builder.jsonObject,
-            builder.any)
+            builder.cacheTtl,
+            Payload(builder.any ?: builder.jsonObject ?: builder.jsonArray ?: builder.keyValuePairs,
+                    builder.contentType, builder.accept),
+            builder.queuable,
+            builder.onWifi,
+            builder.whileCharging,
+            builder.batchable)
 
     constructor(parcel: Parcel) : this(
             parcel.readString(),
-            Any::class.java,
-            Any::class.java,
+            classFor(parcel.readString()),
+            classFor(parcel.readString()),
             parcel.readByte() != 0.toByte(),
             parcel.readByte() != 0.toByte(),
             parcel.readString(),
-            Any::class.java,
+            classFor(parcel.readString()),
             parcel.readString(),
-            hashMapOf(),
-            JSONArray(),
-            JSONObject(),
-            Any(),
-            parcel.readString())
+            parcel.readLong(),
+            Payload.fromJson(parcel.readString(), parcel.readString(), parcel.readString()),
+            parcel.readByte() != 0.toByte(),
+            parcel.readByte() != 0.toByte(),
+            parcel.readByte() != 0.toByte(),
+            parcel.readByte() != 0.toByte())
 
     fun <M> getTypedResponseClass(): Class<M> = responseType as Class<M>
 
-    fun getObjectBundle(): JSONObject {
-        return try {
-            JSONObject(payload)
-        } catch (e: JSONException) {
-            JSONObject()
-        }
-    }
+    /**
+     * Serializes the payload if it was not yet, prefer passing [payload] on where possible.
+     */
+    fun getObjectBundle(): JSONObject = payload.toJSONObject()
 
-    fun getArrayBundle(): JSONArray {
-        return try {
-            JSONArray(payload)
-        } catch (e: JSONException) {
-            JSONArray()
-        }
-    }
-
-    private fun getObjectBundle(any: Any?, jsonObject: JSONObject?,
-                                keyValuePairs: HashMap<String, Any>?): JSONObject {
-        return when {
-            any != null -> try {
-                JSONObject(Config.gson.toJson(any))
-            } catch (e: JSONException) {
-                JSONObject()
-            }
-            jsonObject != null -> jsonObject
-            keyValuePairs != null -> JSONObject(keyValuePairs)
-            else -> JSONObject()
-        }
-    }
-
-    private fun getArrayBundle(`object`: Any?, jsonArray: JSONArray?, keyValuePairs: HashMap<String, Any>?): JSONArray {
-        return when {
-            jsonArray != null -> jsonArray
-            keyValuePairs != null -> {
-                val result = JSONArray()
-                for (item in keyValuePairs.values) {
-                    result.put(item)
-                }
-                result
-            }
-            `object` is List<*> -> {
-                val result = JSONArray()
-                for (item in `object`) {
-                    result.put(item)
-                }
-                result
-            }
-            `object` is Array<*> -> {
-                val result = JSONArray()
-                for (item in `object`) {
-                    result.put(item)
-                }
-                result
-            }
-            else -> JSONArray()
-        }
-    }
+    /**
+     * Serializes the payload if it was not yet, prefer passing [payload] on where possible.
+     */
+    fun getArrayBundle(): JSONArray = payload.toJSONArray()
 
     override fun writeToParcel(parcel: Parcel, flags: Int) {
         parcel.writeString(fullUrl)
+        parcel.writeString(requestType.name)
+        parcel.writeString(responseType.name)
         parcel.writeByte(if (persist) 1 else 0)
         parcel.writeByte(if (cache) 1 else 0)
         parcel.writeString(idColumnName)
+        parcel.writeString(idType.name)
         parcel.writeString(method)
-        parcel.writeString(payload)
+        parcel.writeLong(cacheTtl)
+        parcel.writeString(String(payload.bytes(), Charsets.UTF_8))
+        parcel.writeString(payload.contentType)
+        parcel.writeString(payload.accept)
+        parcel.writeByte(if (queuable) 1 else 0)
+        parcel.writeByte(if (onWifi) 1 else 0)
+        parcel.writeByte(if (whileCharging) 1 else 0)
+        parcel.writeByte(if (batchable) 1 else 0)
+    }
+
+    /**
+     * Writes the request field by field, for storage that outlives the process, unlike a parcel.
+     */
+    internal fun writeTo(output: DataOutput) {
+        output.writeUTF(fullUrl)
+        output.writeUTF(method)
+        output.writeUTF(requestType.name)
+        output.writeUTF(responseType.name)
+        output.writeUTF(idColumnName)
+        output.writeUTF(idType.name)
+        output.writeBoolean(persist)
+        output.writeBoolean(cache)
+        output.writeLong(cacheTtl)
+        output.writeBoolean(queuable)
+        output.writeBoolean(onWifi)
+        output.writeBoolean(whileCharging)
+        output.writeBoolean(batchable)
+        output.writeUTF(payload.contentType)
+        output.writeUTF(payload.accept)
+        val json = payload.bytes()
+        output.writeInt(json.size)
+        output.write(json)
     }
 
     override fun describeContents() = 0
@@ -142,6 +127,51 @@ class PostRequest private constructor(val fullUrl: String = "",
         const val DELETE = "delete"
         const val PUT = "put"
         const val PATCH = "patch"
+
+        private val PRIMITIVES = listOf(Int::class.java, Long::class.java, Short::class.java,
+                Byte::class.java, Double::class.java, Float::class.java, Boolean::class.java,
+                Char::class.java).associateBy { it.name }
+
+        /**
+         * Reads back a request written by [writeTo].
+         */
+        internal fun readFrom(input: DataInput): PostRequest {
+            val fullUrl = input.readUTF()
+            val method = input.readUTF()
+            val requestType = classFor(input.readUTF())
+            val responseType = classFor(input.readUTF())
+            val idColumnName = input.readUTF()
+            val idType = classFor(input.readUTF())
+            val persist = input.readBoolean()
+            val cache = input.readBoolean()
+            val cacheTtl = input.readLong()
+            val queuable = input.readBoolean()
+            val onWifi = input.readBoolean()
+            val whileCharging = input.readBoolean()
+            val batchable = input.readBoolean()
+            val contentType = input.readUTF()
+            val accept = input.readUTF()
+            val json = ByteArray(input.readInt())
+            input.readFully(json)
+            return PostRequest(fullUrl, requestType, responseType, persist, cache, idColumnName,
+                    idType, method, cacheTtl,
+                    Payload.fromJson(String(json, Charsets.UTF_8), contentType, accept), queuable,
+                    onWifi, whileCharging, batchable)
+        }
+
+        /**
+         * Classes are written by name, one that can not be loaded any more reads back as [Any].
+         */
+        private fun classFor(name: String?): Class<*> {
+            if (name == null) {
+                return Any::class.java
+            }
+            return try {
+                PRIMITIVES[name] ?: Class.forName(name)
+            } catch (e: ClassNotFoundException) {
+                Any::class.java
+            }
+        }
     }
 
     class Builder(internal var requestType: Class<*>, internal var persist: Boolean) {
@@ -158,6 +188,10 @@ class PostRequest private constructor(val fullUrl: String = "",
         internal var cache: Boolean = false
         internal var onWifi: Boolean = false
         internal var whileCharging: Boolean = false
+        internal var batchable: Boolean = false
+        internal var cacheTtl: Long = 0
+        internal var contentType: String = ""
+        internal var accept: String = ""
 
         fun url(url: String): Builder {
             this.url = Config.baseURL + url
@@ -179,6 +213,23 @@ class PostRequest private constructor(val fullUrl: String = "",
             return this
         }
 
+        /**
+         * [CachePolicy.NETWORK_ONLY] keeps the written item out of the memory cache, any other
+         * policy caches it like [cache].
+         */
+        fun cachePolicy(cachePolicy: CachePolicy): Builder {
+            cache = cachePolicy != CachePolicy.NETWORK_ONLY
+            return this
+        }
+
+        /**
+         * Overrides the global cache duration for the items cached by this request.
+         */
+        fun cacheTtl(duration: Long, timeUnit: TimeUnit): Builder {
+            cacheTtl = timeUnit.toMillis(duration)
+            return this
+        }
+
         fun idColumnName(idColumnName: String, type: Class<*>): Builder {
             this.idColumnName = idColumnName
             idType = type
@@ -205,6 +256,47 @@ class PostRequest private constructor(val fullUrl: String = "",
             return this
         }
 
+        /**
+         * Sends the payload as [mediaType], e.g. "application/x-protobuf", if a wire format is
+         * registered for it, as JSON otherwise. It is still saved locally as the request type.
+         */
+        fun contentType(mediaType: String): Builder {
+            contentType = mediaType
+            return this
+        }
+
+        /**
+         * Asks the server for [mediaType], the response is then decoded straight into the response
+         * type by the wire format registered for its Content-Type.
+         */
+        fun accept(mediaType: String): Builder {
+            accept = mediaType
+            return this
+        }
+
+        /**
+         * Queues the write in the outbox if the network is not reachable, or fails on the way, and
+         * sends it once it is back. [onWifi] holds it until the network is unmetered, [whileCharging]
+         * until the device is charging.
+         */
+        fun queuable(onWifi: Boolean, whileCharging: Boolean): Builder {
+            queuable = true
+            this.onWifi = onWifi
+            this.whileCharging = whileCharging
+            return this
+        }
+
+        /**
+         * Declares that the url also takes a JSON array of items. A postObject or putObject made
+         * while another one to the same url is waiting is then sent with it as one list write, if
+         * write batching is configured. A response array is split back in order and must hold one
+         * result per item, any other response is returned to every caller.
+         */
+        fun batchable(): Builder {
+            batchable = true
+            return this
+        }
+
         fun method(method: String): Builder {
             this.method = method
             return this
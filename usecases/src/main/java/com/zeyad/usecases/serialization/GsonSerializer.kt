@@ -0,0 +1,55 @@
+package com.zeyad.usecases.serialization
+
+import com.google.gson.Gson
+import com.google.gson.TypeAdapter
+import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.zeyad.usecases.Config
+import okio.BufferedSink
+import okio.BufferedSource
+import java.io.InputStreamReader
+import java.io.OutputStreamWriter
+import java.lang.reflect.Type
+
+/**
+ * [Serializer] backed by Gson, the default. Models annotated with
+ * [com.zeyad.usecases.adapters.GenerateAdapter] are read and written by their generated adapters.
+ */
+class GsonSerializer(val gson: Gson = Config.gson) : Serializer {
+
+    override fun <T> fromJson(source: BufferedSource, type: Type): T {
+        val adapter = gson.getAdapter(TypeToken.get(type)) as TypeAdapter<T>
+        return adapter.fromJson(InputStreamReader(source.inputStream(), Charsets.UTF_8))
+    }
+
+    override fun toJson(value: Any?, type: Type, sink: BufferedSink) {
+        val writer = OutputStreamWriter(sink.outputStream(), Charsets.UTF_8)
+        gson.toJson(value, type, writer)
+        writer.flush()
+    }
+
+    /**
+     * Converts through a Gson tree rather than serialized JSON.
+     */
+    override fun <T> convert(value: Any?, type: Type): T = gson.fromJson(gson.toJsonTree(value), type)
+
+    override fun <T> arrayReader(source: BufferedSource,
+                                 dataClass: Class<T>): Serializer.ArrayReader<T> {
+        val adapter = gson.getAdapter(dataClass)
+        val reader = JsonReader(InputStreamReader(source.inputStream(), Charsets.UTF_8))
+        try {
+            reader.beginArray()
+        } catch (e: Exception) {
+            reader.close()
+            throw e
+        }
+        return object : Serializer.ArrayReader<T> {
+
+            override fun hasNext() = reader.hasNext()
+
+            override fun next(): T = adapter.read(reader)
+
+            override fun close() = reader.close()
+        }
+    }
+}
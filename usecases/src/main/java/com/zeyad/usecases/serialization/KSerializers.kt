@@ -0,0 +1,23 @@
+package com.zeyad.usecases.serialization
+
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.serializerByTypeToken
+import java.lang.reflect.Type
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The kotlinx.serialization serializers of the types read and written so far, looked up once.
+ */
+internal class KSerializers {
+
+    private val serializers = ConcurrentHashMap<Type, KSerializer<Any>>()
+
+    fun of(type: Type): KSerializer<Any> {
+        val cached = serializers[type]
+        if (cached != null) {
+            return cached
+        }
+        val created = serializerByTypeToken(type)
+        return serializers.putIfAbsent(type, created) ?: created
+    }
+}
@@ -0,0 +1,51 @@
+package com.zeyad.usecases.serialization
+
+import kotlinx.serialization.json.JSON
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.JsonTreeParser
+import okio.BufferedSink
+import okio.BufferedSource
+import java.lang.reflect.Type
+
+/**
+ * [Serializer] backed by kotlinx.serialization, for models annotated with `@Serializable` and
+ * compiled with the `kotlinx-serialization` plugin. Add
+ * `org.jetbrains.kotlinx:kotlinx-serialization-runtime` to the app.
+ *
+ * Responses decoded into [Any] are read as a [JsonElement] tree, and lists are decoded whole
+ * since the runtime has no streaming reader.
+ */
+class KotlinxSerializer(private val json: JSON = JSON.nonstrict) : Serializer {
+
+    private val serializers = KSerializers()
+
+    override fun <T> fromJson(source: BufferedSource, type: Type): T {
+        val text = source.use { it.readUtf8() }
+        return if (type == Any::class.java) {
+            JsonTreeParser(text).readFully() as T
+        } else {
+            json.parse(serializers.of(type), text) as T
+        }
+    }
+
+    override fun toJson(value: Any?, type: Type, sink: BufferedSink) {
+        val text = when (value) {
+            null -> NULL
+            is JsonElement -> value.toString()
+            else -> json.stringify(
+                    serializers.of(if (type == Any::class.java) value.javaClass else type), value)
+        }
+        sink.writeUtf8(text)
+    }
+
+    override fun <T> convert(value: Any?, type: Type): T {
+        if (value is JsonElement) {
+            return json.parse(serializers.of(type), value.toString()) as T
+        }
+        return super.convert(value, type)
+    }
+
+    companion object {
+        private const val NULL = "null"
+    }
+}
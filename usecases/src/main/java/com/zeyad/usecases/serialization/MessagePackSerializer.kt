@@ -0,0 +1,61 @@
+package com.zeyad.usecases.serialization
+
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.databind.MappingIterator
+import com.fasterxml.jackson.databind.ObjectMapper
+import okio.BufferedSink
+import okio.BufferedSource
+import org.msgpack.jackson.dataformat.MessagePackFactory
+import java.lang.reflect.Type
+
+/**
+ * MessagePack wire format backed by Jackson, add `org.msgpack:jackson-dataformat-msgpack` to the
+ * app and register it with [com.zeyad.usecases.api.DataServiceConfig.Builder.wireFormat]. Pass a
+ * [mapper] with `jackson-module-kotlin` registered for Kotlin models without no-arg constructors.
+ *
+ * Models are read straight from the bytes, and the items of a list one at a time.
+ */
+class MessagePackSerializer(
+        private val mapper: ObjectMapper = ObjectMapper(MessagePackFactory())) : Serializer {
+
+    override val mediaType: String
+        get() = MEDIA_TYPE
+
+    override fun <T> fromJson(source: BufferedSource, type: Type): T {
+        source.use {
+            return mapper.readValue(it.inputStream(), mapper.typeFactory.constructType(type))
+        }
+    }
+
+    override fun toJson(value: Any?, type: Type, sink: BufferedSink) {
+        mapper.writerFor(mapper.typeFactory.constructType(type))
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(sink.outputStream(), value)
+    }
+
+    /**
+     * Converts through Jackson's token buffer rather than serialized bytes.
+     */
+    override fun <T> convert(value: Any?, type: Type): T =
+            mapper.convertValue(value, mapper.typeFactory.constructType(type))
+
+    override fun <T> arrayReader(source: BufferedSource,
+                                 dataClass: Class<T>): Serializer.ArrayReader<T> {
+        val items: MappingIterator<T> = mapper.readerFor(dataClass).readValues(source.inputStream())
+        return object : Serializer.ArrayReader<T> {
+
+            override fun hasNext() = items.hasNext()
+
+            override fun next(): T = items.next()
+
+            override fun close() {
+                items.close()
+                source.close()
+            }
+        }
+    }
+
+    companion object {
+        const val MEDIA_TYPE = "application/x-msgpack"
+    }
+}
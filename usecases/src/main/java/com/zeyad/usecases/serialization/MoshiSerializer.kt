@@ -0,0 +1,60 @@
+package com.zeyad.usecases.serialization
+
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.Moshi
+import okio.BufferedSink
+import okio.BufferedSource
+import java.lang.reflect.Type
+
+/**
+ * [Serializer] backed by Moshi. Moshi picks up the adapters its codegen generates for models
+ * annotated with `@JsonClass(generateAdapter = true)`, so add `com.squareup.moshi:moshi` and
+ * `com.squareup.moshi:moshi-kotlin-codegen` to kapt in the modules of the models.
+ */
+class MoshiSerializer(private val moshi: Moshi = Moshi.Builder().build()) : Serializer {
+
+    override fun <T> fromJson(source: BufferedSource, type: Type): T {
+        return moshi.adapter<T>(type).fromJson(source) as T
+    }
+
+    override fun toJson(value: Any?, type: Type, sink: BufferedSink) {
+        moshi.adapter<Any?>(type).toJson(sink, value)
+    }
+
+    /**
+     * Converts through Moshi's map and list values rather than serialized JSON.
+     */
+    override fun <T> convert(value: Any?, type: Type): T {
+        val jsonValue = if (value == null || isJsonValue(value)) {
+            value
+        } else {
+            moshi.adapter<Any>(value.javaClass).toJsonValue(value)
+        }
+        return moshi.adapter<T>(type).fromJsonValue(jsonValue) as T
+    }
+
+    override fun <T> arrayReader(source: BufferedSource,
+                                 dataClass: Class<T>): Serializer.ArrayReader<T> {
+        val adapter = moshi.adapter(dataClass)
+        val reader = JsonReader.of(source)
+        try {
+            reader.beginArray()
+        } catch (e: Exception) {
+            reader.close()
+            throw e
+        }
+        return object : Serializer.ArrayReader<T> {
+
+            override fun hasNext() = reader.hasNext()
+
+            override fun next(): T = adapter.fromJson(reader) as T
+
+            override fun close() = reader.close()
+        }
+    }
+
+    private fun isJsonValue(value: Any): Boolean {
+        return value is Map<*, *> || value is List<*> || value is String || value is Number
+                || value is Boolean
+    }
+}
@@ -0,0 +1,124 @@
+package com.zeyad.usecases.serialization
+
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.protobuf.ProtoBuf
+import okio.BufferedSink
+import okio.BufferedSource
+import java.io.IOException
+import java.lang.reflect.ParameterizedType
+import java.lang.reflect.Type
+
+/**
+ * Protocol Buffers wire format backed by kotlinx.serialization, for `@Serializable` models whose
+ * properties carry their field numbers in `@SerialId`. Add
+ * `org.jetbrains.kotlinx:kotlinx-serialization-runtime` to the app and register it with
+ * [com.zeyad.usecases.api.DataServiceConfig.Builder.wireFormat].
+ *
+ * A message is read into its model class only, there is no untyped representation to decode
+ * [Any] into, so reading one as [Any] fails with the [SerializationException] a message that does
+ * not decode fails with. Lists are a stream of length delimited messages, and are read one at a
+ * time.
+ */
+class ProtoBufSerializer(private val protoBuf: ProtoBuf = ProtoBuf()) : Serializer {
+
+    private val serializers = KSerializers()
+
+    override val mediaType: String
+        get() = MEDIA_TYPE
+
+    /**
+     * @throws SerializationException if [type] is [Any] or the message does not decode into it.
+     */
+    override fun <T> fromJson(source: BufferedSource, type: Type): T {
+        source.use {
+            val itemType = itemTypeOf(type)
+            if (itemType == null) {
+                return protoBuf.load(serializers.of(checkTyped(type)), it.readByteArray()) as T
+            }
+            val items = mutableListOf<Any>()
+            while (!it.exhausted()) {
+                items.add(readDelimited(it, itemType))
+            }
+            return items as T
+        }
+    }
+
+    override fun toJson(value: Any?, type: Type, sink: BufferedSink) {
+        if (value == null) {
+            return
+        }
+        if (value is List<*>) {
+            val itemType = itemTypeOf(type)
+            for (item in value) {
+                if (item != null) {
+                    val bytes = protoBuf.dump(serializers.of(itemType ?: item.javaClass), item)
+                    writeVarint(sink, bytes.size.toLong())
+                    sink.write(bytes)
+                }
+            }
+            return
+        }
+        sink.write(protoBuf.dump(
+                serializers.of(if (type == Any::class.java) value.javaClass else type), value))
+    }
+
+    override fun <T> arrayReader(source: BufferedSource,
+                                 dataClass: Class<T>): Serializer.ArrayReader<T> {
+        return object : Serializer.ArrayReader<T> {
+
+            override fun hasNext() = !source.exhausted()
+
+            override fun next(): T = readDelimited(source, dataClass) as T
+
+            override fun close() = source.close()
+        }
+    }
+
+    private fun readDelimited(source: BufferedSource, type: Type): Any {
+        val size = readVarint(source)
+        return protoBuf.load(serializers.of(type), source.readByteArray(size))
+    }
+
+    private fun itemTypeOf(type: Type): Type? {
+        if (type is ParameterizedType && type.rawType is Class<*>
+                && List::class.java.isAssignableFrom(type.rawType as Class<*>)) {
+            return type.actualTypeArguments[0]
+        }
+        return null
+    }
+
+    private fun checkTyped(type: Type): Type {
+        if (type == Any::class.java) {
+            throw SerializationException(UNTYPED)
+        }
+        return type
+    }
+
+    private fun readVarint(source: BufferedSource): Long {
+        var result = 0L
+        var shift = 0
+        while (shift < 64) {
+            val byte = source.readByte().toInt()
+            result = result or ((byte and 0x7f).toLong() shl shift)
+            if (byte and 0x80 == 0) {
+                return result
+            }
+            shift += 7
+        }
+        throw IOException("Malformed varint")
+    }
+
+    private fun writeVarint(sink: BufferedSink, value: Long) {
+        var remaining = value
+        while (remaining and 0x7fL.inv() != 0L) {
+            sink.writeByte(((remaining and 0x7f) or 0x80).toInt())
+            remaining = remaining ushr 7
+        }
+        sink.writeByte(remaining.toInt())
+    }
+
+    companion object {
+        const val MEDIA_TYPE = "application/x-protobuf"
+        private const val UNTYPED = "Protocol Buffers can only be read into a model class"
+    }
+}
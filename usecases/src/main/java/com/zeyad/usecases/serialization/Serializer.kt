@@ -0,0 +1,106 @@
+package com.zeyad.usecases.serialization
+
+import com.google.gson.reflect.TypeToken
+import com.zeyad.usecases.Config
+import okio.Buffer
+import okio.BufferedSink
+import okio.BufferedSource
+import java.io.Closeable
+import java.lang.reflect.Type
+import java.util.Locale
+
+/**
+ * Reads and writes the JSON of the models, for the network, the database and the caches.
+ *
+ * The library uses [GsonSerializer] unless [com.zeyad.usecases.api.DataServiceConfig] is given
+ * another one, such as [MoshiSerializer] or [KotlinxSerializer]. Binary wire formats, such as
+ * [ProtoBufSerializer] and [MessagePackSerializer], implement it too and read and write their own
+ * [mediaType] instead of JSON; they are only used on the network.
+ */
+interface Serializer {
+
+    /**
+     * Media type of what this serializer reads and writes, sent as the Content-Type of request
+     * bodies and matched against the Content-Type of responses.
+     */
+    val mediaType: String
+        get() = APPLICATION_JSON
+
+    fun <T> fromJson(source: BufferedSource, type: Type): T
+
+    fun toJson(value: Any?, type: Type, sink: BufferedSink)
+
+    /**
+     * Converts a value into [type], [value] is either a model or what [fromJson] decodes into
+     * [Any]. The default goes through serialized JSON, backends override it with a cheaper path.
+     */
+    fun <T> convert(value: Any?, type: Type): T {
+        val buffer = Buffer()
+        toJson(value, value?.javaClass ?: Any::class.java, buffer)
+        return fromJson(buffer, type)
+    }
+
+    /**
+     * Reads the items of a JSON array one at a time. The default decodes the whole list first,
+     * backends with a streaming reader override it.
+     */
+    fun <T> arrayReader(source: BufferedSource, dataClass: Class<T>): ArrayReader<T> {
+        val items = try {
+            fromJson<List<T>>(source, listType(dataClass))
+        } finally {
+            source.close()
+        }
+        return ListArrayReader(items.iterator())
+    }
+
+    fun <T> fromJson(json: String, type: Type): T = fromJson(Buffer().writeUtf8(json), type)
+
+    fun toJson(value: Any): String {
+        val buffer = Buffer()
+        toJson(value, value.javaClass, buffer)
+        return buffer.readUtf8()
+    }
+
+    /**
+     * Items of a JSON array, read on demand.
+     */
+    interface ArrayReader<T> : Closeable {
+
+        fun hasNext(): Boolean
+
+        fun next(): T
+    }
+
+    companion object {
+
+        const val APPLICATION_JSON = "application/json"
+
+        /**
+         * @return the wire format registered for [mediaType], or [fallback] if there is none.
+         */
+        fun forMediaType(mediaType: String?, fallback: Serializer = Config.serializer): Serializer {
+            if (mediaType.isNullOrEmpty()) {
+                return fallback
+            }
+            return Config.wireFormats[normalize(mediaType)] ?: fallback
+        }
+
+        /**
+         * @return [mediaType] without its parameters, e.g. the charset, in lower case.
+         */
+        fun normalize(mediaType: String): String =
+                mediaType.substringBefore(';').trim().toLowerCase(Locale.US)
+
+        fun listType(dataClass: Class<*>): Type =
+                TypeToken.getParameterized(List::class.java, dataClass).type
+    }
+}
+
+private class ListArrayReader<T>(private val items: Iterator<T>) : Serializer.ArrayReader<T> {
+
+    override fun hasNext() = items.hasNext()
+
+    override fun next() = items.next()
+
+    override fun close() {}
+}
@@ -0,0 +1,36 @@
+package com.zeyad.usecases.serialization
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okhttp3.ResponseBody
+import okio.Buffer
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+
+/**
+ * Retrofit converter that reads and writes bodies with a [Serializer].
+ */
+class SerializerConverterFactory(private val serializer: Serializer) : Converter.Factory() {
+
+    override fun responseBodyConverter(type: Type, annotations: Array<Annotation>,
+                                       retrofit: Retrofit): Converter<ResponseBody, *> {
+        return Converter<ResponseBody, Any> { body ->
+            body.use { serializer.fromJson<Any>(it.source(), type) }
+        }
+    }
+
+    override fun requestBodyConverter(type: Type, parameterAnnotations: Array<Annotation>,
+                                      methodAnnotations: Array<Annotation>,
+                                      retrofit: Retrofit): Converter<*, RequestBody> {
+        return Converter<Any, RequestBody> { value ->
+            val buffer = Buffer()
+            serializer.toJson(value, type, buffer)
+            RequestBody.create(MEDIA_TYPE, buffer.readByteString())
+        }
+    }
+
+    companion object {
+        private val MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8")
+    }
+}
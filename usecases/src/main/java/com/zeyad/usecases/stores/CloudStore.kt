@@ -2,11 +2,12 @@ package com.zeyad.usecases.stores
 
 import android.util.Log
 import com.zeyad.usecases.*
-import com.zeyad.usecases.Config.gson
+import com.zeyad.usecases.cache.IdReader
 import com.zeyad.usecases.db.DataBaseManager
 import com.zeyad.usecases.exceptions.NetworkConnectionException
 import com.zeyad.usecases.mapper.DAOMapper
 import com.zeyad.usecases.network.ApiConnection
+import com.zeyad.usecases.requests.Payload
 import io.reactivex.Flowable
 import io.reactivex.Single
 import io.reactivex.SingleObserver
@@ -42,91 +43,192 @@ class CloudStore(private val mApiConnection: ApiConnection,
 
     override fun <M> dynamicGetList(url: String, idColumnName: String,
                                     requestType: Class<M>, persist: Boolean,
-                                    shouldCache: Boolean): Flowable<List<M>> {
-        return mApiConnection.dynamicGetList<M>(url, shouldCache)
-                .map { mEntityDataMapper.mapAllTo<List<M>>(it, requestType) }
-                .doOnNext { saveAllLocally(idColumnName, it, requestType, persist, shouldCache) }
+                                    shouldCache: Boolean, cacheTtl: Long,
+                                    headers: Map<String, String>): Flowable<List<M>> {
+        return dynamicGetList(url, idColumnName, requestType, persist, shouldCache, cacheTtl,
+                headers, false)
+    }
+
+    /**
+     * A response the server reports as not modified, or that hashes like the last one when
+     * [fingerprint] is set, is served from the query cached for [url] without decoding or saving
+     * it. Lists that are not cached are always fetched in full.
+     */
+    override fun <M> dynamicGetList(url: String, idColumnName: String,
+                                    requestType: Class<M>, persist: Boolean,
+                                    shouldCache: Boolean, cacheTtl: Long,
+                                    headers: Map<String, String>,
+                                    fingerprint: Boolean): Flowable<List<M>> {
+        val validators = Config.validators
+        val fingerprints = if (fingerprint) Config.fingerprints else null
+        if (validators == null && fingerprints == null || !withCache(shouldCache)
+                || mMemoryStore == null) {
+            return mApiConnection.dynamicGetList(url, shouldCache, headers, requestType)
+                    .doOnNext {
+                        saveAllLocally(url, idColumnName, it, requestType, persist, shouldCache,
+                                cacheTtl)
+                    }
+        }
+        val fetch = mApiConnection.dynamicGetListIfModified(url, shouldCache, headers, requestType,
+                validators, fingerprints)
+                .doOnNext {
+                    saveAllLocally(url, idColumnName, it, requestType, persist, shouldCache,
+                            cacheTtl)
+                }
+        return fetch.switchIfEmpty(getListLocally(url, idColumnName, requestType, shouldCache,
+                cacheTtl)
+                .switchIfEmpty(Flowable.defer {
+                    validators?.remove(url)
+                    fingerprints?.remove(url)
+                    fetch
+                }))
+    }
+
+    /**
+     * Emits each item as soon as it is read, and persists and caches them in chunks of
+     * [STREAM_CHUNK_SIZE] on the side, so neither the payload nor the whole list is held in memory.
+     */
+    override fun <M> dynamicStreamList(url: String, idColumnName: String,
+                                       requestType: Class<M>, persist: Boolean,
+                                       shouldCache: Boolean, cacheTtl: Long,
+                                       headers: Map<String, String>): Flowable<M> {
+        return mApiConnection.dynamicStreamList(url, shouldCache, headers, requestType)
+                .publish { items ->
+                    Flowable.merge(items, items.buffer(STREAM_CHUNK_SIZE)
+                            .doOnNext {
+                                saveChunkLocally(idColumnName, it, requestType, persist,
+                                        shouldCache, cacheTtl)
+                            }
+                            .ignoreElements()
+                            .toFlowable<M>())
+                }
     }
 
     override fun <M> dynamicGetObject(url: String, idColumnName: String, itemId: Any,
-                                      requestType: Class<M>, persist: Boolean, shouldCache: Boolean): Flowable<M> {
-        return mApiConnection.dynamicGetObject<M>(url, shouldCache)
+                                      requestType: Class<M>, persist: Boolean, shouldCache: Boolean,
+                                      cacheTtl: Long, headers: Map<String, String>): Flowable<M> {
+        return dynamicGetObject(url, idColumnName, itemId, requestType, persist, shouldCache,
+                cacheTtl, headers, false)
+    }
+
+    /**
+     * Serves a response that did not change locally, like the [dynamicGetList] taking a
+     * fingerprint.
+     */
+    override fun <M> dynamicGetObject(url: String, idColumnName: String, itemId: Any,
+                                      requestType: Class<M>, persist: Boolean, shouldCache: Boolean,
+                                      cacheTtl: Long, headers: Map<String, String>,
+                                      fingerprint: Boolean): Flowable<M> {
+        val validators = Config.validators
+        val fingerprints = if (fingerprint) Config.fingerprints else null
+        if (validators == null && fingerprints == null
+                || !withDisk(persist) && !withCache(shouldCache)) {
+            return mApiConnection.dynamicGetObject(url, shouldCache, headers, requestType)
+                    .doOnNext {
+                        saveItemLocally(idColumnName, it, requestType, persist, shouldCache,
+                                cacheTtl)
+                    }
+        }
+        val fetch = mApiConnection.dynamicGetObjectIfModified(url, shouldCache, headers,
+                requestType, validators, fingerprints)
                 .doOnNext {
-                    saveLocally(idColumnName, JSONObject(gson.toJson(it)), requestType, persist, shouldCache)
+                    saveItemLocally(idColumnName, it, requestType, persist, shouldCache, cacheTtl)
                 }
-                .map { mEntityDataMapper.mapTo<M>(it, requestType) }
+        return fetch.switchIfEmpty(getItemLocally(idColumnName, itemId, requestType, persist,
+                shouldCache, cacheTtl)
+                .switchIfEmpty(Flowable.defer {
+                    validators?.remove(url)
+                    fingerprints?.remove(url)
+                    fetch
+                }))
     }
 
     override fun <M> queryDisk(query: String, clazz: Class<M>): Flowable<List<M>> {
         return Flowable.error(IllegalAccessException("Can not search disk in cloud data store!"))
     }
 
-    override fun <M> dynamicPatchObject(url: String, idColumnName: String,
-                                        jsonObject: JSONObject, requestType: Class<*>, responseType: Class<M>,
-                                        persist: Boolean, cache: Boolean): Single<M> {
+    override fun <M> dynamicPatchObject(url: String, idColumnName: String, payload: Payload,
+                                        requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                        cache: Boolean, cacheTtl: Long): Single<M> {
         return Single.defer {
             persistErrorExecute({
-                saveLocally(idColumnName, jsonObject, requestType, persist, cache)
+                savePayloadLocally(idColumnName, payload, requestType, persist, cache, cacheTtl)
             }, {
-                mApiConnection.dynamicPatch<M>(url,
-                        create(MediaType.parse(APPLICATION_JSON), jsonObject.toString()))
-                        .map { daoMapHelper(responseType, it) }
+                val body = payload.toRequestBody(requestType)
+                if (payload.accept.isEmpty()) {
+                    mApiConnection.dynamicPatch<M>(url, body)
+                            .flatMap { daoMap<M>(responseType, it) }
+                } else {
+                    mApiConnection.dynamicPatch(url, body, payload.headers(), responseType)
+                }
             })
         }
     }
 
-    override fun <M> dynamicPostObject(url: String, idColumnName: String,
-                                       jsonObject: JSONObject, requestType: Class<*>, responseType: Class<M>,
-                                       persist: Boolean, cache: Boolean): Single<M> {
+    override fun <M> dynamicPostObject(url: String, idColumnName: String, payload: Payload,
+                                       requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                       cache: Boolean, cacheTtl: Long): Single<M> {
         return Single.defer {
             persistErrorExecute({
-                saveLocally(idColumnName, jsonObject, requestType, persist, cache)
+                savePayloadLocally(idColumnName, payload, requestType, persist, cache, cacheTtl)
             }, {
-                mApiConnection.dynamicPost<M>(url,
-                        create(MediaType.parse(APPLICATION_JSON), jsonObject.toString()))
-                        .map { daoMapHelper(responseType, it) }
+                val body = payload.toRequestBody(requestType)
+                if (payload.accept.isEmpty()) {
+                    mApiConnection.dynamicPost<M>(url, body).flatMap { daoMap<M>(responseType, it) }
+                } else {
+                    mApiConnection.dynamicPost(url, body, payload.headers(), responseType)
+                }
             })
         }
     }
 
-    override fun <M> dynamicPostList(url: String, idColumnName: String,
-                                     jsonArray: JSONArray, requestType: Class<*>, responseType: Class<M>,
-                                     persist: Boolean, cache: Boolean): Single<M> {
+    override fun <M> dynamicPostList(url: String, idColumnName: String, payload: Payload,
+                                     requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                     cache: Boolean, cacheTtl: Long): Single<M> {
         return Single.defer {
             persistErrorExecute({
-                saveAllLocally(idColumnName, jsonArray, requestType, persist, cache)
+                savePayloadLocally(idColumnName, payload, requestType, persist, cache, cacheTtl)
             }, {
-                mApiConnection.dynamicPost<M>(url,
-                        create(MediaType.parse(APPLICATION_JSON), jsonArray.toString()))
-                        .map { daoMapHelper(responseType, it) }
+                val body = payload.toRequestBody(requestType)
+                if (payload.accept.isEmpty()) {
+                    mApiConnection.dynamicPost<M>(url, body).flatMap { daoMap<M>(responseType, it) }
+                } else {
+                    mApiConnection.dynamicPost(url, body, payload.headers(), responseType)
+                }
             })
         }
     }
 
-    override fun <M> dynamicPutObject(url: String, idColumnName: String,
-                                      jsonObject: JSONObject, requestType: Class<*>, responseType: Class<M>,
-                                      persist: Boolean, cache: Boolean): Single<M> {
+    override fun <M> dynamicPutObject(url: String, idColumnName: String, payload: Payload,
+                                      requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                      cache: Boolean, cacheTtl: Long): Single<M> {
         return Single.defer {
             persistErrorExecute({
-                saveLocally(idColumnName, jsonObject, requestType, persist, cache)
+                savePayloadLocally(idColumnName, payload, requestType, persist, cache, cacheTtl)
             }, {
-                mApiConnection.dynamicPut<M>(url,
-                        create(MediaType.parse(APPLICATION_JSON), jsonObject.toString()))
-                        .map { daoMapHelper(responseType, it) }
+                val body = payload.toRequestBody(requestType)
+                if (payload.accept.isEmpty()) {
+                    mApiConnection.dynamicPut<M>(url, body).flatMap { daoMap<M>(responseType, it) }
+                } else {
+                    mApiConnection.dynamicPut(url, body, payload.headers(), responseType)
+                }
             })
         }
     }
 
-    override fun <M> dynamicPutList(url: String, idColumnName: String,
-                                    jsonArray: JSONArray, requestType: Class<*>, responseType: Class<M>,
-                                    persist: Boolean, cache: Boolean): Single<M> {
+    override fun <M> dynamicPutList(url: String, idColumnName: String, payload: Payload,
+                                    requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                    cache: Boolean, cacheTtl: Long): Single<M> {
         return Single.defer {
             persistErrorExecute({
-                saveAllLocally(idColumnName, jsonArray, requestType, persist, cache)
+                savePayloadLocally(idColumnName, payload, requestType, persist, cache, cacheTtl)
             }, {
-                mApiConnection.dynamicPut<M>(url,
-                        create(MediaType.parse(APPLICATION_JSON), jsonArray.toString()))
-                        .map { daoMapHelper(responseType, it) }
+                val body = payload.toRequestBody(requestType)
+                if (payload.accept.isEmpty()) {
+                    mApiConnection.dynamicPut<M>(url, body).flatMap { daoMap<M>(responseType, it) }
+                } else {
+                    mApiConnection.dynamicPut(url, body, payload.headers(), responseType)
+                }
             })
         }
     }
@@ -138,13 +240,14 @@ class CloudStore(private val mApiConnection: ApiConnection,
             persistErrorExecute({
                 val list = mutableListOf<T>()
                 for (i in 0..(jsonArray.length() - 1)) {
-                    list.add(gson.fromJson(jsonArray.getJSONObject(i).toString(), requestType))
+                    list.add(Config.serializer.fromJson(jsonArray.getJSONObject(i).toString(),
+                            requestType))
                 }
                 deleteLocally(list, idColumnName, requestType, persist, cache)
             }, {
                 mApiConnection.dynamicDelete<M>(url,
                         create(MediaType.parse(APPLICATION_JSON), jsonArray.toString()))
-                        .map { daoMapHelper(responseType, it) }
+                        .flatMap { daoMap<M>(responseType, it) }
             })
         }
     }
@@ -158,7 +261,7 @@ class CloudStore(private val mApiConnection: ApiConnection,
                         persist, cache)
             }, {
                 mApiConnection.dynamicDelete<M>(url, create(MediaType.parse(APPLICATION_JSON), jsonArray.toString()))
-                        .map { daoMapHelper(responseType, it) }
+                        .flatMap { daoMap<M>(responseType, it) }
             })
         }
     }
@@ -224,15 +327,61 @@ class CloudStore(private val mApiConnection: ApiConnection,
             if (isNetworkNotAvailable(Config.context)) {
                 getErrorSingleNotPersisted<M>()
             } else mApiConnection.dynamicUpload<M>(url, map, multiPartBodyParts)
-                    .map { daoMapHelper(responseType, it) }
+                    .flatMap { daoMap<M>(responseType, it) }
         }
     }
 
-    private fun <M> daoMapHelper(requestType: Class<*>, model: M): M? {
+    /**
+     * Maps the response into [requestType], a list through [DAOMapper.mapAll] so a large one does
+     * not hold up the calling thread.
+     */
+    private fun <M> daoMap(requestType: Class<*>, model: Any?): Single<M> {
         return if (model is List<*>)
-            mEntityDataMapper.mapAllTo(model as List<*>, requestType)
+            mEntityDataMapper.mapAll(model, requestType)
         else
-            mEntityDataMapper.mapTo(model, requestType)
+            Single.just(mEntityDataMapper.mapTo(model, requestType))
+    }
+
+    /**
+     * Serves a list the server did not modify from the query cached for [url], even if it expired
+     * there, and completes without a value if it is not cached any more. The disk store is not
+     * asked, as it holds every item of the class rather than the ones [url] returned. The cached
+     * query starts a new [cacheTtl].
+     */
+    private fun <M> getListLocally(url: String, idColumnName: String, requestType: Class<M>,
+                                   cache: Boolean, cacheTtl: Long): Flowable<List<M>> {
+        if (!withCache(cache) || mMemoryStore == null) {
+            return Flowable.empty()
+        }
+        return mMemoryStore.getStaleQueryItems(url, requestType, Long.MAX_VALUE)
+                .toFlowable()
+                .doOnNext { mMemoryStore.cacheQuery(url, idColumnName, it, requestType, cacheTtl) }
+    }
+
+    /**
+     * Serves an item the server did not modify from the memory store, even if it expired there,
+     * else from the disk store, and completes without a value if neither holds it any more. Either
+     * way its cache entry starts a new [cacheTtl].
+     */
+    private fun <M> getItemLocally(idColumnName: String, itemId: Any, requestType: Class<M>,
+                                   persist: Boolean, cache: Boolean, cacheTtl: Long): Flowable<M> {
+        val cached: Flowable<M> = if (withCache(cache) && mMemoryStore != null)
+            mMemoryStore.getStaleItem<M>(itemId.toString(), requestType, Long.MAX_VALUE)
+                    .toFlowable()
+        else
+            Flowable.empty()
+        val stored: Flowable<M> = if (withDisk(persist) && mDataBaseManager != null)
+            mDataBaseManager.getById(idColumnName, itemId, requestType)
+                    .take(1)
+                    .onErrorResumeNext(Flowable.empty<M>())
+        else
+            Flowable.empty()
+        return cached.switchIfEmpty(stored)
+                .doOnNext {
+                    if (withCache(cache) && it != null) {
+                        mMemoryStore?.cacheObject(idColumnName, it as Any, requestType, cacheTtl)
+                    }
+                }
     }
 
     private fun <M> saveAllToDisk(collection: List<M>, requestType: Class<M>) {
@@ -241,79 +390,124 @@ class CloudStore(private val mApiConnection: ApiConnection,
                 ?.subscribe(SimpleSingleObserver())
     }
 
-    private fun saveAllToMemory(idColumnName: String, jsonArray: JSONArray, requestType: Class<*>) {
-        mMemoryStore?.cacheList(idColumnName, jsonArray, requestType)
+    private fun <M> saveAllLocally(url: String, idColumnName: String, collection: List<M>,
+                                   requestType: Class<M>, persist: Boolean, cache: Boolean,
+                                   cacheTtl: Long) {
+        if (withDisk(persist)) {
+            saveAllToDisk(collection, requestType)
+        }
+        if (withCache(cache)) {
+            mMemoryStore?.cacheQuery(url, idColumnName, collection, requestType, cacheTtl)
+        }
     }
 
-    private fun <M> saveAllLocally(idColumnName: String, collection: List<M>,
-                                   requestType: Class<M>, persist: Boolean, cache: Boolean) {
+    private fun <M> saveChunkLocally(idColumnName: String, chunk: List<M>, requestType: Class<M>,
+                                     persist: Boolean, cache: Boolean, cacheTtl: Long) {
         if (withDisk(persist)) {
-            saveAllToDisk(collection, requestType)
+            saveAllToDisk(chunk, requestType)
         }
         if (withCache(cache)) {
-            saveAllToMemory(idColumnName, JSONArray(gson.toJson(collection)), requestType)
+            mMemoryStore?.cacheList(idColumnName, chunk, requestType, cacheTtl)
+        }
+    }
+
+    private fun <M> saveItemLocally(idColumnName: String, item: M, requestType: Class<M>,
+                                    persist: Boolean, cache: Boolean, cacheTtl: Long) {
+        if (withDisk(persist)) {
+            mDataBaseManager?.put(item, requestType)
+                    ?.subscribeOn(Config.backgroundThread)
+                    ?.subscribe(SimpleSingleObserver())
+        }
+        if (withCache(cache) && item != null) {
+            mMemoryStore?.cacheObject(idColumnName, item as Any, requestType, cacheTtl)
+        }
+    }
+
+    /**
+     * JSON supplied by the caller is saved as is, any other payload as the request type, decoding
+     * it only when the caller did not pass instances of that type.
+     */
+    private fun savePayloadLocally(idColumnName: String, payload: Payload, requestType: Class<*>,
+                                   persist: Boolean, cache: Boolean, cacheTtl: Long) {
+        if (!withDisk(persist) && !withCache(cache)) {
+            return
+        }
+        val json = payload.json
+        val dataClass = requestType as Class<Any>
+        when {
+            json is JSONObject ->
+                saveLocally(idColumnName, json, requestType, persist, cache, cacheTtl)
+            json is JSONArray ->
+                saveAllLocally(idColumnName, json, requestType, persist, cache, cacheTtl)
+            payload.isArray -> saveChunkLocally(idColumnName, payload.toList(dataClass), dataClass,
+                    persist, cache, cacheTtl)
+            else -> saveItemLocally(idColumnName, payload.toItem(dataClass), dataClass, persist,
+                    cache, cacheTtl)
         }
     }
 
     private fun saveLocally(idColumnName: String, jsonObject: JSONObject,
-                            requestType: Class<*>, persist: Boolean, cache: Boolean) {
+                            requestType: Class<*>, persist: Boolean, cache: Boolean,
+                            cacheTtl: Long) {
         if (withDisk(persist)) {
             mDataBaseManager?.put(jsonObject, requestType)
                     ?.subscribeOn(Config.backgroundThread)
                     ?.subscribe(SimpleSingleObserver())
         }
         if (withCache(cache)) {
-            mMemoryStore?.cacheObject(idColumnName, jsonObject, requestType)
+            mMemoryStore?.cacheObject(idColumnName, jsonObject, requestType, cacheTtl)
         }
     }
 
     private fun saveAllLocally(idColumnName: String, jsonArray: JSONArray, requestType: Class<*>,
-                               persist: Boolean, cache: Boolean) {
+                               persist: Boolean, cache: Boolean, cacheTtl: Long) {
         if (withDisk(persist)) {
             mDataBaseManager?.putAll(jsonArray, requestType)
                     ?.subscribeOn(Config.backgroundThread)
                     ?.subscribe(SimpleSingleObserver())
         }
         if (withCache(cache)) {
-            mMemoryStore?.cacheList(idColumnName, jsonArray, requestType)
+            mMemoryStore?.cacheList(idColumnName, jsonArray, requestType, cacheTtl)
         }
     }
 
     private fun <T> deleteLocally(list: List<T>, idColumnName: String, requestType: Class<T>,
                                   persist: Boolean, cache: Boolean) {
         if (withDisk(persist)) {
-            val collectionSize = list.size
-            for (i in 0 until collectionSize) {
-                mDataBaseManager?.evictCollection(list, requestType)
-            }
+            mDataBaseManager?.evictCollection(list, requestType)
+                    ?.subscribeOn(Config.backgroundThread)
+                    ?.subscribe(SimpleSingleObserver())
         }
         if (withCache(cache)) {
-            val stringIds = Flowable.fromIterable(list)
-                    .map { JSONObject(gson.toJson(it)).opt(idColumnName) }
-                    .map { it.toString() }
-                    .toList(list.size)
-                    .blockingGet()
-            mMemoryStore?.deleteListById(stringIds, requestType)
+            val ids = ArrayList<Any>(list.size)
+            for (item in list) {
+                if (item != null) {
+                    IdReader.read(item as Any, idColumnName)?.let { ids.add(it) }
+                }
+            }
+            deleteFromMemory(ids, requestType)
         }
     }
 
     private fun deleteLocallyById(ids: List<Any>, idColumnName: String, requestType: Class<*>,
                                   persist: Boolean, cache: Boolean) {
         if (withDisk(persist)) {
-            val collectionSize = ids.size
-            for (i in 0 until collectionSize) {
-                mDataBaseManager?.evictById(requestType, idColumnName, ids[i])?.blockingGet()
-            }
+            mDataBaseManager?.evictCollectionById(ids, requestType, idColumnName)
+                    ?.subscribeOn(Config.backgroundThread)
+                    ?.subscribe(SimpleSingleObserver())
         }
         if (withCache(cache)) {
-            val stringIds = Flowable.fromIterable(ids)
-                    .map { it.toString() }
-                    .toList(ids.size)
-                    .blockingGet()
-            mMemoryStore?.deleteListById(stringIds, requestType)
+            deleteFromMemory(ids, requestType)
         }
     }
 
+    private fun deleteFromMemory(ids: List<Any>, requestType: Class<*>) {
+        mMemoryStore?.deleteListById(ids, requestType)
+                ?.toSingleDefault(true)
+                ?.subscribeOn(Config.backgroundThread)
+                ?.subscribe(SimpleSingleObserver())
+    }
+
     private class SimpleSingleObserver : SingleObserver<Any> {
         private var subscription: Disposable? = null
 
@@ -335,6 +529,7 @@ class CloudStore(private val mApiConnection: ApiConnection,
 
         const val APPLICATION_JSON = "application/json"
         const val MULTIPART_FORM_DATA = "multipart/form-data"
+        const val STREAM_CHUNK_SIZE = 100
         private val TAG = CloudStore::class.java.simpleName
     }
 }
\ No newline at end of file
@@ -1,10 +1,10 @@
 package com.zeyad.usecases.stores
 
+import com.zeyad.usecases.requests.Payload
 import io.reactivex.Completable
 import io.reactivex.Flowable
 import io.reactivex.Single
 import org.json.JSONArray
-import org.json.JSONObject
 import java.io.File
 import java.util.*
 
@@ -17,7 +17,34 @@ interface DataStore {
                            idColumnName: String,
                            requestType: Class<M>,
                            persist: Boolean,
-                           shouldCache: Boolean): Flowable<List<M>>
+                           shouldCache: Boolean,
+                           cacheTtl: Long,
+                           headers: Map<String, String>): Flowable<List<M>>
+
+    /**
+     * @param fingerprint whether a response that hashes the same as the last one is served from
+     * the local stores instead of being decoded and saved again. Stores without a network ignore it.
+     */
+    fun <M> dynamicGetList(url: String,
+                           idColumnName: String,
+                           requestType: Class<M>,
+                           persist: Boolean,
+                           shouldCache: Boolean,
+                           cacheTtl: Long,
+                           headers: Map<String, String>,
+                           fingerprint: Boolean): Flowable<List<M>> =
+            dynamicGetList(url, idColumnName, requestType, persist, shouldCache, cacheTtl, headers)
+
+    /**
+     * Get an [Flowable] which will emit the items of a list one by one, as they are read.
+     */
+    fun <M> dynamicStreamList(url: String,
+                              idColumnName: String,
+                              requestType: Class<M>,
+                              persist: Boolean,
+                              shouldCache: Boolean,
+                              cacheTtl: Long,
+                              headers: Map<String, String>): Flowable<M>
 
     /**
      * Get an [Flowable] which will emit a Object by its id.
@@ -27,7 +54,24 @@ interface DataStore {
                              itemId: Any,
                              requestType: Class<M>,
                              persist: Boolean,
-                             shouldCache: Boolean): Flowable<M>
+                             shouldCache: Boolean,
+                             cacheTtl: Long,
+                             headers: Map<String, String>): Flowable<M>
+
+    /**
+     * @param fingerprint see the [dynamicGetList] taking one.
+     */
+    fun <M> dynamicGetObject(url: String,
+                             idColumnName: String,
+                             itemId: Any,
+                             requestType: Class<M>,
+                             persist: Boolean,
+                             shouldCache: Boolean,
+                             cacheTtl: Long,
+                             headers: Map<String, String>,
+                             fingerprint: Boolean): Flowable<M> =
+            dynamicGetObject(url, idColumnName, itemId, requestType, persist, shouldCache, cacheTtl,
+                    headers)
 
     /**
      * Search disk with a query which returns an [Flowable] that will emit a list of
@@ -36,26 +80,28 @@ interface DataStore {
     fun <M> queryDisk(query: String, clazz: Class<M>): Flowable<List<M>>
 
     /**
-     * Patch a JSONObject which returns an [Flowable] that will emit a Object.
+     * Patch a [Payload] which returns an [Flowable] that will emit a Object.
      */
     fun <M> dynamicPatchObject(url: String,
                                idColumnName: String,
-                               jsonObject: JSONObject,
+                               payload: Payload,
                                requestType: Class<*>,
                                responseType: Class<M>,
                                persist: Boolean,
-                               cache: Boolean): Single<M>
+                               cache: Boolean,
+                               cacheTtl: Long): Single<M>
 
     /**
-     * Post a JSONObject which returns an [Flowable] that will emit a Object.
+     * Post a [Payload] which returns an [Flowable] that will emit a Object.
      */
     fun <M> dynamicPostObject(url: String,
                               idColumnName: String,
-                              jsonObject: JSONObject,
+                              payload: Payload,
                               requestType: Class<*>,
                               responseType: Class<M>,
                               persist: Boolean,
-                              cache: Boolean): Single<M>
+                              cache: Boolean,
+                              cacheTtl: Long): Single<M>
 
     /**
      * Post a HashMap<String></String>, Object> which returns an [Flowable] that will emit a list of
@@ -63,11 +109,12 @@ interface DataStore {
      */
     fun <M> dynamicPostList(url: String,
                             idColumnName: String,
-                            jsonArray: JSONArray,
+                            payload: Payload,
                             requestType: Class<*>,
                             responseType: Class<M>,
                             persist: Boolean,
-                            cache: Boolean): Single<M>
+                            cache: Boolean,
+                            cacheTtl: Long): Single<M>
 
     /**
      * Put a HashMap<String></String>, Object> disk with a RealmQuery which returns an [Flowable] that
@@ -75,11 +122,12 @@ interface DataStore {
      */
     fun <M> dynamicPutObject(url: String,
                              idColumnName: String,
-                             jsonObject: JSONObject,
+                             payload: Payload,
                              requestType: Class<*>,
                              responseType: Class<M>,
                              persist: Boolean,
-                             cache: Boolean): Single<M>
+                             cache: Boolean,
+                             cacheTtl: Long): Single<M>
 
     /**
      * Put a HashMap<String></String>, Object> disk with a RealmQuery which returns an [Flowable] that
@@ -87,11 +135,12 @@ interface DataStore {
      */
     fun <M> dynamicPutList(url: String,
                            idColumnName: String,
-                           jsonArray: JSONArray,
+                           payload: Payload,
                            requestType: Class<*>,
                            responseType: Class<M>,
                            persist: Boolean,
-                           cache: Boolean): Single<M>
+                           cache: Boolean,
+                           cacheTtl: Long): Single<M>
 
     /**
      * Delete a HashMap<String></String>, Object> from cloud which returns an [Flowable] that will emit
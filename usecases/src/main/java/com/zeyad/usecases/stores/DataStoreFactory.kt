@@ -2,6 +2,8 @@ package com.zeyad.usecases.stores
 
 import com.zeyad.usecases.Config
 import com.zeyad.usecases.Mockable
+import com.zeyad.usecases.cache.ObjectCache
+import com.zeyad.usecases.cache.Weigher
 import com.zeyad.usecases.mapper.DAOMapper
 import com.zeyad.usecases.network.ApiConnection
 import com.zeyad.usecases.utils.DataBaseManagerUtil
@@ -29,7 +31,12 @@ class DataStoreFactory(private val dataBaseManagerUtil: DataBaseManagerUtil?,
      */
     fun memory(): MemoryStore? {
         if (withCache && memoryStore == null) {
-            memoryStore = MemoryStore(Config.gson)
+            val cacheSize = if (Config.heapCacheSize > 0)
+                Config.heapCacheSize
+            else
+                ObjectCache.DEFAULT_MAXIMUM_SIZE.toLong()
+            memoryStore = MemoryStore(Config.serializer, objectCache = ObjectCache(cacheSize,
+                    Config.cacheWeigher ?: Weigher.SINGLETON))
         }
         return if (withCache) memoryStore else null
     }
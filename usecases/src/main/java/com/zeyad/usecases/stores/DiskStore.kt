@@ -1,11 +1,13 @@
 package com.zeyad.usecases.stores
 
-import com.zeyad.usecases.Config.gson
+import com.zeyad.usecases.Config
 import com.zeyad.usecases.Mockable
 import com.zeyad.usecases.convertToListOfId
 import com.zeyad.usecases.convertToStringListOfId
 import com.zeyad.usecases.db.DataBaseManager
+import com.zeyad.usecases.requests.Payload
 import com.zeyad.usecases.withCache
+import io.reactivex.Completable
 import io.reactivex.Flowable
 import io.reactivex.Single
 import org.json.JSONArray
@@ -24,105 +26,125 @@ class DiskStore(private val mDataBaseManager: DataBaseManager,
     }
 
     override fun <M> dynamicGetList(url: String, idColumnName: String, requestType: Class<M>,
-                                    persist: Boolean, shouldCache: Boolean): Flowable<List<M>> {
+                                    persist: Boolean, shouldCache: Boolean, cacheTtl: Long,
+                                    headers: Map<String, String>): Flowable<List<M>> {
         return mDataBaseManager.getAll(requestType)
                 .doOnNext { ms: List<M> ->
                     onNext(shouldCache) {
-                        mMemoryStore?.cacheList(idColumnName, JSONArray(gson.toJson(ms)), requestType)
+                        mMemoryStore?.cacheQuery(url, idColumnName, ms, requestType, cacheTtl)
                     }
                 }
     }
 
+    override fun <M> dynamicStreamList(url: String, idColumnName: String, requestType: Class<M>,
+                                       persist: Boolean, shouldCache: Boolean, cacheTtl: Long,
+                                       headers: Map<String, String>): Flowable<M> {
+        return mDataBaseManager.getAll(requestType).concatMapIterable { it }
+    }
+
     override fun <M> dynamicGetObject(url: String, idColumnName: String, itemId: Any,
-                                      requestType: Class<M>, persist: Boolean, shouldCache: Boolean): Flowable<M> {
+                                      requestType: Class<M>, persist: Boolean, shouldCache: Boolean,
+                                      cacheTtl: Long, headers: Map<String, String>): Flowable<M> {
         return mDataBaseManager.getById(idColumnName, itemId, requestType)
                 .doOnNext { m: M ->
                     onNext(shouldCache) {
-                        mMemoryStore?.cacheObject(idColumnName, JSONObject(gson.toJson(m)), requestType)
+                        mMemoryStore?.cacheObject(idColumnName, m as Any, requestType, cacheTtl)
                     }
                 }
     }
 
     /**
-     * Patch a JSONObject which returns an [Flowable] that will emit a Object.
+     * Patch a [Payload] which returns an [Single] that will emit a Object.
      */
-    override fun <M> dynamicPatchObject(url: String, idColumnName: String,
-                                        jsonObject: JSONObject, requestType: Class<*>, responseType: Class<M>,
-                                        persist: Boolean, cache: Boolean): Single<M> {
-        return mDataBaseManager.put(jsonObject, requestType)
-                .doOnSuccess {
-                    onNext(cache) {
-                        mMemoryStore?.cacheObject(idColumnName, JSONObject(gson.toJson(jsonObject)), requestType)
-                    }
-                }
+    override fun <M> dynamicPatchObject(url: String, idColumnName: String, payload: Payload,
+                                        requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                        cache: Boolean, cacheTtl: Long): Single<M> {
+        return Single.defer { putPayload(idColumnName, payload, requestType, cache, cacheTtl) }
                 .map { it as M }
     }
 
     /**
-     * Post a JSONObject which returns an [Single] that will emit a Object.
+     * Post a [Payload] which returns an [Single] that will emit a Object.
      */
-    override fun <M> dynamicPostObject(url: String, idColumnName: String, jsonObject: JSONObject,
+    override fun <M> dynamicPostObject(url: String, idColumnName: String, payload: Payload,
                                        requestType: Class<*>, responseType: Class<M>, persist: Boolean,
-                                       cache: Boolean): Single<M> {
-        return mDataBaseManager.put(jsonObject, requestType)
-                .doOnSuccess {
-                    onNext(cache) {
-                        mMemoryStore?.cacheObject(idColumnName,
-                                JSONObject(gson.toJson(jsonObject)), requestType)
-                    }
-                }
+                                       cache: Boolean, cacheTtl: Long): Single<M> {
+        return Single.defer { putPayload(idColumnName, payload, requestType, cache, cacheTtl) }
                 .map { it as M }
     }
 
     /**
-     * Post a HashMap<String></String>, Object> which returns an [Single] that will emit a list of
-     * Object.
+     * Post a [Payload] which returns an [Single] that will emit a list of Object.
      */
-    override fun <M> dynamicPostList(url: String, idColumnName: String,
-                                     jsonArray: JSONArray, requestType: Class<*>, responseType: Class<M>,
-                                     persist: Boolean, cache: Boolean): Single<M> {
-        return mDataBaseManager.putAll(jsonArray, requestType)
-                .doOnSuccess {
-                    onNext(cache) {
-                        mMemoryStore?.cacheList(idColumnName, jsonArray, requestType)
-                    }
-                }
+    override fun <M> dynamicPostList(url: String, idColumnName: String, payload: Payload,
+                                     requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                     cache: Boolean, cacheTtl: Long): Single<M> {
+        return Single.defer { putPayload(idColumnName, payload, requestType, cache, cacheTtl) }
                 .map { it as M }
     }
 
     /**
-     * Put a HashMap<String></String>, Object> disk with a RealmQuery which returns an [Single] that
-     * will emit a Object.
+     * Put a [Payload] to disk which returns an [Single] that will emit a Object.
      */
-    override fun <M> dynamicPutObject(url: String, idColumnName: String,
-                                      jsonObject: JSONObject, requestType: Class<*>, responseType: Class<M>,
-                                      persist: Boolean, cache: Boolean): Single<M> {
-        return mDataBaseManager.put(jsonObject, requestType)
-                .doOnSuccess {
-                    onNext(cache) {
-                        mMemoryStore?.cacheObject(idColumnName,
-                                JSONObject(gson.toJson(jsonObject)), requestType)
-                    }
-                }
+    override fun <M> dynamicPutObject(url: String, idColumnName: String, payload: Payload,
+                                      requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                      cache: Boolean, cacheTtl: Long): Single<M> {
+        return Single.defer { putPayload(idColumnName, payload, requestType, cache, cacheTtl) }
                 .map { it as M }
     }
 
     /**
-     * Put a HashMap<String></String>, Object> disk with a RealmQuery which returns an [Single] that
-     * will emit a list of Object.
+     * Put a [Payload] to disk which returns an [Single] that will emit a list of Object.
      */
-    override fun <M> dynamicPutList(url: String, idColumnName: String,
-                                    jsonArray: JSONArray, requestType: Class<*>, responseType: Class<M>,
-                                    persist: Boolean, cache: Boolean): Single<M> {
-        return mDataBaseManager.putAll(jsonArray, requestType)
-                .doOnSuccess {
-                    onNext(cache) {
-                        mMemoryStore?.cacheList(idColumnName, jsonArray, requestType)
-                    }
-                }
+    override fun <M> dynamicPutList(url: String, idColumnName: String, payload: Payload,
+                                    requestType: Class<*>, responseType: Class<M>, persist: Boolean,
+                                    cache: Boolean, cacheTtl: Long): Single<M> {
+        return Single.defer { putPayload(idColumnName, payload, requestType, cache, cacheTtl) }
                 .map { it as M }
     }
 
+    /**
+     * JSON supplied by the caller is put as is, any other payload as the request type, decoding it
+     * only when the caller did not pass instances of that type.
+     */
+    private fun putPayload(idColumnName: String, payload: Payload, requestType: Class<*>,
+                           cache: Boolean, cacheTtl: Long): Single<Any> {
+        val json = payload.json
+        val dataClass = requestType as Class<Any>
+        return when {
+            json is JSONObject -> mDataBaseManager.put(json, requestType)
+                    .doOnSuccess {
+                        onNext(cache) {
+                            mMemoryStore?.cacheObject(idColumnName, json, requestType, cacheTtl)
+                        }
+                    }
+            json is JSONArray -> mDataBaseManager.putAll(json, requestType)
+                    .doOnSuccess {
+                        onNext(cache) {
+                            mMemoryStore?.cacheList(idColumnName, json, requestType, cacheTtl)
+                        }
+                    }
+            payload.isArray -> {
+                val items = payload.toList(dataClass)
+                mDataBaseManager.putAll(items, dataClass)
+                        .doOnSuccess {
+                            onNext(cache) {
+                                mMemoryStore?.cacheList(idColumnName, items, dataClass, cacheTtl)
+                            }
+                        }
+            }
+            else -> {
+                val item = payload.toItem(dataClass)
+                mDataBaseManager.put(item, dataClass)
+                        .doOnSuccess {
+                            onNext(cache) {
+                                mMemoryStore?.cacheObject(idColumnName, item, dataClass, cacheTtl)
+                            }
+                        }
+            }
+        }
+    }
+
     /**
      * Delete a HashMap<String></String>, Object> from cloud which returns an [Single] that will emit
      * a Object.
@@ -137,14 +159,13 @@ class DiskStore(private val mDataBaseManager: DataBaseManager,
                                                 cache: Boolean): Single<M> {
         val list = mutableListOf<T>()
         for (i in 0..(jsonArray.length() - 1)) {
-            list.add(gson.fromJson(jsonArray.getJSONObject(i).toString(), requestType))
+            list.add(Config.serializer.fromJson(jsonArray.getJSONObject(i).toString(),
+                    requestType))
         }
         return mDataBaseManager.evictCollection(list, requestType)
-                .doOnSuccess {
-                    onNext(cache) {
-                        mMemoryStore?.deleteListById(convertToListOfId(jsonArray, String::class.java),
-                                requestType)
-                    }
+                .flatMap {
+                    deleteFromMemory(cache, convertToListOfId(jsonArray, String::class.java), requestType)
+                            .toSingleDefault(it)
                 }
                 .map { it as M }
     }
@@ -159,14 +180,18 @@ class DiskStore(private val mDataBaseManager: DataBaseManager,
                                                  cache: Boolean): Single<M> {
         val stringIds = convertToStringListOfId(jsonArray)
         return mDataBaseManager.evictCollectionById(stringIds, requestType, idColumnName)
-                .doOnSuccess {
-                    onNext(cache) {
-                        mMemoryStore?.deleteListById(stringIds.map { toString() }, requestType)
-                    }
-                }
+                .flatMap { deleteFromMemory(cache, stringIds, requestType).toSingleDefault(it) }
                 .map { it as M }
     }
 
+    private fun deleteFromMemory(cache: Boolean, ids: List<Any>, requestType: Class<*>): Completable {
+        return if (withCache(cache)) {
+            mMemoryStore?.deleteListById(ids, requestType) ?: Completable.complete()
+        } else {
+            Completable.complete()
+        }
+    }
+
     override fun <M> queryDisk(query: String, clazz: Class<M>): Flowable<List<M>> {
         return mDataBaseManager.getQuery(query, clazz)
     }
@@ -1,117 +1,344 @@
 package com.zeyad.usecases.stores
 
 import android.util.Log
-import com.google.gson.Gson
 import com.zeyad.usecases.Config
 import com.zeyad.usecases.Mockable
-import io.reactivex.Observable
-import io.reactivex.Single
+import com.zeyad.usecases.cache.CacheKey
+import com.zeyad.usecases.cache.IdReader
+import com.zeyad.usecases.cache.KeyIndex
+import com.zeyad.usecases.cache.ObjectCache
+import com.zeyad.usecases.cache.QueryCache
+import com.zeyad.usecases.serialization.Serializer
+import io.reactivex.Completable
+import io.reactivex.Maybe
 import org.json.JSONArray
 import org.json.JSONObject
 import st.lowlevel.storo.Storo
 import java.util.*
+import java.util.concurrent.TimeUnit
 
 /**
+ * Two tiered cache, decoded instances live in the [ObjectCache] and Storo acts as an optional
+ * second tier behind it, holding the items as JSON strings written by the [serializer].
+ *
  * @author by ZIaDo on 6/5/17.
  */
 @Mockable
-class MemoryStore(private val gson: Gson,
-                  private val mapOfIds: MutableMap<Class<*>, MutableSet<String>> = mutableMapOf()) {
-
-    fun <M> getItem(itemId: String, dataClass: Class<*>): Single<M> {
-        return Single.defer<M> {
-            val key = dataClass.simpleName + itemId
-            if (isValid(key)) {
-                Storo.get<M>(key, dataClass).async().firstElement().toSingle()
-            } else {
-                Single.error<M>(IllegalAccessException("Cache Miss!"))
+class MemoryStore(private val serializer: Serializer,
+                  private val keyIndex: KeyIndex = KeyIndex(),
+                  private val objectCache: ObjectCache = ObjectCache(),
+                  private val withStoro: Boolean = Config.withStoro,
+                  private val queryCache: QueryCache = QueryCache()) {
+
+    init {
+        objectCache.evictionListener = { key, expired ->
+            if (expired) {
+                keyIndex.remove(key)
+            } else if (!withStoro || !isValid(key.storoKey())) {
+                keyIndex.invalidate(key)
+            }
+        }
+    }
+
+    /**
+     * @return a [Maybe] that completes without a value on a cache miss.
+     */
+    fun <M> getItem(itemId: String, dataClass: Class<*>): Maybe<M> {
+        val key = CacheKey.of(dataClass, itemId)
+        return Maybe.fromCallable<M> { lookUp<M>(key) }
+    }
+
+    /**
+     * @return a [Maybe] that completes without a value if any of the items is missing.
+     */
+    fun <M> getAllItems(dataClass: Class<M>): Maybe<List<M>> {
+        return Maybe.fromCallable<List<M>> { lookUpAll(dataClass, 0) }
+    }
+
+    /**
+     * Like [getItem], but also serves an in-heap entry that expired less than [gracePeriod]
+     * milliseconds ago, for requests that revalidate in the background.
+     */
+    fun <M> getStaleItem(itemId: String, dataClass: Class<*>, gracePeriod: Long): Maybe<M> {
+        val key = CacheKey.of(dataClass, itemId)
+        return Maybe.fromCallable<M> { lookUpStale<M>(key, gracePeriod) }
+    }
+
+    /**
+     * Like [getAllItems], but also serves in-heap entries that expired less than [gracePeriod]
+     * milliseconds ago, for requests that revalidate in the background.
+     */
+    fun <M> getStaleItems(dataClass: Class<M>, gracePeriod: Long): Maybe<List<M>> {
+        return Maybe.fromCallable<List<M>> { lookUpAll(dataClass, gracePeriod) }
+    }
+
+    /**
+     * Serves the items a list request to [url] returned, in the same order, as long as the query
+     * and every item it references are still cached. Completes without a value otherwise.
+     */
+    fun <M> getQueryItems(url: String, dataClass: Class<M>): Maybe<List<M>> {
+        return Maybe.fromCallable<List<M>> { lookUpQuery(url, dataClass, 0) }
+    }
+
+    /**
+     * Like [getQueryItems], but also serves a query and in-heap items that expired less than
+     * [gracePeriod] milliseconds ago.
+     */
+    fun <M> getStaleQueryItems(url: String, dataClass: Class<M>,
+                               gracePeriod: Long): Maybe<List<M>> {
+        return Maybe.fromCallable<List<M>> { lookUpQuery(url, dataClass, gracePeriod) }
+    }
+
+    fun isQueryExpired(url: String, dataClass: Class<*>): Boolean {
+        val query = queryCache.get(QueryCache.Key(dataClass, url), Long.MAX_VALUE) ?: return true
+        if (query.isExpired()) {
+            return true
+        }
+        for (key in query.keys) {
+            if (objectCache.isExpired(key)) {
+                return true
             }
         }
+        return false
+    }
+
+    fun isExpired(itemId: String, dataClass: Class<*>): Boolean {
+        return objectCache.isExpired(CacheKey.of(dataClass, itemId))
     }
 
-    fun <M> getAllItems(dataClass: Class<M>): Single<List<M>> {
-        return Single.defer {
-            val missed = BooleanArray(1)
-            val stringSet = mapOfIds[dataClass]
-                    ?: return@defer Single.error<List<M>>(IllegalAccessException("Cache Miss!"))
-            val result = Observable.fromIterable(stringSet)
-                    .filter { key ->
-                        if (isValid(key)) {
-                            true
-                        } else {
-                            missed[0] = true
-                            false
-                        }
-                    }
-                    .filter { !missed[0] }
-                    .map<M> { Storo.get(it, dataClass).execute() }
-                    .toList(if (missed[0]) 0 else stringSet.size)
-                    .blockingGet()
-                    .toList<M>()
-            when {
-                missed[0] -> Single.error<List<M>>(IllegalAccessException("Cache Miss!"))
-                else -> Single.just<List<M>>(result)
+    fun hasExpiredItems(dataClass: Class<*>): Boolean {
+        val keys = keyIndex.snapshot(dataClass) ?: return true
+        for (key in keys) {
+            if (objectCache.isExpired(key)) {
+                return true
             }
         }
+        return false
     }
 
     fun cacheObject(idColumnName: String, jsonObject: JSONObject, dataClass: Class<*>) {
-        val className = dataClass.simpleName
-        val key = className + jsonObject.optString(idColumnName)
-        Storo.put(key, gson.fromJson(jsonObject.toString(), dataClass))
-                .setExpiry(Config.cacheDuration, Config.cacheTimeUnit)
-                .execute()
-        addKey(dataClass, key)
-        Log.d(TAG, "$className cached!, id = $key")
+        cacheObject(idColumnName, jsonObject, dataClass, 0)
+    }
+
+    /**
+     * @param cacheTtl time to live in milliseconds, 0 falls back to [Config.cacheDuration].
+     */
+    fun cacheObject(idColumnName: String, jsonObject: JSONObject, dataClass: Class<*>,
+                    cacheTtl: Long) {
+        cacheItem(idColumnName, jsonObject, dataClass, cacheTtl)
+    }
+
+    /**
+     * Caches an already decoded item as is, reading its id through [IdReader].
+     *
+     * @param cacheTtl time to live in milliseconds, 0 falls back to [Config.cacheDuration].
+     */
+    fun cacheObject(idColumnName: String, item: Any, dataClass: Class<*>, cacheTtl: Long) {
+        cacheItem(idColumnName, item, dataClass, cacheTtl)
     }
 
     fun cacheList(idColumnName: String?, jsonArray: JSONArray, dataClass: Class<*>) {
+        cacheList(idColumnName, jsonArray, dataClass, 0)
+    }
+
+    /**
+     * @param cacheTtl time to live in milliseconds, 0 falls back to [Config.cacheDuration].
+     */
+    fun cacheList(idColumnName: String?, jsonArray: JSONArray, dataClass: Class<*>,
+                  cacheTtl: Long) {
         if (idColumnName == null || idColumnName.isEmpty()) {
             Log.e(TAG, "cacheList",
                     IllegalArgumentException("idColumnName is not available to cache list"))
             return
         }
+        keyIndex.revalidate(dataClass)
         val size = jsonArray.length()
         for (i in 0 until size) {
-            cacheObject(idColumnName, jsonArray.optJSONObject(i), dataClass)
+            cacheObject(idColumnName, jsonArray.optJSONObject(i), dataClass, cacheTtl)
+        }
+    }
+
+    /**
+     * Like [cacheList], for items that are already decoded.
+     */
+    fun cacheList(idColumnName: String?, items: List<*>, dataClass: Class<*>, cacheTtl: Long) {
+        if (idColumnName == null || idColumnName.isEmpty()) {
+            Log.e(TAG, "cacheList",
+                    IllegalArgumentException("idColumnName is not available to cache list"))
+            return
+        }
+        keyIndex.revalidate(dataClass)
+        for (item in items) {
+            if (item != null) {
+                cacheItem(idColumnName, item, dataClass, cacheTtl)
+            }
         }
     }
 
-    fun deleteListById(ids: List<String>, dataClass: Class<*>) {
-        if (ids.isEmpty()) {
+    /**
+     * Caches the items like [cacheList] and remembers their ids, in order, as the result of the
+     * list request to [url].
+     */
+    fun cacheQuery(url: String, idColumnName: String?, jsonArray: JSONArray, dataClass: Class<*>,
+                   cacheTtl: Long) {
+        if (idColumnName == null || idColumnName.isEmpty()) {
+            Log.e(TAG, "cacheQuery",
+                    IllegalArgumentException("idColumnName is not available to cache query"))
             return
         }
-        val className = dataClass.simpleName
-        Observable.fromIterable(ids)
-                .map { id -> className + id }
-                .filter { key ->
-                    if (isValid(key)) {
-                        true
-                    } else {
-                        removeKey(dataClass, key)
-                        false
-                    }
-                }
-                .doOnEach { stringNotification ->
-                    val key = stringNotification.value!!
-                    removeKey(dataClass, key)
-                    Log.d(TAG, String.format("%s %s deleted!, id = %s", className,
-                            if (Storo.delete(key)) "" else "not ", key))
+        keyIndex.revalidate(dataClass)
+        val size = jsonArray.length()
+        val keys = ArrayList<CacheKey>(size)
+        for (i in 0 until size) {
+            keys.add(cacheItem(idColumnName, jsonArray.optJSONObject(i), dataClass, cacheTtl))
+        }
+        queryCache.put(QueryCache.Key(dataClass, url), keys, expiresAt(cacheTtl))
+    }
+
+    /**
+     * Like [cacheQuery], for items that are already decoded.
+     */
+    fun cacheQuery(url: String, idColumnName: String?, items: List<*>, dataClass: Class<*>,
+                   cacheTtl: Long) {
+        if (idColumnName == null || idColumnName.isEmpty()) {
+            Log.e(TAG, "cacheQuery",
+                    IllegalArgumentException("idColumnName is not available to cache query"))
+            return
+        }
+        keyIndex.revalidate(dataClass)
+        val keys = ArrayList<CacheKey>(items.size)
+        for (item in items) {
+            if (item != null) {
+                keys.add(cacheItem(idColumnName, item, dataClass, cacheTtl))
+            }
+        }
+        queryCache.put(QueryCache.Key(dataClass, url), keys, expiresAt(cacheTtl))
+    }
+
+    /**
+     * Drops the items from the heap cache right away and returns a [Completable] that deletes their
+     * Storo copies, so the disk work runs on the scheduler it is subscribed on.
+     */
+    fun deleteListById(ids: List<Any>, dataClass: Class<*>): Completable {
+        val keys = ArrayList<CacheKey>(ids.size)
+        for (id in ids) {
+            val key = CacheKey.of(dataClass, id)
+            objectCache.remove(key)
+            keyIndex.remove(key)
+            keys.add(key)
+        }
+        if (keys.isEmpty() || !withStoro) {
+            return Completable.complete()
+        }
+        return Completable.fromAction {
+            var deleted = 0
+            for (key in keys) {
+                if (Storo.delete(key.storoKey())) {
+                    deleted++
                 }
-                .blockingSubscribe()
+            }
+            Log.d(TAG, String.format("%s deleted %d of %d items", dataClass.simpleName, deleted,
+                    keys.size))
+        }
     }
 
-    private fun addKey(dataType: Class<*>, key: String) {
-        if (!mapOfIds.containsKey(dataType)) {
-            mapOfIds[dataType] = HashSet(setOf(key))
-        } else {
-            mapOfIds[dataType]?.add(key)
+    private fun cacheItem(idColumnName: String, jsonObject: JSONObject, dataClass: Class<*>,
+                          cacheTtl: Long): CacheKey {
+        val key = CacheKey.of(dataClass, jsonObject.opt(idColumnName) ?: "")
+        return cacheItem(key, serializer.fromJson<Any>(jsonObject.toString(), dataClass), dataClass,
+                cacheTtl)
+    }
+
+    private fun cacheItem(idColumnName: String, item: Any, dataClass: Class<*>,
+                          cacheTtl: Long): CacheKey {
+        if (item is JSONObject) {
+            return cacheItem(idColumnName, item, dataClass, cacheTtl)
         }
+        val key = CacheKey.of(dataClass, IdReader.read(item, idColumnName) ?: "")
+        return cacheItem(key, item, dataClass, cacheTtl)
     }
 
-    private fun removeKey(dataType: Class<*>, key: String) {
-        if (mapOfIds.containsKey(dataType)) {
-            mapOfIds[dataType]?.remove(key)
+    private fun cacheItem(key: CacheKey, item: Any, dataClass: Class<*>, cacheTtl: Long): CacheKey {
+        objectCache.put(key, item, expiresAt(cacheTtl))
+        if (withStoro) {
+            val storoPut = Storo.put(key.storoKey(), serializer.toJson(item))
+            val storoExpiry = if (cacheTtl > 0) {
+                storoPut.setExpiry(cacheTtl, TimeUnit.MILLISECONDS)
+            } else {
+                storoPut.setExpiry(Config.cacheDuration, Config.cacheTimeUnit)
+            }
+            storoExpiry.execute()
+        }
+        keyIndex.add(key)
+        Log.d(TAG, "${dataClass.simpleName} cached!, id = ${key.id}")
+        return key
+    }
+
+    /**
+     * Looks the item up in the in-heap tier first, then falls back to Storo, promoting the
+     * decoded instance on a hit so the next read is served from the heap.
+     */
+    private fun <M> lookUp(key: CacheKey): M? {
+        val cached = objectCache.get(key)
+        if (cached != null) {
+            return cached as M
+        }
+        if (!withStoro) {
+            return null
+        }
+        val storoKey = key.storoKey()
+        if (!isValid(storoKey)) {
+            return null
+        }
+        val json = Storo.get<String>(storoKey, String::class.java).execute() ?: return null
+        val item = serializer.fromJson<M>(json, key.dataClass)
+        objectCache.put(key, item as Any, expiresAt(0))
+        return item
+    }
+
+    private fun <M> lookUpAll(dataClass: Class<M>, gracePeriod: Long): List<M>? {
+        val keys = keyIndex.snapshot(dataClass) ?: return null
+        val result = ArrayList<M>(keys.size)
+        for (key in keys) {
+            val item = lookUpStale<M>(key, gracePeriod)
+            if (item == null) {
+                return null
+            }
+            result.add(item)
+        }
+        return result
+    }
+
+    private fun <M> lookUpQuery(url: String, dataClass: Class<M>, gracePeriod: Long): List<M>? {
+        val key = QueryCache.Key(dataClass, url)
+        val query = queryCache.get(key, gracePeriod) ?: return null
+        val result = ArrayList<M>(query.keys.size)
+        for (itemKey in query.keys) {
+            val item = lookUpStale<M>(itemKey, gracePeriod)
+            if (item == null) {
+                queryCache.remove(key)
+                return null
+            }
+            result.add(item)
+        }
+        return result
+    }
+
+    private fun <M> lookUpStale(key: CacheKey, gracePeriod: Long): M? {
+        if (gracePeriod <= 0) {
+            return lookUp<M>(key)
+        }
+        val cached = objectCache.getStale(key, gracePeriod)
+        return if (cached != null) cached as M else lookUp<M>(key)
+    }
+
+    private fun expiresAt(cacheTtl: Long): Long {
+        return if (cacheTtl > 0) {
+            System.currentTimeMillis() + cacheTtl
+        } else if (Config.cacheDuration > 0) {
+            System.currentTimeMillis() + Config.cacheTimeUnit.toMillis(Config.cacheDuration)
+        } else {
+            ObjectCache.NO_EXPIRY
         }
     }
 
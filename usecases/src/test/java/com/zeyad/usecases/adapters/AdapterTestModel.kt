@@ -0,0 +1,22 @@
+package com.zeyad.usecases.adapters
+
+import com.google.gson.annotations.SerializedName
+
+@GenerateAdapter
+class AdapterTestModel {
+    @SerializedName("id")
+    var id: Int = 0
+
+    @SerializedName(value = "name", alternate = ["login"])
+    var name: String? = null
+
+    var tags: List<String>? = null
+
+    @Intern
+    var avatarUrl: String? = null
+
+    @GenerateAdapter
+    class Nested {
+        var value: Long = 0
+    }
+}
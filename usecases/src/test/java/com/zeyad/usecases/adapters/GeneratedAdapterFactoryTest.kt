@@ -0,0 +1,69 @@
+package com.zeyad.usecases.adapters
+
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.cache.StringPool
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class GeneratedAdapterFactoryTest {
+
+    @After
+    fun tearDown() {
+        Config.stringPool = null
+    }
+
+    @Test
+    fun annotatedModelsUseTheGeneratedAdapter() {
+        assertEquals("AdapterTestModel_JsonAdapter",
+                Config.gson.getAdapter(AdapterTestModel::class.java).javaClass.simpleName)
+        assertEquals("AdapterTestModel_Nested_JsonAdapter",
+                Config.gson.getAdapter(AdapterTestModel.Nested::class.java).javaClass.simpleName)
+    }
+
+    @Test
+    fun otherModelsAreLeftToGson() {
+        assertNotEquals("TestModel_JsonAdapter",
+                Config.gson.getAdapter(TestModel::class.java).javaClass.simpleName)
+    }
+
+    @Test
+    fun roundTrip() {
+        val model = Config.gson.fromJson("{\"id\":1,\"login\":\"one\",\"tags\":[\"a\"],\"x\":2}",
+                AdapterTestModel::class.java)
+
+        assertEquals(1, model.id)
+        assertEquals("one", model.name)
+        assertEquals(listOf("a"), model.tags)
+        assertEquals("{\"id\":1,\"name\":\"one\",\"tags\":[\"a\"]}", Config.gson.toJson(model))
+    }
+
+    @Test
+    fun adapterNameOfNestedClass() {
+        assertEquals("com.zeyad.usecases.adapters.AdapterTestModel_Nested_JsonAdapter",
+                GeneratedAdapterFactory.adapterNameOf(AdapterTestModel.Nested::class.java))
+    }
+
+    @Test
+    fun stringsArePooledOnceTheAppTurnsThePoolOn() {
+        val json = "{\"name\":\"a-login-longer-than-the-limit\",\"tags\":[\"kotlin\"]," +
+                "\"avatarUrl\":\"https://avatars.example.com/u/1\"}"
+        val unpooled = Config.gson.fromJson(json, AdapterTestModel::class.java)
+        Config.stringPool = StringPool(maxLength = 8)
+
+        val first = Config.gson.fromJson(json, AdapterTestModel::class.java)
+        val second = Config.gson.fromJson(json, AdapterTestModel::class.java)
+
+        assertSame(first.tags!![0], second.tags!![0])
+        assertSame(first.avatarUrl, second.avatarUrl)
+        assertNotSame(first.name, second.name)
+        assertNotSame(unpooled.tags!![0], first.tags!![0])
+    }
+}
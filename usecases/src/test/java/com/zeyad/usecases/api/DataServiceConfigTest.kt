@@ -48,6 +48,7 @@ class DataServiceConfigTest {
                 .okHttpBuilder(builder)
                 .okHttpCache(cache)
                 .withCache(3, TimeUnit.MINUTES, cacheSize)
+                .heapCacheSize(512)
                 .withRoom(object : DataBaseManagerUtil {
                     override fun getDataBaseManager(dataClass: Class<*>): DataBaseManager? {
                         TODO("not implemented") //To change body of created functions use File | Settings | File Templates.
@@ -111,6 +112,12 @@ class DataServiceConfigTest {
         assertThat(mDataServiceConfig.cacheSize, `is`(equalTo(cacheSize)))
     }
 
+    @Test
+    @Throws(Exception::class)
+    fun getHeapCacheSize() {
+        assertThat(mDataServiceConfig.heapCacheSize, `is`(equalTo(512L)))
+    }
+
     @Test
     @Throws(Exception::class)
     fun getCacheAmount() {
@@ -3,26 +3,34 @@ package com.zeyad.usecases.api
 import android.support.test.rule.BuildConfig
 import com.zeyad.usecases.TestModel
 import com.zeyad.usecases.anyObject
+import com.zeyad.usecases.exceptions.NetworkConnectionException
+import com.zeyad.usecases.exceptions.WriteQueuedException
+import com.zeyad.usecases.outbox.Outbox
 import com.zeyad.usecases.requests.FileIORequest
 import com.zeyad.usecases.requests.GetRequest
 import com.zeyad.usecases.requests.PostRequest
 import com.zeyad.usecases.stores.*
 import io.reactivex.Flowable
+import io.reactivex.Maybe
 import io.reactivex.Scheduler
 import io.reactivex.Single
 import io.reactivex.android.schedulers.AndroidSchedulers
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.schedulers.TestScheduler
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.Matchers.*
 import org.mockito.Mockito.`when`
 import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
 import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
 import java.io.File
 import java.util.*
+import java.util.concurrent.TimeUnit
 
 /**
  * @author by ZIaDo on 5/9/17.
@@ -72,7 +80,9 @@ class DataServiceTest {
                         anyString(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java)))
                 .thenReturn(Flowable.just(mutableListOf()))
 
         dataService.getList<TestModel>(getRequest)
@@ -82,7 +92,9 @@ class DataServiceTest {
                         anyString(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java))
     }
 
     @Test
@@ -96,7 +108,9 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java)))
                 .thenReturn(flowable)
 
         dataService.getObject<TestModel>(getRequest)
@@ -108,7 +122,24 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java))
+    }
+
+    @Test
+    fun streamList() {
+        `when`(dataStoreFactory
+                .cloud(anyObject())
+                .dynamicStreamList<Any>(anyString(), anyString(), anyObject(), anyBoolean(),
+                        anyBoolean(), anyLong(), anyMapOf(String::class.java, String::class.java)))
+                .thenReturn(Flowable.just(Any()))
+
+        dataService.streamList<Any>(getRequest)
+
+        verify<DataStore>(dataStoreFactory.cloud(anyObject()), times(1))
+                .dynamicStreamList<Any>(anyString(), anyString(), anyObject(), anyBoolean(),
+                        anyBoolean(), anyLong(), anyMapOf(String::class.java, String::class.java))
     }
 
     @Test
@@ -116,22 +147,26 @@ class DataServiceTest {
     fun getListOffLineFirst() {
         `when`(dataStoreFactory
                 .cloud(Any::class.java)
-                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean()))
+                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean(), anyLong(),
+                        anyMapOf(String::class.java, String::class.java)))
                 .thenReturn(Flowable.just(listOf()))
         `when`(dataStoreFactory
                 .disk(Any::class.java)
-                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean()))
+                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean(), anyLong(),
+                        anyMapOf(String::class.java, String::class.java)))
                 .thenReturn(Flowable.just(listOf()))
         `when`(dataStoreFactory
-                .memory()?.getAllItems(anyObject<Class<Any>>()))
-                .thenReturn(Single.just<List<Any>>(listOf(true)))
+                .memory()?.getQueryItems(anyString(), anyObject<Class<Any>>()))
+                .thenReturn(Maybe.just<List<Any>>(listOf(true)))
 
         dataService.getListOffLineFirst<Any>(getRequest)
 
         verify<DataStore>(dataStoreFactory.cloud(Any::class.java), times(1))
-                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean())
+                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean(), anyLong(),
+                        anyMapOf(String::class.java, String::class.java))
         verify<DataStore>(dataStoreFactory.disk(Any::class.java), times(1))
-                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean())
+                .dynamicGetList<Any>(anyString(), anyString(), anyObject(), anyBoolean(), anyBoolean(), anyLong(),
+                        anyMapOf(String::class.java, String::class.java))
     }
 
     @Test
@@ -144,7 +179,9 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java)))
                 .thenReturn(flowable)
         `when`(dataStoreFactory
                 .disk(Any::class.java)
@@ -154,13 +191,15 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java)))
                 .thenReturn(flowable)
 
         `when`(dataStoreFactory
                 .memory()
                 ?.getItem<Any>(anyString(), anyObject()))
-                .thenReturn(Single.just(true))
+                .thenReturn(Maybe.just(true))
 
         dataService.getObjectOffLineFirst<TestModel>(getRequest)
 
@@ -171,7 +210,9 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java))
         verify<DataStore>(dataStoreFactory.disk(Any::class.java), times(1))
                 .dynamicGetObject<Any>(
                         anyString(),
@@ -179,7 +220,9 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(),
+                        anyLong(),
+                        anyMapOf(String::class.java, String::class.java))
     }
 
     @Test
@@ -193,7 +236,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(), anyLong()))
                 .thenReturn(single)
 
         dataService.patchObject<TestModel>(postRequest)
@@ -206,7 +249,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(), anyLong())
     }
 
     @Test
@@ -221,7 +264,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(), anyLong()))
                 .thenReturn(single)
 
         dataService.postObject<TestModel>(postRequest)
@@ -234,7 +277,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(), anyLong())
     }
 
     @Test
@@ -249,7 +292,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(), anyLong()))
                 .thenReturn(single)
 
         dataService.postList<TestModel>(postRequest)
@@ -262,7 +305,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(), anyLong())
     }
 
     @Test
@@ -277,7 +320,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(), anyLong()))
                 .thenReturn(single)
 
         dataService.putObject<TestModel>(postRequest)
@@ -290,7 +333,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(), anyLong())
     }
 
     @Test
@@ -305,7 +348,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean()))
+                        anyBoolean(), anyLong()))
                 .thenReturn(single)
 
         dataService.putList<TestModel>(postRequest)
@@ -318,7 +361,7 @@ class DataServiceTest {
                         anyObject(),
                         anyObject(),
                         anyBoolean(),
-                        anyBoolean())
+                        anyBoolean(), anyLong())
     }
 
     @Test
@@ -428,6 +471,78 @@ class DataServiceTest {
                         anyObject())
     }
 
+    @Test
+    fun queuablePostObjectIsQueuedWhenTheServerCanNotBeReached() {
+        val outbox = mock(Outbox::class.java)
+        val queuable = PostRequest.Builder(TestModel::class.java, true)
+                .fullUrl("https://api.example.com/users")
+                .payLoad(TestModel(1, "one"))
+                .queuable(false, false)
+                .build()
+        `when`(dataStoreFactory
+                .dynamically(anyString(), anyObject())
+                .dynamicPostObject<Any>(anyString(), anyString(), anyObject(), anyObject(),
+                        anyObject(), anyBoolean(), anyBoolean(), anyLong()))
+                .thenReturn(Single.error(NetworkConnectionException("Could not reach server!")))
+        dataService = DataService(dataStoreFactory, null, Schedulers.trampoline(),
+                RequestCoalescer(), outbox)
+
+        dataService.postObject<Any>(queuable).test().assertError(WriteQueuedException::class.java)
+
+        verify(outbox, times(1)).enqueue(PostRequest.POST, queuable)
+    }
+
+    @Test
+    fun postObjectIsNotQueuedUnlessQueuable() {
+        val outbox = mock(Outbox::class.java)
+        `when`(dataStoreFactory
+                .dynamically(anyString(), anyObject())
+                .dynamicPostObject<Any>(anyString(), anyString(), anyObject(), anyObject(),
+                        anyObject(), anyBoolean(), anyBoolean(), anyLong()))
+                .thenReturn(Single.error(NetworkConnectionException("Could not reach server!")))
+        dataService = DataService(dataStoreFactory, null, Schedulers.trampoline(),
+                RequestCoalescer(), outbox)
+
+        dataService.postObject<Any>(postRequest).test()
+                .assertError(NetworkConnectionException::class.java)
+
+        verify(outbox, never()).enqueue(anyString(), anyObject())
+    }
+
+    @Test
+    fun batchablePostObjectsAreSentAsOneList() {
+        val scheduler = TestScheduler()
+        `when`(dataStoreFactory
+                .dynamically(anyString(), anyObject())
+                .dynamicPostList<Any>(anyString(), anyString(), anyObject(), anyObject(),
+                        anyObject(), anyBoolean(), anyBoolean(), anyLong()))
+                .thenReturn(Single.just(listOf("one", "two")))
+        dataService = DataService(dataStoreFactory, null, Schedulers.trampoline(),
+                RequestCoalescer(), null, WriteBatcher(1, TimeUnit.SECONDS, 10, scheduler))
+
+        val first = dataService.postObject<Any>(batchable(1, "one")).test()
+        val second = dataService.postObject<Any>(batchable(2, "two")).test()
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+
+        first.assertValue("one")
+        second.assertValue("two")
+        verify(dataStoreFactory.dynamically(anyString(), anyObject()), times(1))
+                .dynamicPostList<Any>(anyString(), anyString(), anyObject(), anyObject(),
+                        anyObject(), anyBoolean(), anyBoolean(), anyLong())
+        verify(dataStoreFactory.dynamically(anyString(), anyObject()), never())
+                .dynamicPostObject<Any>(anyString(), anyString(), anyObject(), anyObject(),
+                        anyObject(), anyBoolean(), anyBoolean(), anyLong())
+    }
+
+    private fun batchable(id: Int, value: String): PostRequest {
+        return PostRequest.Builder(TestModel::class.java, true)
+                .fullUrl("https://api.example.com/users")
+                .idColumnName("id", Int::class.javaPrimitiveType!!)
+                .payLoad(TestModel(id, value))
+                .batchable()
+                .build()
+    }
+
     @Test
     @Throws(Exception::class)
     fun downloadFile() {
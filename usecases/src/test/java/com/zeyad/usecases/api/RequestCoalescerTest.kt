@@ -0,0 +1,82 @@
+package com.zeyad.usecases.api
+
+import com.zeyad.usecases.TestModel
+import io.reactivex.Flowable
+import io.reactivex.processors.PublishProcessor
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.util.concurrent.atomic.AtomicInteger
+
+@RunWith(JUnit4::class)
+class RequestCoalescerTest {
+
+    private lateinit var requestCoalescer: RequestCoalescer
+    private lateinit var key: RequestCoalescer.Key
+
+    @Before
+    fun setUp() {
+        requestCoalescer = RequestCoalescer()
+        key = RequestCoalescer.Key("url", emptyMap(), TestModel::class.java, "id", null, false,
+                false, 0, false, true)
+    }
+
+    @Test
+    fun identicalRequestsShareOneUpstream() {
+        val subscriptions = AtomicInteger()
+        val processor = PublishProcessor.create<TestModel>()
+        val upstream = processor.doOnSubscribe { subscriptions.incrementAndGet() }
+
+        val first = requestCoalescer.coalesce(key, upstream).test()
+        val second = requestCoalescer.coalesce(key, upstream).test()
+        processor.onNext(TestModel(1, "one"))
+        processor.onComplete()
+
+        assertEquals(1, subscriptions.get())
+        first.assertValueCount(1).assertComplete()
+        second.assertValueCount(1).assertComplete()
+        assertEquals(0, requestCoalescer.inFlightCount())
+    }
+
+    @Test
+    fun differentRequestsAreNotShared() {
+        val subscriptions = AtomicInteger()
+        val upstream = Flowable.just(TestModel(1, "one"))
+                .doOnSubscribe { subscriptions.incrementAndGet() }
+
+        requestCoalescer.coalesce(key, upstream).test().assertValueCount(1)
+        requestCoalescer.coalesce(key.copy(url = "other"), upstream).test().assertValueCount(1)
+
+        assertEquals(2, subscriptions.get())
+    }
+
+    @Test
+    fun requestsSentOrSavedDifferentlyAreNotShared() {
+        val processor = PublishProcessor.create<TestModel>()
+
+        requestCoalescer.coalesce(key, processor).test()
+        requestCoalescer.coalesce(key.copy(headers = mapOf("Accept" to "application/x-protobuf")),
+                processor).test()
+        requestCoalescer.coalesce(key.copy(headers = mapOf("Cache-Control" to "no-cache")),
+                processor).test()
+        requestCoalescer.coalesce(key.copy(cacheTtl = 60000), processor).test()
+        requestCoalescer.coalesce(key.copy(idColumnName = "uuid"), processor).test()
+        requestCoalescer.coalesce(key.copy(fingerprint = true), processor).test()
+
+        assertEquals(6, requestCoalescer.inFlightCount())
+    }
+
+    @Test
+    fun entryIsDroppedOnError() {
+        val processor = PublishProcessor.create<TestModel>()
+
+        val observer = requestCoalescer.coalesce(key, processor).test()
+        assertEquals(1, requestCoalescer.inFlightCount())
+        processor.onError(IllegalStateException())
+
+        observer.assertError(IllegalStateException::class.java)
+        assertEquals(0, requestCoalescer.inFlightCount())
+    }
+}
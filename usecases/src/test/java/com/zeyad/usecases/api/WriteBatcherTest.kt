@@ -0,0 +1,108 @@
+package com.zeyad.usecases.api
+
+import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.requests.Payload
+import com.zeyad.usecases.requests.PostRequest
+import io.reactivex.Single
+import io.reactivex.schedulers.TestScheduler
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.util.concurrent.TimeUnit
+
+@RunWith(JUnit4::class)
+class WriteBatcherTest {
+
+    private lateinit var scheduler: TestScheduler
+    private lateinit var writeBatcher: WriteBatcher
+    private lateinit var key: WriteBatcher.Key
+    private val sent = mutableListOf<String>()
+
+    @Before
+    fun setUp() {
+        scheduler = TestScheduler()
+        writeBatcher = WriteBatcher(100, TimeUnit.MILLISECONDS, 3, scheduler)
+        key = WriteBatcher.Key(PostRequest.POST, "url", TestModel::class.java, Any::class.java,
+                "id", false, false, 0)
+        sent.clear()
+    }
+
+    @Test
+    fun writesWithinTheWindowAreSentAsOneArray() {
+        val first = writeBatcher.add<Any>(key, item(1)) { send(it, listOf("a", "b")) }.test()
+        val second = writeBatcher.add<Any>(key, item(2)) { send(it, listOf("a", "b")) }.test()
+
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS)
+        assertEquals(0, sent.size)
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("[{\"id\":1},{\"id\":2}]"), sent)
+        first.assertValue("a")
+        second.assertValue("b")
+        assertEquals(0, writeBatcher.openCount())
+    }
+
+    @Test
+    fun aFullBatchIsSentWithoutWaitingForTheWindow() {
+        for (id in 1..4) {
+            writeBatcher.add<Any>(key, item(id)) { send(it, "ok") }.test()
+        }
+        scheduler.triggerActions()
+
+        assertEquals(listOf("[{\"id\":1},{\"id\":2},{\"id\":3}]"), sent)
+        assertEquals(1, writeBatcher.openCount())
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+
+        assertEquals("[{\"id\":4}]", sent[1])
+    }
+
+    @Test
+    fun aListThatIsNotOnePerItemFailsEveryCaller() {
+        val first = writeBatcher.add<Any>(key, item(1)) { send(it, listOf("a")) }.test()
+        val second = writeBatcher.add<Any>(key, item(2)) { send(it, listOf("a")) }.test()
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+
+        first.assertError(IllegalStateException::class.java)
+        second.assertError(IllegalStateException::class.java)
+    }
+
+    @Test
+    fun aResponseThatIsNotAListIsReturnedToEveryCaller() {
+        val first = writeBatcher.add<Any>(key, item(1)) { send(it, "ok") }.test()
+        val second = writeBatcher.add<Any>(key, item(2)) { send(it, "ok") }.test()
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+
+        first.assertValue("ok")
+        second.assertValue("ok")
+    }
+
+    @Test
+    fun writesToOtherEndpointsAreNotMerged() {
+        writeBatcher.add<Any>(key, item(1)) { send(it, "ok") }.test()
+        writeBatcher.add<Any>(key.copy(method = PostRequest.PUT), item(2)) { send(it, "ok") }.test()
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+
+        assertEquals(listOf("[{\"id\":1}]", "[{\"id\":2}]"), sent.sorted())
+    }
+
+    @Test
+    fun aFailureFailsEveryCaller() {
+        val error = IllegalStateException()
+        val first = writeBatcher.add<Any>(key, item(1)) { Single.error(error) }.test()
+        val second = writeBatcher.add<Any>(key, item(2)) { Single.error(error) }.test()
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+
+        first.assertError(error)
+        second.assertError(error)
+    }
+
+    private fun item(id: Int) = Payload.fromJson("{\"id\":$id}")
+
+    private fun send(payload: Payload, response: Any): Single<Any> {
+        sent.add(String(payload.bytes(), Charsets.UTF_8))
+        return Single.just(response)
+    }
+}
@@ -0,0 +1,50 @@
+package com.zeyad.usecases.cache
+
+import com.zeyad.usecases.TestModel
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class CacheKeyTest {
+
+    @Test
+    fun numericIdsAreEqualWhateverTheirType() {
+        val key = CacheKey.of(TestModel::class.java, 1L)
+
+        assertEquals(key, CacheKey.of(TestModel::class.java, "1"))
+        assertEquals(key, CacheKey.of(TestModel::class.java, 1 as Any))
+        assertEquals(key.hashCode(), CacheKey.of(TestModel::class.java, "1").hashCode())
+    }
+
+    @Test
+    fun nonCanonicalNumbersKeepTheirIdentity() {
+        assertNotEquals(CacheKey.of(TestModel::class.java, 1L), CacheKey.of(TestModel::class.java, "01"))
+        assertNotEquals(CacheKey.of(TestModel::class.java, 0L), CacheKey.of(TestModel::class.java, "-0"))
+        assertEquals("9223372036854775808",
+                CacheKey.of(TestModel::class.java, "9223372036854775808").id)
+        assertEquals(Long.MIN_VALUE.toString(),
+                CacheKey.of(TestModel::class.java, Long.MIN_VALUE.toString()).id)
+    }
+
+    @Test
+    fun classesWithTheSameSimpleNameDoNotCollide() {
+        val key = CacheKey.of(TestModel::class.java, "1")
+        val other = CacheKey.of(Nested.TestModel::class.java, "1")
+
+        assertNotEquals(key, other)
+        assertNotEquals(key.storoKey(), other.storoKey())
+    }
+
+    @Test
+    fun classTokensAreInterned() {
+        assertSame(ClassToken.of(TestModel::class.java), ClassToken.of(TestModel::class.java))
+    }
+
+    private class Nested {
+        class TestModel
+    }
+}
@@ -0,0 +1,49 @@
+package com.zeyad.usecases.cache
+
+import com.google.gson.FieldNamingPolicy
+import com.google.gson.GsonBuilder
+import com.google.gson.annotations.SerializedName
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.serialization.GsonSerializer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class IdReaderTest {
+
+    @Test
+    fun readsTheIdField() {
+        assertEquals(1, IdReader.read(TestModel(1, "one"), "id"))
+    }
+
+    @Test
+    fun readsTheFieldSerializedAsTheIdColumn() {
+        assertEquals("abc", IdReader.read(Renamed("abc"), "user_id"))
+    }
+
+    @Test
+    fun unknownColumnReadsNull() {
+        assertNull(IdReader.read(TestModel(1, "one"), "missing"))
+    }
+
+    @Test
+    fun readsTheFieldNamedByTheNamingPolicy() {
+        val serializer = Config.serializer
+        Config.serializer = GsonSerializer(GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create())
+        try {
+            assertEquals("abc", IdReader.read(SnakeCased("abc"), "user_id"))
+        } finally {
+            Config.serializer = serializer
+        }
+    }
+
+    private class Renamed(@SerializedName("user_id") val userId: String)
+
+    private class SnakeCased(val userId: String)
+}
@@ -0,0 +1,101 @@
+package com.zeyad.usecases.cache
+
+import com.zeyad.usecases.TestModel
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+@RunWith(JUnit4::class)
+class KeyIndexTest {
+    private lateinit var keyIndex: KeyIndex
+
+    @Before
+    fun setUp() {
+        keyIndex = KeyIndex()
+    }
+
+    @Test
+    fun addAndRemove() {
+        keyIndex.add(CacheKey.of(TestModel::class.java, "1"))
+        keyIndex.add(CacheKey.of(TestModel::class.java, "2"))
+        keyIndex.remove(CacheKey.of(TestModel::class.java, "1"))
+
+        assertFalse(keyIndex.contains(CacheKey.of(TestModel::class.java, "1")))
+        assertTrue(keyIndex.contains(CacheKey.of(TestModel::class.java, "2")))
+        assertEquals(listOf(CacheKey.of(TestModel::class.java, 2L)),
+                keyIndex.snapshot(TestModel::class.java))
+    }
+
+    @Test
+    fun snapshotIsNullForUnknownClass() {
+        assertNull(keyIndex.snapshot(TestModel::class.java))
+    }
+
+    @Test
+    fun snapshotIsNotAffectedByLaterWrites() {
+        keyIndex.add(CacheKey.of(TestModel::class.java, "1"))
+        val snapshot = keyIndex.snapshot(TestModel::class.java)
+        keyIndex.add(CacheKey.of(TestModel::class.java, "2"))
+
+        assertEquals(listOf(CacheKey.of(TestModel::class.java, 1L)), snapshot)
+    }
+
+    @Test
+    fun invalidatedClassHasNoSnapshotUntilCleared() {
+        keyIndex.add(CacheKey.of(TestModel::class.java, "1"))
+        keyIndex.invalidate(CacheKey.of(TestModel::class.java, "1"))
+        keyIndex.add(CacheKey.of(TestModel::class.java, "2"))
+
+        assertNull(keyIndex.snapshot(TestModel::class.java))
+
+        keyIndex.clear()
+        keyIndex.add(CacheKey.of(TestModel::class.java, "2"))
+
+        assertEquals(listOf(CacheKey.of(TestModel::class.java, 2L)),
+                keyIndex.snapshot(TestModel::class.java))
+    }
+
+    @Test
+    fun revalidatedClassIndexesItsKeysAgain() {
+        keyIndex.invalidate(CacheKey.of(TestModel::class.java, "1"))
+        keyIndex.revalidate(TestModel::class.java)
+        keyIndex.add(CacheKey.of(TestModel::class.java, "2"))
+
+        assertEquals(listOf(CacheKey.of(TestModel::class.java, 2L)),
+                keyIndex.snapshot(TestModel::class.java))
+    }
+
+    @Test
+    fun concurrentWritersKeepEveryId() {
+        val threads = 8
+        val idsPerThread = 1000
+        val executor = Executors.newFixedThreadPool(threads)
+        val start = CountDownLatch(1)
+        val done = CountDownLatch(threads)
+        for (thread in 0 until threads) {
+            executor.execute {
+                start.await()
+                for (i in 0 until idsPerThread) {
+                    keyIndex.add(CacheKey.of(TestModel::class.java, "$thread-$i"))
+                    keyIndex.add(CacheKey.of(TestModel::class.java, "$thread-$i-removed"))
+                    keyIndex.remove(CacheKey.of(TestModel::class.java, "$thread-$i-removed"))
+                    keyIndex.snapshot(TestModel::class.java)
+                }
+                done.countDown()
+            }
+        }
+        start.countDown()
+
+        assertTrue(done.await(10, TimeUnit.SECONDS))
+        executor.shutdown()
+        assertEquals(threads * idsPerThread, keyIndex.size(TestModel::class.java))
+    }
+}
@@ -0,0 +1,113 @@
+package com.zeyad.usecases.cache
+
+import com.zeyad.usecases.TestModel
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class ObjectCacheTest {
+    private lateinit var objectCache: ObjectCache
+
+    @Before
+    fun setUp() {
+        objectCache = ObjectCache(2)
+    }
+
+    @Test
+    fun getReturnsSameReference() {
+        val model = TestModel(1, "one")
+        objectCache.put(CacheKey.of(TestModel::class.java, "1"), model, ObjectCache.NO_EXPIRY)
+
+        assertSame(model, objectCache.get(CacheKey.of(TestModel::class.java, "1")))
+    }
+
+    @Test
+    fun getReturnsNullWhenExpired() {
+        val key = CacheKey.of(TestModel::class.java, "1")
+        objectCache.put(key, TestModel(1, "one"), System.currentTimeMillis() - 1)
+
+        assertNull(objectCache.get(key))
+        assertEquals(0, objectCache.size())
+    }
+
+    @Test
+    fun getKeepsAnExpiredEntryWithinTheGracePeriodAskedFor() {
+        val key = CacheKey.of(TestModel::class.java, "1")
+        val model = TestModel(1, "one")
+        objectCache.put(key, model, System.currentTimeMillis() + 60000)
+        objectCache.getStale(key, 60000)
+        objectCache.put(key, model, System.currentTimeMillis() - 10)
+
+        assertNull(objectCache.get(key))
+        assertSame(model, objectCache.getStale(key, 60000))
+    }
+
+    @Test
+    fun putEvictsLessFrequentlyUsed() {
+        val first = CacheKey.of(TestModel::class.java, "1")
+        val second = CacheKey.of(TestModel::class.java, "2")
+        val third = CacheKey.of(TestModel::class.java, "3")
+        objectCache.put(first, TestModel(1, "one"), ObjectCache.NO_EXPIRY)
+        objectCache.put(second, TestModel(2, "two"), ObjectCache.NO_EXPIRY)
+        objectCache.get(first)
+        objectCache.put(third, TestModel(3, "three"), ObjectCache.NO_EXPIRY)
+
+        assertEquals(2, objectCache.size())
+        assertNull(objectCache.get(second))
+    }
+
+    @Test
+    fun scanDoesNotEvictHotEntries() {
+        val scanResistantCache = ObjectCache(100)
+        for (id in 1..10) {
+            scanResistantCache.put(CacheKey.of(TestModel::class.java, id.toString()),
+                    TestModel(id, "hot"), ObjectCache.NO_EXPIRY)
+        }
+        for (i in 0 until 5) {
+            for (id in 1..10) {
+                scanResistantCache.get(CacheKey.of(TestModel::class.java, id.toString()))
+            }
+        }
+        for (id in 11..1010) {
+            scanResistantCache.put(CacheKey.of(TestModel::class.java, id.toString()),
+                    TestModel(id, "scan"), ObjectCache.NO_EXPIRY)
+        }
+
+        for (id in 1..10) {
+            assertNotNull(scanResistantCache.get(CacheKey.of(TestModel::class.java, id.toString())))
+        }
+        assertTrue(scanResistantCache.size() <= 100)
+    }
+
+    @Test
+    fun putBoundsTotalWeight() {
+        val weighedCache = ObjectCache(10, object : Weigher {
+            override fun weigh(key: CacheKey, value: Any): Int = 5
+        })
+        for (id in 1..3) {
+            weighedCache.put(CacheKey.of(TestModel::class.java, id.toString()),
+                    TestModel(id, "heavy"), ObjectCache.NO_EXPIRY)
+        }
+
+        assertTrue(weighedCache.size() * 5 <= 10)
+    }
+
+    @Test
+    fun evictionListenerIsNotified() {
+        val evicted = mutableListOf<CacheKey>()
+        objectCache.evictionListener = { key, _ -> evicted.add(key) }
+        for (id in 1..3) {
+            objectCache.put(CacheKey.of(TestModel::class.java, id.toString()),
+                    TestModel(id, "value"), ObjectCache.NO_EXPIRY)
+        }
+
+        assertEquals(1, evicted.size)
+    }
+}
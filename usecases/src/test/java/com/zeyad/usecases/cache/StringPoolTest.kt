@@ -0,0 +1,54 @@
+package com.zeyad.usecases.cache
+
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class StringPoolTest {
+
+    @Test
+    fun equalStringsShareTheFirstInstance() {
+        val pool = StringPool()
+        val first = String("kotlin".toCharArray())
+        val second = String("kotlin".toCharArray())
+
+        assertSame(first, pool.intern(first))
+        assertSame(first, pool.intern(second))
+    }
+
+    @Test
+    fun internIfShortLeavesLongStringsAlone() {
+        val pool = StringPool(maxLength = 3)
+        val long = String("four".toCharArray())
+        pool.intern(long)
+        val other = String("four".toCharArray())
+
+        assertSame(other, pool.internIfShort(other))
+        assertSame(long, pool.intern(other))
+    }
+
+    @Test
+    fun segmentsAreClearedWhenFull() {
+        val pool = StringPool(maxSize = 16)
+        val first = String("a".toCharArray())
+        pool.intern(first)
+        for (i in 0 until 10000) {
+            pool.intern("value $i")
+        }
+
+        val again = String("a".toCharArray())
+        assertNotSame(first, pool.intern(again))
+    }
+
+    @Test
+    fun shortStringsAreSpreadOverTheSegments() {
+        val pool = StringPool(maxSize = 16)
+        val letters = ('a'..'p').map { String(charArrayOf(it)) }
+        letters.forEach { pool.intern(it) }
+
+        letters.forEach { assertSame(it, pool.intern(String(it.toCharArray()))) }
+    }
+}
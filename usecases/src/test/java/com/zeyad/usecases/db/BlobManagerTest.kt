@@ -0,0 +1,77 @@
+package com.zeyad.usecases.db
+
+import android.arch.persistence.room.EmptyResultSetException
+import android.support.test.rule.BuildConfig
+import com.zeyad.usecases.TestModel
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = [25])
+class BlobManagerTest {
+
+    private lateinit var database: BlobDatabase
+    private lateinit var blobManager: BlobManager
+
+    @Before
+    fun setUp() {
+        database = BlobDatabase(RuntimeEnvironment.application, "blob_manager_test.db")
+        blobManager = BlobManager(database)
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+        RuntimeEnvironment.application.deleteDatabase("blob_manager_test.db")
+    }
+
+    @Test
+    fun putAllJsonIsReadBackAsEntities() {
+        val jsonArray = JSONArray()
+                .put(JSONObject().put("id", 1).put("value", "one"))
+                .put(JSONObject().put("id", 2).put("value", "two"))
+
+        blobManager.putAll(jsonArray, TestModel::class.java).test().assertValue(true)
+
+        val items = blobManager.getAll(TestModel::class.java).blockingFirst()
+        assertEquals(listOf(TestModel(1, "one"), TestModel(2, "two")), items.sortedBy { it.id })
+    }
+
+    @Test
+    fun putReplacesTheEntityWithTheSameId() {
+        blobManager.put(TestModel(1, "one"), TestModel::class.java).test().assertValue(true)
+        blobManager.put(TestModel(1, "uno"), TestModel::class.java).test().assertValue(true)
+
+        blobManager.getById("id", 1L, TestModel::class.java).test()
+                .assertValue(TestModel(1, "uno"))
+        assertEquals(1, blobManager.getAll(TestModel::class.java).blockingFirst().size)
+    }
+
+    @Test
+    fun evictCollectionByIdOnlyDeletesThatType() {
+        blobManager.putAll(listOf(TestModel(1, "one"), TestModel(2, "two")), TestModel::class.java)
+                .test()
+        blobManager.put(JSONObject().put("id", 1), Any::class.java).test()
+
+        blobManager.evictCollectionById(listOf(1.0), TestModel::class.java, "id").test()
+                .assertValue(true)
+
+        assertEquals(listOf(TestModel(2, "two")),
+                blobManager.getAll(TestModel::class.java).blockingFirst())
+        assertEquals(1, blobManager.getAll(Any::class.java).blockingFirst().size)
+    }
+
+    @Test
+    fun getByIdOfAMissingEntityFails() {
+        blobManager.getById("id", 3, TestModel::class.java).test()
+                .assertError(EmptyResultSetException::class.java)
+    }
+}
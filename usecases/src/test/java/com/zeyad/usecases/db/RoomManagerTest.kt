@@ -37,6 +37,7 @@ class RoomManagerTest {
         `when`(testDao.insertItemsReplace(anyObject<TestModel>())).thenReturn(listOf(1))
         `when`(testDao.updateItemsReplace(anyObject())).thenReturn(1)
         `when`(testDao.deleteItems(anyObject<TestModel>())).thenReturn(1)
+        `when`(testDao.deleteItems(anyObject<List<TestModel>>())).thenReturn(1)
         `when`(testDao.deleteAllItems(anyObject())).thenReturn(1)
         val testDB = mock(TestDatabase::class.java)
         `when`(testDB.testDao()).thenReturn(testDao)
@@ -115,4 +116,10 @@ class RoomManagerTest {
     fun evictById() {
         assertEquals(roomManager.evictById(TestModel::class.java, "id", 1).blockingGet(), true)
     }
+
+    @Test
+    fun evictCollectionById() {
+        assertEquals(roomManager.evictCollectionById(listOf(1, 2), TestModel::class.java, "id")
+                .blockingGet(), true)
+    }
 }
@@ -0,0 +1,64 @@
+package com.zeyad.usecases.mapper
+
+import com.google.gson.internal.LinkedTreeMap
+import com.zeyad.usecases.TestModel
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+
+/**
+ * Times [DAOMapper.mapAll] on one thread and in parallel for growing lists, and prints the
+ * smallest size from which the parallel mode is faster, to pick a threshold for
+ * [com.zeyad.usecases.api.DataServiceConfig.Builder.parallelMapping].
+ *
+ * Skipped unless asked for: `./gradlew :usecases:testDebugUnitTest -Pbenchmark --tests
+ * '*DAOMapperBenchmark'`.
+ */
+class DAOMapperBenchmark {
+
+    @Test
+    fun crossover() {
+        assumeTrue(java.lang.Boolean.getBoolean("benchmark"))
+        val sequential = DAOMapper()
+        val parallel = DAOMapper(parallelThreshold = 1)
+        var crossover = -1
+        for (size in SIZES) {
+            val list = (1..size).map { item(it) }
+            val sequentialNanos = time(sequential, list)
+            val parallelNanos = time(parallel, list)
+            println(String.format("%6d items: sequential %8.3f ms, parallel %8.3f ms", size,
+                    sequentialNanos / 1e6, parallelNanos / 1e6))
+            if (crossover == -1 && parallelNanos < sequentialNanos) {
+                crossover = size
+            }
+        }
+        println(if (crossover == -1) "Parallel mapping did not pay off up to ${SIZES.last()} items"
+        else "Parallel mapping pays off from $crossover items")
+    }
+
+    private fun item(id: Int) = LinkedTreeMap<String, Any>().apply {
+        put("id", id)
+        put("value", "value $id")
+    }
+
+    /**
+     * @return the median of [RUNS] timed runs, after [WARM_UP] untimed ones.
+     */
+    private fun time(mapper: DAOMapper, list: List<*>): Long {
+        repeat(WARM_UP) {
+            mapper.mapAll<List<TestModel>>(list, TestModel::class.java).blockingGet()
+        }
+        val runs = LongArray(RUNS) {
+            val start = System.nanoTime()
+            mapper.mapAll<List<TestModel>>(list, TestModel::class.java).blockingGet()
+            System.nanoTime() - start
+        }
+        runs.sort()
+        return runs[RUNS / 2]
+    }
+
+    companion object {
+        private val SIZES = intArrayOf(100, 250, 500, 1000, 2000, 5000, 10000, 20000)
+        private const val WARM_UP = 5
+        private const val RUNS = 11
+    }
+}
@@ -2,6 +2,7 @@ package com.zeyad.usecases.mapper
 
 import com.google.gson.internal.LinkedTreeMap
 import com.zeyad.usecases.TestModel
+import io.reactivex.schedulers.Schedulers
 import junit.framework.Assert
 import org.junit.After
 import org.junit.Before
@@ -26,8 +27,11 @@ class DAOMapperTest {
 
     @Test
     fun mapTo() {
+        val model = Any()
+        Assert.assertSame(daoMapper!!.mapTo<Any>(model, Any::class.java), model)
         Assert.assertEquals(
-                daoMapper!!.mapTo<Any>(Any(), Any::class.java).javaClass, LinkedTreeMap::class.java)
+                daoMapper!!.mapTo<Any>(LinkedTreeMap<String, Any>(), TestModel::class.java).javaClass,
+                TestModel::class.java)
         Assert.assertEquals(
                 daoMapper!!.mapTo<Any>(Any(), TestModel::class.java).javaClass,
                 TestModel::class.java)
@@ -49,4 +53,15 @@ class DAOMapperTest {
                                 TestModel::class.java).javaClass,
                 ArrayList::class.java)
     }
+
+    @Test
+    fun mapAllInParallelKeepsOrder() {
+        val list = (1..100).map { LinkedTreeMap<String, Any>().apply { put("id", it) } }
+
+        val mapped = DAOMapper(null, 10, 4, Schedulers.computation())
+                .mapAll<List<TestModel>>(list, TestModel::class.java)
+                .blockingGet()
+
+        Assert.assertEquals((1..100).toList(), mapped.map { it.id })
+    }
 }
@@ -0,0 +1,79 @@
+package com.zeyad.usecases.mapper
+
+import com.zeyad.usecases.Config
+import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.serialization.ProtoBufSerializer
+import com.zeyad.usecases.serialization.SerializerTestModel
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class ResponseDecoderTest {
+    private lateinit var responseDecoder: ResponseDecoder
+
+    @Before
+    fun setUp() {
+        responseDecoder = ResponseDecoder(Config.serializer)
+    }
+
+    @After
+    fun tearDown() {
+        Config.wireFormats = emptyMap()
+    }
+
+    @Test
+    fun decode() {
+        val body = ResponseBody.create(MediaType.parse("application/json"),
+                "{\"id\":1,\"value\":\"one\"}")
+
+        val model = responseDecoder.decode(body, TestModel::class.java)
+
+        assertEquals(1, model.id)
+        assertEquals("one", model.value)
+    }
+
+    @Test
+    fun decodeList() {
+        val body = ResponseBody.create(MediaType.parse("application/json"),
+                "[{\"id\":1,\"value\":\"one\"},{\"id\":2,\"value\":\"two\"}]")
+
+        val models = responseDecoder.decodeList(body, TestModel::class.java)
+
+        assertEquals(listOf(1, 2), models.map { it.id })
+        assertEquals(TestModel::class.java, models[0].javaClass)
+    }
+
+    @Test
+    fun streamEmitsOnRequest() {
+        val body = ResponseBody.create(MediaType.parse("application/json"),
+                "[{\"id\":1,\"value\":\"one\"},{\"id\":2,\"value\":\"two\"}]")
+
+        val subscriber = responseDecoder.stream(body, TestModel::class.java).test(1)
+
+        subscriber.assertValueCount(1).assertNotComplete()
+        subscriber.requestMore(2)
+        subscriber.assertValueCount(2).assertComplete()
+        assertEquals(listOf(1, 2), subscriber.values().map { it.id })
+    }
+
+    @Test
+    fun decodeReadsTheWireFormatOfTheContentType() {
+        val protoBuf = ProtoBufSerializer()
+        Config.wireFormats = mapOf(ProtoBufSerializer.MEDIA_TYPE to protoBuf)
+        val buffer = Buffer()
+        protoBuf.toJson(SerializerTestModel(1, "one"), SerializerTestModel::class.java, buffer)
+        val body = ResponseBody.create(MediaType.parse(ProtoBufSerializer.MEDIA_TYPE),
+                buffer.readByteArray())
+
+        val model = responseDecoder.decode(body, SerializerTestModel::class.java)
+
+        assertEquals(SerializerTestModel(1, "one"), model)
+    }
+}
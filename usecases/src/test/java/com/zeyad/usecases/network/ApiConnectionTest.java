@@ -18,6 +18,7 @@ import java.util.Map;
 import io.reactivex.Flowable;
 import io.reactivex.Single;
 import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
 import okhttp3.logging.HttpLoggingInterceptor;
 
@@ -37,40 +38,38 @@ public class ApiConnectionTest {
     private final Map<String, RequestBody> mPartMap = Mockito.mock(Map.class);
     private final List<MultipartBody.Part> mMultipartBodyParts = Collections.singletonList(MultipartBody.Part.create(mMockedRequestBody));
     private ApiConnection mApiConnection;
-    private RestApi mRestApiWithCache;
-    private RestApi mRestApiWithoutCache;
+    private RestApi mRestApi;
 
     @Before
     public void setUp() {
-        mRestApiWithCache = mock(RestApi.class);
-        mRestApiWithoutCache = mock(RestApi.class);
+        mRestApi = mock(RestApi.class);
 
-        when(mRestApiWithoutCache.dynamicGetList(mValidUrl))
+        when(mRestApi.dynamicGetList(mValidUrl))
                 .thenReturn(Flowable.just(Collections.singletonList(new TestModel())));
 
-        when(mRestApiWithoutCache.dynamicGetList(mValidUrl, true))
+        when(mRestApi.dynamicGetList(mValidUrl, true))
                 .thenReturn(Flowable.just(Collections.singletonList(new TestModel())));
-        when(mRestApiWithoutCache.dynamicGetList(mValidUrl, false))
+        when(mRestApi.dynamicGetList(mValidUrl, false))
                 .thenReturn(Flowable.just(Collections.singletonList(new TestModel())));
 
-        when(mRestApiWithoutCache.dynamicGetObject(mValidUrl))
+        when(mRestApi.dynamicGetObject(mValidUrl))
                 .thenReturn(Flowable.just(Collections.singletonList(new TestModel())));
 
-        when(mRestApiWithoutCache.dynamicGetObject(mValidUrl, true))
+        when(mRestApi.dynamicGetObject(mValidUrl, true))
                 .thenReturn(Flowable.just(Collections.singletonList(new TestModel())));
-        when(mRestApiWithoutCache.dynamicGetObject(mValidUrl, false))
+        when(mRestApi.dynamicGetObject(mValidUrl, false))
                 .thenReturn(Flowable.just(Collections.singletonList(new TestModel())));
 
-        when(mRestApiWithoutCache.dynamicPost(mValidUrl, mMockedRequestBody))
+        when(mRestApi.dynamicPost(mValidUrl, mMockedRequestBody))
                 .thenReturn(Single.just(Collections.singletonList(new TestModel())));
-        when(mRestApiWithoutCache.dynamicPut(mValidUrl, mMockedRequestBody))
+        when(mRestApi.dynamicPut(mValidUrl, mMockedRequestBody))
                 .thenReturn(Single.just(Collections.singletonList(new TestModel())));
-        when(mRestApiWithoutCache.dynamicDelete(mValidUrl, mMockedRequestBody))
+        when(mRestApi.dynamicDelete(mValidUrl, mMockedRequestBody))
                 .thenReturn(Single.just(Collections.singletonList(new TestModel())));
-        when(mRestApiWithoutCache.dynamicUpload(mValidUrl, mPartMap, mMultipartBodyParts))
+        when(mRestApi.dynamicUpload(mValidUrl, mPartMap, mMultipartBodyParts))
                 .thenReturn(Single.just(Collections.singletonList(new TestModel())));
 
-        mApiConnection = getApiImplementation(mRestApiWithoutCache, mRestApiWithCache);
+        mApiConnection = getApiImplementation(mRestApi);
     }
 
     @NonNull
@@ -80,12 +79,15 @@ public class ApiConnectionTest {
 
     @Test
     public void testSetupDoneSuccessfully() {
-        assertThat(getCurrentSetRestApiWithCache(mApiConnection), is(notNullValue()));
-        assertThat(getCurrentSetRestApiWithoutCache(mApiConnection), is(notNullValue()));
-        assertThat(mRestApiWithCache, is(notNullValue()));
-        assertThat(mRestApiWithoutCache, is(notNullValue()));
-        assertThat(getCurrentSetRestApiWithCache(mApiConnection), is(equalTo(mRestApiWithCache)));
-        assertThat(getCurrentSetRestApiWithoutCache(mApiConnection), is(equalTo(mRestApiWithoutCache)));
+        assertThat(getCurrentSetRestApi(mApiConnection), is(notNullValue()));
+        assertThat(mRestApi, is(notNullValue()));
+        assertThat(getCurrentSetRestApi(mApiConnection), is(equalTo(mRestApi)));
+    }
+
+    @Test
+    public void testInitDefersBuildingTheClient() {
+        assertThat(ApiConnection.Companion.init(new OkHttpClient.Builder(), null).isInitialized(),
+                is(false));
     }
 
     @Test
@@ -99,80 +101,76 @@ public class ApiConnectionTest {
     @Test
     public void testDynamicDownload() {
         mApiConnection.dynamicDownload(mValidUrl);
-        Mockito.verify(mRestApiWithoutCache).dynamicDownload(eq(mValidUrl));
+        Mockito.verify(mRestApi).dynamicDownload(eq(mValidUrl));
     }
 
     @Test
     public void testDynamicGetObject_ifCorrectMethodOfCacheRestApiIsCalled_whenToCacheIsTrue() {
         mApiConnection.dynamicGetObject(mValidUrl, true);
-        Mockito.verify(mRestApiWithoutCache).dynamicGetObject(eq(mValidUrl));
+        Mockito.verify(mRestApi).dynamicGetObject(eq(mValidUrl));
     }
 
     @Test
     public void testDynamicGetObject_ifCorrectMethodOfCacheRestApiIsCalled_whenToCacheIsFalse() {
         mApiConnection.dynamicGetObject(mValidUrl, false);
-        Mockito.verify(mRestApiWithoutCache).dynamicGetObject(eq(mValidUrl));
+        Mockito.verify(mRestApi).dynamicGetObject(eq(mValidUrl));
     }
 
     @Test
     public void testDynamicGetObjectWithoutCacheSupport() {
         mApiConnection.dynamicGetObject(mValidUrl);
-        Mockito.verify(mRestApiWithoutCache).dynamicGetObject(mValidUrl);
+        Mockito.verify(mRestApi).dynamicGetObject(mValidUrl);
     }
 
     @Test
     public void testDynamicGetListWithoutCacheSupport() {
         mApiConnection.dynamicGetList(mValidUrl);
-        Mockito.verify(mRestApiWithoutCache).dynamicGetList(eq(mValidUrl));
+        Mockito.verify(mRestApi).dynamicGetList(eq(mValidUrl));
     }
 
     @Test
     public void testDynamicGetListCache_ifCorrectMethodOfCacheRestApiIsCalled_whenToCacheIsTrue() {
         mApiConnection.dynamicGetList(mValidUrl, true);
-        Mockito.verify(mRestApiWithoutCache).dynamicGetList(eq(mValidUrl));
+        Mockito.verify(mRestApi).dynamicGetList(eq(mValidUrl));
     }
 
     @Test
     public void testDynamicGetListCache_ifCorrectMethodOfCacheRestApiIsCalled_whenToCacheIsFalse() {
         mApiConnection.dynamicGetList(mValidUrl, false);
-        Mockito.verify(mRestApiWithoutCache).dynamicGetList(eq(mValidUrl));
+        Mockito.verify(mRestApi).dynamicGetList(eq(mValidUrl));
     }
 
     @Test
     public void testDynamicPostObject() {
         mApiConnection.dynamicPost(mValidUrl, mMockedRequestBody);
-        Mockito.verify(mRestApiWithoutCache).dynamicPost(eq(mValidUrl), eq(mMockedRequestBody));
+        Mockito.verify(mRestApi).dynamicPost(eq(mValidUrl), eq(mMockedRequestBody));
     }
 
     @Test
     public void testDynamicPutObject() {
         mApiConnection.dynamicPut(mValidUrl, mMockedRequestBody);
-        Mockito.verify(mRestApiWithoutCache).dynamicPut(eq(mValidUrl), eq(mMockedRequestBody));
+        Mockito.verify(mRestApi).dynamicPut(eq(mValidUrl), eq(mMockedRequestBody));
     }
 
     @Test
     public void testUploadPartAndRequestBody() {
         mApiConnection.dynamicUpload(mValidUrl, mPartMap, mMultipartBodyParts);
-        Mockito.verify(mRestApiWithoutCache)
+        Mockito.verify(mRestApi)
                 .dynamicUpload(eq(mValidUrl), eq(mPartMap), eq(mMultipartBodyParts));
     }
 
     @Test
     public void testDynamicDeleteObject() {
         mApiConnection.dynamicDelete(mValidUrl, mMockedRequestBody);
-        Mockito.verify(mRestApiWithoutCache).dynamicDelete(eq(mValidUrl), eq(mMockedRequestBody));
-    }
-
-    private RestApi getCurrentSetRestApiWithoutCache(@NonNull ApiConnection apiConnection) {
-        return apiConnection.getRestApiWithoutCache();
+        Mockito.verify(mRestApi).dynamicDelete(eq(mValidUrl), eq(mMockedRequestBody));
     }
 
-    private RestApi getCurrentSetRestApiWithCache(@NonNull ApiConnection apiConnection) {
-        return apiConnection.getRestApiWithCache();
+    private RestApi getCurrentSetRestApi(@NonNull ApiConnection apiConnection) {
+        return apiConnection.getRestApi();
     }
 
     @NonNull
-    private ApiConnection getApiImplementation(RestApi restApiWithoutCache, RestApi restApiWithCache) {
-        return new ApiConnection(restApiWithoutCache, restApiWithCache);
+    private ApiConnection getApiImplementation(RestApi restApi) {
+        return new ApiConnection(restApi);
     }
 }
@@ -0,0 +1,63 @@
+package com.zeyad.usecases.network
+
+import android.content.Context
+import android.support.test.rule.BuildConfig
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = [25])
+class FingerprintStoreTest {
+
+    private lateinit var fingerprintStore: FingerprintStore
+
+    @Before
+    fun setUp() {
+        fingerprintStore = FingerprintStore(RuntimeEnvironment.application
+                .getSharedPreferences("fingerprint_store_test", Context.MODE_PRIVATE))
+        fingerprintStore.clear()
+    }
+
+    @Test
+    fun readCopiesTheBytesItHashes() {
+        val sink = Buffer()
+
+        val fingerprint = FingerprintStore.read(Buffer().writeUtf8(BODY), sink)
+
+        assertEquals(BODY, sink.readUtf8())
+        assertEquals(Buffer().writeUtf8(BODY).sha1().hex(), fingerprint)
+    }
+
+    @Test
+    fun differentBodiesHashDifferently() {
+        assertNotEquals(FingerprintStore.read(Buffer().writeUtf8(BODY), Buffer()),
+                FingerprintStore.read(Buffer().writeUtf8("[{\"id\":2}]"), Buffer()))
+    }
+
+    @Test
+    fun matchesTheFingerprintSavedForTheUrl() {
+        val fingerprint = FingerprintStore.read(Buffer().writeUtf8(BODY), Buffer())
+        fingerprintStore.save(URL, fingerprint)
+
+        assertTrue(fingerprintStore.matches(URL, fingerprint))
+        assertFalse(fingerprintStore.matches("$URL?page=2", fingerprint))
+
+        fingerprintStore.remove(URL)
+
+        assertFalse(fingerprintStore.matches(URL, fingerprint))
+    }
+
+    companion object {
+        private const val URL = "https://api.example.com/users"
+        private const val BODY = "[{\"id\":1,\"value\":\"one\"}]"
+    }
+}
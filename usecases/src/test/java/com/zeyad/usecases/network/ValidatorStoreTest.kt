@@ -0,0 +1,70 @@
+package com.zeyad.usecases.network
+
+import android.content.Context
+import android.support.test.rule.BuildConfig
+import okhttp3.Headers
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = [25])
+class ValidatorStoreTest {
+
+    private lateinit var validatorStore: ValidatorStore
+
+    @Before
+    fun setUp() {
+        validatorStore = ValidatorStore(RuntimeEnvironment.application
+                .getSharedPreferences("validator_store_test", Context.MODE_PRIVATE))
+        validatorStore.clear()
+    }
+
+    @Test
+    fun headersForAddsTheStoredValidators() {
+        validatorStore.save(URL, Headers.of(ValidatorStore.ETAG, "\"v1\"",
+                ValidatorStore.LAST_MODIFIED, LAST_MODIFIED))
+
+        val headers = validatorStore.headersFor(URL, mapOf("Accept" to "application/json"))
+
+        assertEquals(mapOf("Accept" to "application/json",
+                ValidatorStore.IF_NONE_MATCH to "\"v1\"",
+                ValidatorStore.IF_MODIFIED_SINCE to LAST_MODIFIED), headers)
+    }
+
+    @Test
+    fun headersForOnlyAddsTheValidatorsTheResponseHad() {
+        validatorStore.save(URL, Headers.of(ValidatorStore.ETAG, "W/\"v2\""))
+
+        assertEquals(mapOf(ValidatorStore.IF_NONE_MATCH to "W/\"v2\""),
+                validatorStore.headersFor(URL, emptyMap()))
+    }
+
+    @Test
+    fun aResponseWithoutValidatorsForgetsThePreviousOnes() {
+        validatorStore.save(URL, Headers.of(ValidatorStore.ETAG, "\"v1\""))
+        validatorStore.save(URL, Headers.of("Content-Type", "application/json"))
+
+        assertEquals(emptyMap<String, String>(), validatorStore.headersFor(URL, emptyMap()))
+    }
+
+    @Test
+    fun validatorsAreKeptPerUrl() {
+        validatorStore.save(URL, Headers.of(ValidatorStore.ETAG, "\"v1\""))
+        validatorStore.remove("$URL?page=2")
+
+        assertEquals(mapOf(ValidatorStore.IF_NONE_MATCH to "\"v1\""),
+                validatorStore.headersFor(URL, emptyMap()))
+        assertEquals(emptyMap<String, String>(),
+                validatorStore.headersFor("$URL?page=2", emptyMap()))
+    }
+
+    companion object {
+        private const val URL = "https://api.example.com/users"
+        private const val LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT"
+    }
+}
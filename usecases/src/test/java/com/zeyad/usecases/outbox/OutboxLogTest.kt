@@ -0,0 +1,120 @@
+package com.zeyad.usecases.outbox
+
+import android.support.test.rule.BuildConfig
+import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.requests.PostRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = [25])
+class OutboxLogTest {
+
+    private lateinit var file: File
+
+    @Before
+    fun setUp() {
+        file = File(RuntimeEnvironment.application.filesDir, "outbox_log_test")
+        file.delete()
+    }
+
+    @After
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Test
+    fun pendingWritesAreReadBackByTheNextProcess() {
+        val log = OutboxLog(file)
+        log.append(PostRequest.POST, request(1, "one"))
+        log.append(PostRequest.PUT, request(2, "two"))
+
+        val pending = OutboxLog(file).pending()
+
+        assertEquals(listOf(PostRequest.POST, PostRequest.PUT), pending.map { it.method })
+        assertEquals(listOf("1", "2"), pending.map { it.entityId })
+        assertEquals(URL, pending[0].request.fullUrl)
+        assertEquals(TestModel::class.java, pending[0].request.requestType)
+        assertEquals(TestModel(2, "two"), pending[1].request.payload.toItem(TestModel::class.java))
+        assertTrue(pending[1].request.queuable)
+        assertTrue(pending[1].request.onWifi)
+    }
+
+    @Test
+    fun acknowledgedWritesAreNotReadBack() {
+        val log = OutboxLog(file)
+        val first = log.append(PostRequest.POST, request(1, "one"))
+        log.append(PostRequest.POST, request(2, "two"))
+
+        log.acknowledge(listOf(first.sequence))
+
+        assertEquals(listOf("2"), OutboxLog(file).pending().map { it.entityId })
+    }
+
+    @Test
+    fun theFileIsDeletedOnceNothingIsPending() {
+        val log = OutboxLog(file)
+        val entry = log.append(PostRequest.POST, request(1, "one"))
+
+        log.acknowledge(listOf(entry.sequence))
+
+        assertTrue(log.isEmpty())
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun aRecordCutShortIsDroppedAndLaterAppendsAreKept() {
+        OutboxLog(file).append(PostRequest.POST, request(1, "one"))
+        FileOutputStream(file, true).use { it.write(byteArrayOf(1, 0, 0, 0)) }
+
+        val log = OutboxLog(file)
+        assertEquals(1, log.pending().size)
+        val second = log.append(PostRequest.POST, request(2, "two"))
+
+        val pending = OutboxLog(file).pending()
+        assertEquals(listOf("1", "2"), pending.map { it.entityId })
+        assertEquals(second.sequence, pending[1].sequence)
+    }
+
+    @Test
+    fun anEntryInAnUnknownFormatIsSkipped() {
+        DataOutputStream(FileOutputStream(file)).use {
+            it.writeByte(1)
+            it.writeLong(0)
+            it.writeUTF(PostRequest.POST)
+            it.writeInt(1)
+            it.writeByte(99)
+        }
+
+        val log = OutboxLog(file)
+        log.append(PostRequest.PUT, request(2, "two"))
+
+        val pending = OutboxLog(file).pending()
+        assertEquals(listOf(PostRequest.PUT), pending.map { it.method })
+        assertEquals(1L, pending[0].sequence)
+    }
+
+    private fun request(id: Int, value: String): PostRequest {
+        return PostRequest.Builder(TestModel::class.java, true)
+                .fullUrl(URL)
+                .idColumnName("id", Int::class.javaPrimitiveType!!)
+                .payLoad(TestModel(id, value))
+                .queuable(true, false)
+                .build()
+    }
+
+    companion object {
+        private const val URL = "https://api.example.com/models"
+    }
+}
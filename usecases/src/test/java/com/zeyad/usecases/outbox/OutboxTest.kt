@@ -0,0 +1,160 @@
+package com.zeyad.usecases.outbox
+
+import android.support.test.rule.BuildConfig
+import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.anyObject
+import com.zeyad.usecases.network.ApiConnection
+import com.zeyad.usecases.network.RestApi
+import com.zeyad.usecases.requests.PostRequest
+import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Matchers.anyMapOf
+import org.mockito.Matchers.anyString
+import org.mockito.Matchers.eq
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import org.robolectric.shadows.ShadowApplication
+import retrofit2.HttpException
+import retrofit2.Response
+import java.io.File
+import java.io.IOException
+
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = [25])
+class OutboxTest {
+
+    private lateinit var file: File
+    private lateinit var log: OutboxLog
+    private lateinit var restApi: RestApi
+    private lateinit var outbox: Outbox
+
+    @Before
+    fun setUp() {
+        file = File(RuntimeEnvironment.application.filesDir, "outbox_test")
+        file.delete()
+        log = OutboxLog(file)
+        restApi = mock(RestApi::class.java)
+        outbox = Outbox(log, ApiConnection(restApi), RuntimeEnvironment.application, 2, 2,
+                Schedulers.trampoline())
+        `when`(restApi.dynamicPostBody(anyString(), anyObject(),
+                anyMapOf(String::class.java, String::class.java)))
+                .thenReturn(Single.just(ResponseBody.create(null, "")))
+        `when`(restApi.dynamicPutBody(anyString(), anyObject(),
+                anyMapOf(String::class.java, String::class.java)))
+                .thenReturn(Single.just(ResponseBody.create(null, "")))
+    }
+
+    @After
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Test
+    fun aLaterPutOfTheSameItemSupersedesTheQueuedOne() {
+        outbox.enqueue(PostRequest.PUT, request(1, "one"))
+        outbox.enqueue(PostRequest.PUT, request(2, "two"))
+        outbox.enqueue(PostRequest.PUT, request(1, "uno"))
+
+        val pending = log.pending()
+
+        assertEquals(listOf("2", "1"), pending.map { it.entityId })
+        assertEquals(TestModel(1, "uno"), pending[1].request.payload.toItem(TestModel::class.java))
+    }
+
+    @Test
+    fun aPostIsNotCollapsedAcrossAnotherWriteToTheSameItem() {
+        outbox.enqueue(PostRequest.POST, request(1, "one"))
+        outbox.enqueue(PostRequest.PATCH, request(1, "uno"))
+        outbox.enqueue(PostRequest.POST, request(1, "eins"))
+
+        assertEquals(listOf(PostRequest.POST, PostRequest.PATCH, PostRequest.POST),
+                log.pending().map { it.method })
+    }
+
+    @Test
+    fun patchesAreNotCollapsed() {
+        outbox.enqueue(PostRequest.PATCH, request(1, "one"))
+        outbox.enqueue(PostRequest.PATCH, request(1, "uno"))
+
+        assertEquals(2, log.pending().size)
+    }
+
+    @Test
+    fun drainSendsEveryWriteInBatchesAndEmptiesTheLog() {
+        outbox.enqueue(PostRequest.POST, request(1, "one"))
+        outbox.enqueue(PostRequest.POST, request(2, "two"))
+        outbox.enqueue(PostRequest.PUT, request(3, "three"))
+
+        outbox.drain().test().assertComplete()
+
+        verify(restApi, times(2)).dynamicPostBody(eq(URL), anyObject(),
+                anyMapOf(String::class.java, String::class.java))
+        verify(restApi, times(1)).dynamicPutBody(eq(URL), anyObject(),
+                anyMapOf(String::class.java, String::class.java))
+        assertTrue(log.isEmpty())
+    }
+
+    @Test
+    fun aNetworkFailureKeepsTheWriteQueued() {
+        `when`(restApi.dynamicPostBody(anyString(), anyObject(),
+                anyMapOf(String::class.java, String::class.java)))
+                .thenReturn(Single.error(IOException("offline")))
+        outbox.enqueue(PostRequest.POST, request(1, "one"))
+
+        outbox.drain().test().assertError(IOException::class.java)
+
+        assertEquals(1, log.pending().size)
+    }
+
+    @Test
+    fun aWriteTheServerRejectsIsDropped() {
+        `when`(restApi.dynamicPostBody(anyString(), anyObject(),
+                anyMapOf(String::class.java, String::class.java)))
+                .thenReturn(Single.error(HttpException(Response.error<Any>(422,
+                        ResponseBody.create(MediaType.parse("application/json"), "{}")))))
+        outbox.enqueue(PostRequest.POST, request(1, "one"))
+
+        outbox.drain().test().assertComplete()
+
+        assertTrue(log.isEmpty())
+    }
+
+    @Test
+    fun closeStopsListeningForTheNetwork() {
+        outbox.enqueue(PostRequest.POST, request(1, "one"))
+        assertEquals(1, outboxReceivers())
+
+        outbox.close()
+
+        assertEquals(0, outboxReceivers())
+    }
+
+    private fun outboxReceivers(): Int = ShadowApplication.getInstance().registeredReceivers
+            .count { it.broadcastReceiver.javaClass.enclosingClass == Outbox::class.java }
+
+    private fun request(id: Int, value: String): PostRequest {
+        return PostRequest.Builder(TestModel::class.java, true)
+                .fullUrl(URL)
+                .idColumnName("id", Int::class.javaPrimitiveType!!)
+                .payLoad(TestModel(id, value))
+                .queuable(false, false)
+                .build()
+    }
+
+    companion object {
+        private const val URL = "https://api.example.com/models"
+    }
+}
@@ -9,6 +9,7 @@ import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.junit.runners.JUnit4
+import java.util.concurrent.TimeUnit
 
 @RunWith(JUnit4::class)
 class GetRequestTest {
@@ -64,5 +65,38 @@ class GetRequestTest {
     fun testGetItemId() {
         assertThat(mGetRequest!!.itemId, `is`(equalTo<Any>(ID)))
     }
-}
 
+    @Test
+    fun testGetStaleGracePeriod() {
+        val getRequest = GetRequest.Builder(DATA_CLASS, TO_PERSIST)
+                .staleWhileRevalidate(2, TimeUnit.SECONDS)
+                .build()
+        assertThat(getRequest.staleGracePeriod, `is`(equalTo(2000L)))
+    }
+
+    @Test
+    fun testGetCachePolicy() {
+        val getRequest = GetRequest.Builder(DATA_CLASS, TO_PERSIST)
+                .cache(ID_COLUMN_NAME)
+                .cachePolicy(CachePolicy.NETWORK_ONLY)
+                .cacheTtl(1, TimeUnit.MINUTES)
+                .cacheControl("max-age=60")
+                .build()
+        assertThat(getRequest.cachePolicy, `is`(equalTo(CachePolicy.NETWORK_ONLY)))
+        assertThat(getRequest.isCacheable(), `is`(equalTo(false)))
+        assertThat(getRequest.cacheTtl, `is`(equalTo(60000L)))
+        assertThat(getRequest.getHeaders(),
+                `is`(equalTo(mapOf(GetRequest.CACHE_CONTROL to "max-age=60"))))
+    }
+
+    @Test
+    fun testGetHeadersWithAccept() {
+        val getRequest = GetRequest.Builder(DATA_CLASS, TO_PERSIST)
+                .cacheControl("max-age=60")
+                .accept("application/x-protobuf")
+                .build()
+        assertThat(getRequest.getHeaders(), `is`(equalTo(mapOf(
+                GetRequest.CACHE_CONTROL to "max-age=60",
+                GetRequest.ACCEPT to "application/x-protobuf"))))
+    }
+}
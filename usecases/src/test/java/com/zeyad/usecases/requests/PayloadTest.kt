@@ -0,0 +1,75 @@
+package com.zeyad.usecases.requests
+
+import android.support.test.rule.BuildConfig
+import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.serialization.MessagePackSerializer
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(constants = BuildConfig::class, sdk = [25])
+class PayloadTest {
+
+    @After
+    fun tearDown() {
+        com.zeyad.usecases.Config.wireFormats = emptyMap()
+    }
+
+    @Test
+    fun bytesAreSerializedOnce() {
+        val payload = Payload(TestModel(1, "one"))
+
+        assertSame(payload.bytes(), payload.bytes())
+        assertEquals(1, payload.toJSONObject().getInt("id"))
+    }
+
+    @Test
+    fun toItemReusesTheSuppliedInstance() {
+        val item = TestModel(1, "one")
+
+        assertSame(item, Payload(item).toItem(TestModel::class.java))
+    }
+
+    @Test
+    fun listsAreArrays() {
+        val payload = Payload(listOf(TestModel(1, "one"), TestModel(2, "two")))
+
+        assertTrue(payload.isArray)
+        assertFalse(Payload(TestModel(1, "one")).isArray)
+        assertEquals(2, payload.toJSONArray().getJSONObject(1).getInt("id"))
+    }
+
+    @Test
+    fun fromJsonDecodesIntoTheRequestType() {
+        val payload = Payload.fromJson("[{\"id\":1,\"value\":\"one\"}]")
+
+        assertTrue(payload.isArray)
+        assertEquals("one", payload.toList(TestModel::class.java)[0].value)
+    }
+
+    @Test
+    fun requestBodyIsInTheRegisteredWireFormat() {
+        val messagePack = MessagePackSerializer()
+        com.zeyad.usecases.Config.wireFormats =
+                mapOf(MessagePackSerializer.MEDIA_TYPE to messagePack)
+        val payload = Payload(TestModel(1, "one"), MessagePackSerializer.MEDIA_TYPE,
+                MessagePackSerializer.MEDIA_TYPE)
+
+        val body = payload.toRequestBody(TestModel::class.java)
+        val buffer = Buffer()
+        body.writeTo(buffer)
+
+        assertEquals(MessagePackSerializer.MEDIA_TYPE, body.contentType().toString())
+        assertEquals(TestModel(1, "one"), messagePack.fromJson(buffer, TestModel::class.java))
+        assertEquals(mapOf(GetRequest.ACCEPT to MessagePackSerializer.MEDIA_TYPE),
+                payload.headers())
+    }
+}
@@ -0,0 +1,58 @@
+package com.zeyad.usecases.serialization
+
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+@RunWith(Parameterized::class)
+class SerializerTest(private val serializer: Serializer) {
+
+    private val one = SerializerTestModel(1, "one")
+    private val two = SerializerTestModel(2, "two")
+    private val listJson = "[{\"id\":1,\"value\":\"one\"},{\"id\":2,\"value\":\"two\"}]"
+
+    @Test
+    fun roundTrip() {
+        val json = serializer.toJson(one)
+
+        assertEquals(one, serializer.fromJson(json, SerializerTestModel::class.java))
+    }
+
+    @Test
+    fun readsLists() {
+        val items = serializer.fromJson<List<SerializerTestModel>>(listJson,
+                Serializer.listType(SerializerTestModel::class.java))
+
+        assertEquals(listOf(one, two), items)
+    }
+
+    @Test
+    fun arrayReaderReadsItemsInOrder() {
+        val reader = serializer.arrayReader(Buffer().writeUtf8(listJson),
+                SerializerTestModel::class.java)
+
+        assertEquals(one, reader.next())
+        assertEquals(two, reader.next())
+        assertFalse(reader.hasNext())
+        reader.close()
+    }
+
+    @Test
+    fun convertsWhatItDecodedIntoAny() {
+        val decoded = serializer.fromJson<Any>(serializer.toJson(one), Any::class.java)
+
+        assertEquals(one, serializer.convert(decoded, SerializerTestModel::class.java))
+    }
+
+    companion object {
+        @JvmStatic
+        @Parameterized.Parameters(name = "{0}")
+        fun serializers(): List<Array<Any>> = listOf(
+                arrayOf<Any>(GsonSerializer()),
+                arrayOf<Any>(MoshiSerializer()),
+                arrayOf<Any>(KotlinxSerializer()))
+    }
+}
@@ -0,0 +1,9 @@
+package com.zeyad.usecases.serialization
+
+import com.squareup.moshi.JsonClass
+import kotlinx.serialization.SerialId
+import kotlinx.serialization.Serializable
+
+@Serializable
+@JsonClass(generateAdapter = true)
+data class SerializerTestModel(@SerialId(1) val id: Int, @SerialId(2) val value: String)
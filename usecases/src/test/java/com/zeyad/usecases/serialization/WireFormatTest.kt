@@ -0,0 +1,58 @@
+package com.zeyad.usecases.serialization
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import org.msgpack.jackson.dataformat.MessagePackFactory
+
+@RunWith(Parameterized::class)
+class WireFormatTest(private val serializer: Serializer) {
+
+    private val one = SerializerTestModel(1, "one")
+    private val two = SerializerTestModel(2, "two")
+    private val listType = Serializer.listType(SerializerTestModel::class.java)
+
+    @Test
+    fun roundTrip() {
+        val buffer = Buffer()
+        serializer.toJson(one, SerializerTestModel::class.java, buffer)
+
+        assertEquals(one, serializer.fromJson(buffer, SerializerTestModel::class.java))
+    }
+
+    @Test
+    fun readsLists() {
+        val buffer = Buffer()
+        serializer.toJson(listOf(one, two), listType, buffer)
+
+        val items = serializer.fromJson<List<SerializerTestModel>>(buffer, listType)
+
+        assertEquals(listOf(one, two), items)
+    }
+
+    @Test
+    fun arrayReaderReadsItemsInOrder() {
+        val buffer = Buffer()
+        serializer.toJson(listOf(one, two), listType, buffer)
+        val reader = serializer.arrayReader(buffer, SerializerTestModel::class.java)
+
+        assertEquals(one, reader.next())
+        assertEquals(two, reader.next())
+        assertFalse(reader.hasNext())
+        reader.close()
+    }
+
+    companion object {
+        @JvmStatic
+        @Parameterized.Parameters(name = "{0}")
+        fun serializers(): List<Array<Any>> = listOf(
+                arrayOf<Any>(ProtoBufSerializer()),
+                arrayOf<Any>(MessagePackSerializer(
+                        ObjectMapper(MessagePackFactory()).registerModule(KotlinModule()))))
+    }
+}
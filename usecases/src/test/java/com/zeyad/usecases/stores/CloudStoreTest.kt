@@ -7,18 +7,24 @@ import android.net.NetworkInfo
 import android.os.Build
 import android.os.HandlerThread
 import android.support.test.rule.BuildConfig
-import com.zeyad.usecases.Config.gson
+import com.zeyad.usecases.Config.serializer
 import com.zeyad.usecases.TestModel
 import com.zeyad.usecases.anyObject
+import com.zeyad.usecases.cache.KeyIndex
+import com.zeyad.usecases.cache.ObjectCache
 import com.zeyad.usecases.db.DataBaseManager
 import com.zeyad.usecases.db.RoomManager
 import com.zeyad.usecases.exceptions.NetworkConnectionException
 import com.zeyad.usecases.mapper.DAOMapper
 import com.zeyad.usecases.network.ApiConnection
+import com.zeyad.usecases.network.FingerprintStore
+import com.zeyad.usecases.network.ValidatorStore
+import com.zeyad.usecases.requests.Payload
 import io.reactivex.Flowable
 import io.reactivex.Single
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.observers.TestObserver
+import io.reactivex.processors.PublishProcessor
 import io.reactivex.subscribers.TestSubscriber
 import junit.framework.Assert.assertEquals
 import okhttp3.MultipartBody
@@ -26,6 +32,7 @@ import okhttp3.RequestBody
 import okhttp3.ResponseBody
 import org.json.JSONArray
 import org.json.JSONObject
+import org.junit.After
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -36,6 +43,7 @@ import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
 import java.io.File
 import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * @author by ZIaDo on 2/14/17.
@@ -62,12 +70,14 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
         changeStateOfNetwork(mockContext, true)
         `when`(mockDataBaseManager.put(anyObject<JSONObject>(), anyObject<Class<TestModel>>()))
                 .thenReturn(Single.just(true))
+        `when`(mockDataBaseManager.put<Any>(anyObject<Any>(), anyObject<Class<Any>>()))
+                .thenReturn(Single.just(true))
         `when`(mockDataBaseManager.putAll(anyObject<JSONArray>(), anyObject<Class<TestModel>>()))
                 .thenReturn(Single.just(true))
         `when`(mockDataBaseManager.putAll<Any>(anyListOf(Any::class.java), anyObject()))
                 .thenReturn(Single.just(true))
         cloudStore = CloudStore(mockApiConnection, mockDataBaseManager, DAOMapper(),
-                MemoryStore(gson, HashMap()))
+                MemoryStore(serializer, KeyIndex()))
         val backgroundThread = HandlerThread("backgroundThread")
         backgroundThread.start()
         com.zeyad.usecases.Config.withCache = false
@@ -76,37 +86,50 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
                 .backgroundThread = AndroidSchedulers.from(backgroundThread.looper)
     }
 
+    @After
+    fun tearDown() {
+        com.zeyad.usecases.Config.validators = null
+        com.zeyad.usecases.Config.fingerprints = null
+    }
+
     @Test
     fun dynamicGetObject() {
-        `when`(mockApiConnection.dynamicGetObject<Any>(anyString(), anyBoolean()))
+        `when`(mockApiConnection.dynamicGetObject<Any>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<Any>>()))
                 .thenReturn(Flowable.just(Any()))
 
         val testSubscriber = TestSubscriber<Any>()
-        cloudStore.dynamicGetObject("", "", 0L, Any::class.java, false, false)
+        cloudStore.dynamicGetObject("", "", 0L, Any::class.java, false, false, 0L, emptyMap())
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
         testSubscriber.assertComplete()
         testSubscriber.assertValueCount(1)
 
-        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetObject<Any>(anyString(), anyBoolean())
+        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetObject<Any>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<Any>>())
         verifyDBInteractions(0, 0, 0, 0)
     }
 
     @Test
     fun dynamicGetObjectCanWillPersist() {
-        `when`(mockApiConnection.dynamicGetObject<Any>(anyString(), anyBoolean())).thenReturn(Flowable.just(Any()))
+        `when`(mockApiConnection.dynamicGetObject<Any>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<Any>>()))
+                .thenReturn(Flowable.just(Any()))
 
         val testSubscriber = TestSubscriber<Any>()
-        cloudStore.dynamicGetObject("", "", 0L, Any::class.java, true, false)
+        cloudStore.dynamicGetObject("", "", 0L, Any::class.java, true, false, 0L, emptyMap())
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
         testSubscriber.assertComplete()
         testSubscriber.assertValueCount(1)
 
-        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetObject<Any>(anyString(), anyBoolean())
-        verifyDBInteractions(0, 0, 1, 0)
+        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetObject<Any>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<Any>>())
+        verifyDBInteractions(0, 0, 0, 0)
+        verify<DataBaseManager>(mockDataBaseManager, times(1))
+                .put<Any>(anyObject<Any>(), anyObject<Class<Any>>())
     }
 
     @Test
@@ -114,33 +137,196 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
         val testRealmObjects = ArrayList<TestModel>()
         testRealmObjects.add(TestModel())
         val observable = Flowable.just<List<TestModel>>(testRealmObjects)
-        `when`(mockApiConnection.dynamicGetList<TestModel>(anyString(), anyBoolean())).thenReturn(observable)
+        `when`(mockApiConnection.dynamicGetList<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>()))
+                .thenReturn(observable)
 
         val testSubscriber = TestSubscriber<Any>()
-        cloudStore.dynamicGetList("", "", Any::class.java, false, false)
+        cloudStore.dynamicGetList("", "", Any::class.java, false, false, 0L, emptyMap())
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
         testSubscriber.assertComplete()
         testSubscriber.assertValueCount(1)
 
-        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetList<Any>(anyString(), anyBoolean())
+        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetList<Any>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<Any>>())
+        verifyDBInteractions(0, 0, 0, 0)
+    }
+
+    @Test
+    fun dynamicGetListNotModifiedIsServedFromTheQueryCache() {
+        val validators = mock(ValidatorStore::class.java)
+        com.zeyad.usecases.Config.validators = validators
+        com.zeyad.usecases.Config.withCache = true
+        val memoryStore = MemoryStore(serializer, KeyIndex(), ObjectCache(), false)
+        cloudStore = CloudStore(mockApiConnection, mockDataBaseManager, DAOMapper(), memoryStore)
+        val cached = listOf(TestModel(1, "one"))
+        memoryStore.cacheQuery("url", "id", cached, TestModel::class.java, 0)
+        `when`(mockApiConnection.dynamicGetListIfModified<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>(),
+                anyObject<ValidatorStore>(), anyObject<FingerprintStore>()))
+                .thenReturn(Flowable.empty())
+
+        val testSubscriber = TestSubscriber<List<TestModel>>()
+        cloudStore.dynamicGetList("url", "id", TestModel::class.java, true, true, 0L, emptyMap())
+                .subscribe(testSubscriber)
+
+        testSubscriber.assertNoErrors()
+        testSubscriber.assertComplete()
+        testSubscriber.assertValue(cached)
+        verify(validators, never()).remove(anyString())
+        verify(mockDataBaseManager, never()).getAll(TestModel::class.java)
+    }
+
+    @Test
+    fun dynamicGetListNotModifiedWithoutCachedQueryIsFetchedAgain() {
+        val validators = mock(ValidatorStore::class.java)
+        com.zeyad.usecases.Config.validators = validators
+        com.zeyad.usecases.Config.withCache = true
+        val memoryStore = MemoryStore(serializer, KeyIndex(), ObjectCache(), false)
+        cloudStore = CloudStore(mockApiConnection, mockDataBaseManager, DAOMapper(), memoryStore)
+        memoryStore.cacheQuery("other", "id", listOf(TestModel(2, "two")), TestModel::class.java, 0)
+        val subscriptions = AtomicInteger()
+        `when`(mockApiConnection.dynamicGetListIfModified<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>(),
+                anyObject<ValidatorStore>(), anyObject<FingerprintStore>()))
+                .thenReturn(Flowable.defer {
+                    if (subscriptions.getAndIncrement() == 0)
+                        Flowable.empty<List<TestModel>>()
+                    else
+                        Flowable.just(listOf(TestModel(1, "one")))
+                })
+
+        val testSubscriber = TestSubscriber<List<TestModel>>()
+        cloudStore.dynamicGetList("url", "id", TestModel::class.java, true, true, 0L, emptyMap())
+                .subscribe(testSubscriber)
+
+        testSubscriber.assertNoErrors()
+        testSubscriber.assertValue(listOf(TestModel(1, "one")))
+        assertEquals(2, subscriptions.get())
+        verify(validators, times(1)).remove("url")
+        verify(mockDataBaseManager, never()).getAll(TestModel::class.java)
+    }
+
+    @Test
+    fun dynamicGetListWithAnUnchangedFingerprintIsServedFromTheQueryCache() {
+        val fingerprints = mock(FingerprintStore::class.java)
+        com.zeyad.usecases.Config.fingerprints = fingerprints
+        com.zeyad.usecases.Config.withCache = true
+        val memoryStore = MemoryStore(serializer, KeyIndex(), ObjectCache(), false)
+        cloudStore = CloudStore(mockApiConnection, mockDataBaseManager, DAOMapper(), memoryStore)
+        val cached = listOf(TestModel(1, "one"))
+        memoryStore.cacheQuery("url", "id", cached, TestModel::class.java, 0)
+        `when`(mockApiConnection.dynamicGetListIfModified<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>(),
+                anyObject<ValidatorStore>(), Matchers.eq(fingerprints)))
+                .thenReturn(Flowable.empty())
+
+        val testSubscriber = TestSubscriber<List<TestModel>>()
+        cloudStore.dynamicGetList("url", "id", TestModel::class.java, true, true, 0L, emptyMap(),
+                true)
+                .subscribe(testSubscriber)
+
+        testSubscriber.assertNoErrors()
+        testSubscriber.assertValue(cached)
+        verify(fingerprints, never()).remove(anyString())
+    }
+
+    @Test
+    fun dynamicGetListWithoutFingerprintIgnoresTheFingerprints() {
+        com.zeyad.usecases.Config.fingerprints = mock(FingerprintStore::class.java)
+        `when`(mockApiConnection.dynamicGetList<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>()))
+                .thenReturn(Flowable.just(listOf(TestModel(1, "one"))))
+
+        cloudStore.dynamicGetList("url", "id", TestModel::class.java, true, false, 0L, emptyMap())
+                .test()
+                .assertValueCount(1)
+
+        verify<ApiConnection>(mockApiConnection, never()).dynamicGetListIfModified<Any>(
+                anyString(), anyBoolean(), anyMapOf(String::class.java, String::class.java),
+                anyObject<Class<Any>>(), anyObject<ValidatorStore>(),
+                anyObject<FingerprintStore>())
+    }
+
+    @Test
+    fun dynamicGetObjectNotModifiedWithoutLocalCopyIsFetchedAgain() {
+        val validators = mock(ValidatorStore::class.java)
+        com.zeyad.usecases.Config.validators = validators
+        val subscriptions = AtomicInteger()
+        `when`(mockApiConnection.dynamicGetObjectIfModified<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>(),
+                anyObject<ValidatorStore>(), anyObject<FingerprintStore>()))
+                .thenReturn(Flowable.defer {
+                    if (subscriptions.getAndIncrement() == 0)
+                        Flowable.empty<TestModel>()
+                    else
+                        Flowable.just(TestModel(1, "one"))
+                })
+        `when`(mockDataBaseManager.getById("id", 1L, TestModel::class.java))
+                .thenReturn(Flowable.empty())
+
+        val testSubscriber = TestSubscriber<TestModel>()
+        cloudStore.dynamicGetObject("url", "id", 1L, TestModel::class.java, true, false, 0L,
+                emptyMap())
+                .subscribe(testSubscriber)
+
+        testSubscriber.assertNoErrors()
+        testSubscriber.assertValue(TestModel(1, "one"))
+        assertEquals(2, subscriptions.get())
+        verify(validators, times(1)).remove("url")
+    }
+
+    @Test
+    fun dynamicStreamList() {
+        `when`(mockApiConnection.dynamicStreamList<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>()))
+                .thenReturn(Flowable.just(TestModel(), TestModel()))
+
+        val testSubscriber = TestSubscriber<Any>()
+        cloudStore.dynamicStreamList("", "", TestModel::class.java, false, false, 0L, emptyMap())
+                .subscribe(testSubscriber)
+
+        testSubscriber.assertNoErrors()
+        testSubscriber.assertComplete()
+        testSubscriber.assertValueCount(2)
         verifyDBInteractions(0, 0, 0, 0)
     }
 
+    @Test
+    fun dynamicStreamListEmitsEachItemBeforeItsChunkIsFull() {
+        val source = PublishProcessor.create<TestModel>()
+        `when`(mockApiConnection.dynamicStreamList<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>()))
+                .thenReturn(source)
+
+        val testSubscriber = cloudStore.dynamicStreamList("", "", TestModel::class.java, false,
+                false, 0L, emptyMap()).test()
+        source.onNext(TestModel(1, "one"))
+
+        testSubscriber.assertValue(TestModel(1, "one"))
+        testSubscriber.assertNotComplete()
+        source.onComplete()
+        testSubscriber.assertComplete()
+    }
+
     @Test
     fun dynamicGetListCanWillPersist() {
         val observable = Flowable.just(listOf(TestModel()))
-        `when`(mockApiConnection.dynamicGetList<TestModel>(anyString(), anyBoolean())).thenReturn(observable)
+        `when`(mockApiConnection.dynamicGetList<TestModel>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<TestModel>>()))
+                .thenReturn(observable)
 
         val testSubscriber = TestSubscriber<List<*>>()
-        cloudStore.dynamicGetList("", "", Any::class.java, true, false).subscribe(testSubscriber)
+        cloudStore.dynamicGetList("", "", Any::class.java, true, false, 0L, emptyMap()).subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
         testSubscriber.assertComplete()
         testSubscriber.assertValueCount(1)
 
-        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetList<Any>(anyString(), anyBoolean())
+        verify<ApiConnection>(mockApiConnection, times(1)).dynamicGetList<Any>(anyString(), anyBoolean(),
+                anyMapOf(String::class.java, String::class.java), anyObject<Class<Any>>())
         verifyDBInteractions(0, 1, 0, 0)
     }
 
@@ -151,7 +337,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPatchObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -170,7 +356,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPatchObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, true, true)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, true, true, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -187,7 +373,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPatchObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertErrorMessage(errorMessage)
@@ -202,7 +388,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPatchObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertError(NetworkConnectionException::class.java)
@@ -216,7 +402,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPostObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -234,7 +420,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPostObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, true, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, true, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -251,7 +437,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPostObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertErrorMessage(errorMessage)
@@ -266,7 +452,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPostObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertError(NetworkConnectionException::class.java)
@@ -281,8 +467,8 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
                 .thenReturn(observable)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPostList("", "", JSONArray(), Any::class.java, Any::class.java,
-                false, false)
+        cloudStore.dynamicPostList("", "", Payload(JSONArray()), Any::class.java, Any::class.java,
+                false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -299,8 +485,8 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
                 .thenReturn(observable)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPostList("", "", JSONArray(), Any::class.java, Any::class.java,
-                true, false)
+        cloudStore.dynamicPostList("", "", Payload(JSONArray()), Any::class.java, Any::class.java,
+                true, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -316,7 +502,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
         changeStateOfNetwork(mockContext, false)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPostList("", "", JSONArray(), Any::class.java, Any::class.java, false, false)
+        cloudStore.dynamicPostList("", "", Payload(JSONArray()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertErrorMessage(errorMessage)
@@ -330,7 +516,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
         changeStateOfNetwork(mockContext, false)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPostList("", "", JSONArray(), Any::class.java, Any::class.java, false, false)
+        cloudStore.dynamicPostList("", "", Payload(JSONArray()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertError(NetworkConnectionException::class.java)
@@ -346,7 +532,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPutObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -364,7 +550,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPutObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, true, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, true, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -381,7 +567,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPutObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertErrorMessage(errorMessage)
@@ -396,7 +582,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
 
         val testSubscriber = TestObserver<Any>()
         cloudStore.dynamicPutObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertError(NetworkConnectionException::class.java)
@@ -411,7 +597,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
                 .thenReturn(observable)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPutList("", "", JSONArray(), Any::class.java, Any::class.java, false, false)
+        cloudStore.dynamicPutList("", "", Payload(JSONArray()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -428,7 +614,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
                 .thenReturn(observable)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPutList("", "", JSONArray(), Any::class.java, Any::class.java, true, false)
+        cloudStore.dynamicPutList("", "", Payload(JSONArray()), Any::class.java, Any::class.java, true, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertNoErrors()
@@ -444,7 +630,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
         changeStateOfNetwork(mockContext, false)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPutList("", "", JSONArray(), Any::class.java, Any::class.java, false, false)
+        cloudStore.dynamicPutList("", "", Payload(JSONArray()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertErrorMessage(errorMessage)
@@ -458,7 +644,7 @@ class CloudStoreTest { // TODO: 6/5/17 add disk and cache verifications
         changeStateOfNetwork(mockContext, false)
 
         val testSubscriber = TestObserver<Any>()
-        cloudStore.dynamicPutList("", "", JSONArray(), Any::class.java, Any::class.java, false, false)
+        cloudStore.dynamicPutList("", "", Payload(JSONArray()), Any::class.java, Any::class.java, false, false, 0L)
                 .subscribe(testSubscriber)
 
         testSubscriber.assertError(NetworkConnectionException::class.java)
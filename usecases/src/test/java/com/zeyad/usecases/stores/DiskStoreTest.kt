@@ -4,6 +4,7 @@ import com.zeyad.usecases.Config
 import com.zeyad.usecases.TestModel
 import com.zeyad.usecases.anyObject
 import com.zeyad.usecases.db.DataBaseManager
+import com.zeyad.usecases.requests.Payload
 import io.reactivex.Flowable
 import io.reactivex.Single
 import io.reactivex.observers.TestObserver
@@ -29,7 +30,7 @@ class DiskStoreTest { // TODO: 6/5/17 add cache verifications
     fun setUp() {
         dbManager = mock(DataBaseManager::class.java)
         Config.withCache = false
-        mDiskStore = DiskStore(dbManager, MemoryStore(Config.gson))
+        mDiskStore = DiskStore(dbManager, MemoryStore(Config.serializer))
     }
 
     @Test
@@ -40,7 +41,7 @@ class DiskStoreTest { // TODO: 6/5/17 add cache verifications
         `when`(dbManager.getAll(anyObject<Class<TestModel>>()))
                 .thenReturn(observable)
 
-        mDiskStore.dynamicGetList("", "", Any::class.java, false, false)
+        mDiskStore.dynamicGetList("", "", Any::class.java, false, false, 0L, emptyMap())
 
         verify<DataBaseManager>(dbManager, times(1))
                 .getAll(anyObject<Class<TestModel>>())
@@ -52,7 +53,7 @@ class DiskStoreTest { // TODO: 6/5/17 add cache verifications
         `when`(dbManager.getById(anyString(), anyObject(), anyObject<Class<TestModel>>()))
                 .thenReturn(observable)
 
-        mDiskStore.dynamicGetObject("", "", 0L, TestModel::class.java, false, false)
+        mDiskStore.dynamicGetObject("", "", 0L, TestModel::class.java, false, false, 0L, emptyMap())
 
         verify<DataBaseManager>(dbManager, times(1))
                 .getById(anyString(), anyObject(), anyObject<Class<TestModel>>())
@@ -97,7 +98,8 @@ class DiskStoreTest { // TODO: 6/5/17 add cache verifications
                 .thenReturn(Single.just(true))
 
         mDiskStore.dynamicPatchObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
+                .test()
 
         verify<DataBaseManager>(dbManager, times(1))
                 .put(anyObject<JSONObject>(), anyObject<Class<TestModel>>())
@@ -109,19 +111,36 @@ class DiskStoreTest { // TODO: 6/5/17 add cache verifications
                 .thenReturn(Single.just(true))
 
         mDiskStore.dynamicPostObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
+                .test()
 
         verify<DataBaseManager>(dbManager, times(1))
                 .put(anyObject<JSONObject>(), anyObject<Class<TestModel>>())
     }
 
+    @Test
+    fun testDynamicPostObjectPutsTheSuppliedEntity() {
+        val item = TestModel(1, "one")
+        `when`(dbManager.put(item, TestModel::class.java)).thenReturn(Single.just(true))
+
+        mDiskStore.dynamicPostObject(
+                "", "", Payload(item), TestModel::class.java, Any::class.java, false, false, 0L)
+                .test()
+                .assertComplete()
+
+        verify<DataBaseManager>(dbManager, times(1)).put(item, TestModel::class.java)
+        verify<DataBaseManager>(dbManager, never())
+                .put(anyObject<JSONObject>(), anyObject<Class<TestModel>>())
+    }
+
     @Test
     fun testDynamicPutObject() {
         `when`(dbManager.put(anyObject<JSONObject>(), anyObject<Class<TestModel>>()))
                 .thenReturn(Single.just(true))
 
         mDiskStore.dynamicPutObject(
-                "", "", JSONObject(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONObject()), Any::class.java, Any::class.java, false, false, 0L)
+                .test()
 
         verify<DataBaseManager>(dbManager, times(1))
                 .put(anyObject<JSONObject>(), anyObject<Class<TestModel>>())
@@ -133,7 +152,8 @@ class DiskStoreTest { // TODO: 6/5/17 add cache verifications
                 .thenReturn(Single.just(true))
 
         mDiskStore.dynamicPostList(
-                "", "", JSONArray(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONArray()), Any::class.java, Any::class.java, false, false, 0L)
+                .test()
 
         verify<DataBaseManager>(dbManager, times(1))
                 .putAll(anyObject<JSONArray>(), anyObject<Class<TestModel>>())
@@ -145,7 +165,8 @@ class DiskStoreTest { // TODO: 6/5/17 add cache verifications
                 .thenReturn(Single.just(true))
 
         mDiskStore.dynamicPutList(
-                "", "", JSONArray(), Any::class.java, Any::class.java, false, false)
+                "", "", Payload(JSONArray()), Any::class.java, Any::class.java, false, false, 0L)
+                .test()
 
         verify<DataBaseManager>(dbManager, times(1))
                 .putAll(anyObject<JSONArray>(), anyObject<Class<TestModel>>())
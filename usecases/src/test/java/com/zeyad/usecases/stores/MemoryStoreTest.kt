@@ -3,7 +3,14 @@ package com.zeyad.usecases.stores
 import android.support.test.rule.BuildConfig
 import com.zeyad.usecases.Config
 import com.zeyad.usecases.TestModel
+import com.zeyad.usecases.cache.CacheKey
+import com.zeyad.usecases.cache.KeyIndex
+import com.zeyad.usecases.cache.ObjectCache
+import org.json.JSONArray
 import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -30,7 +37,7 @@ class MemoryStoreTest { // TODO: 6/15/17 test ids
                     .initialize()
             initialize = false
         }
-        memoryStore = MemoryStore(Config.gson, HashMap())
+        memoryStore = MemoryStore(Config.serializer, KeyIndex())
     }
 
     @Test
@@ -43,17 +50,132 @@ class MemoryStoreTest { // TODO: 6/15/17 test ids
         memoryStore!!.getItem<Any>("", TestModel::class.java)
     }
 
+    @Test
+    fun getItemCompletesEmptyOnMiss() {
+        memoryStore!!.getItem<Any>("missing", TestModel::class.java).test()
+                .assertNoErrors()
+                .assertNoValues()
+                .assertComplete()
+    }
+
     @Test
     fun cacheObject() {
         memoryStore!!.cacheObject("", JSONObject(), TestModel::class.java)
     }
 
+    @Test
+    fun getItemReturnsCachedReference() {
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), ObjectCache(), false)
+        heapOnlyStore.cacheObject("id", JSONObject("{\"id\":1,\"value\":\"one\"}"),
+                TestModel::class.java)
+
+        val first = heapOnlyStore.getItem<TestModel>("1", TestModel::class.java).blockingGet()
+        val second = heapOnlyStore.getItem<TestModel>("1", TestModel::class.java).blockingGet()
+
+        assertSame(first, second)
+    }
+
+    @Test
+    fun getStaleItemServesExpiredEntryWithinGracePeriod() {
+        val objectCache = ObjectCache()
+        val model = TestModel(1, "one")
+        objectCache.put(CacheKey.of(TestModel::class.java, "1"), model,
+                System.currentTimeMillis() - 10)
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), objectCache, false)
+
+        assertTrue(heapOnlyStore.isExpired("1", TestModel::class.java))
+        assertSame(model, heapOnlyStore.getStaleItem<TestModel>("1", TestModel::class.java, 60000)
+                .blockingGet())
+        heapOnlyStore.getItem<TestModel>("1", TestModel::class.java).test()
+                .assertNoValues()
+                .assertComplete()
+    }
+
+    @Test
+    fun getQueryItemsIsKeyedByUrl() {
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), ObjectCache(), false)
+        heapOnlyStore.cacheQuery("users?since=0", "id",
+                JSONArray("[{\"id\":2,\"value\":\"two\"},{\"id\":1,\"value\":\"one\"}]"),
+                TestModel::class.java, 0)
+        heapOnlyStore.cacheQuery("users?since=2", "id",
+                JSONArray("[{\"id\":3,\"value\":\"three\"}]"), TestModel::class.java, 0)
+
+        val firstPage = heapOnlyStore.getQueryItems("users?since=0", TestModel::class.java)
+                .blockingGet()
+
+        assertEquals(listOf(2, 1), firstPage.map { it.id })
+        heapOnlyStore.getQueryItems("users?since=4", TestModel::class.java).test()
+                .assertNoValues()
+                .assertComplete()
+    }
+
+    @Test
+    fun cacheQueryKeepsDecodedItems() {
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), ObjectCache(), false)
+        val items = listOf(TestModel(2, "two"), TestModel(1, "one"))
+        heapOnlyStore.cacheQuery("users", "id", items, TestModel::class.java, 0)
+
+        val cached = heapOnlyStore.getQueryItems("users", TestModel::class.java).blockingGet()
+
+        assertSame(items[0], cached[0])
+        assertSame(items[1], heapOnlyStore.getItem<TestModel>("1", TestModel::class.java)
+                .blockingGet())
+    }
+
+    @Test
+    fun getAllItemsMissesOnceAnItemWasEvicted() {
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), ObjectCache(4), false)
+        heapOnlyStore.cacheList("id", (1..10).map { TestModel(it, "$it") }, TestModel::class.java,
+                0)
+
+        heapOnlyStore.getAllItems(TestModel::class.java).test()
+                .assertNoValues()
+                .assertComplete()
+    }
+
+    @Test
+    fun getAllItemsHitsAgainOnceTheListIsCachedAgain() {
+        val objectCache = ObjectCache(4)
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), objectCache, false)
+        heapOnlyStore.cacheList("id", (1..10).map { TestModel(it, "$it") }, TestModel::class.java,
+                0)
+        objectCache.clear()
+
+        val items = (1..3).map { TestModel(it, "$it") }
+        heapOnlyStore.cacheList("id", items, TestModel::class.java, 0)
+
+        heapOnlyStore.getAllItems(TestModel::class.java).test()
+                .assertValue { it.toSet() == items.toSet() }
+    }
+
+    @Test
+    fun anExpiredItemOnlyDropsItselfFromTheList() {
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), ObjectCache(), false)
+        heapOnlyStore.cacheList("id", listOf(TestModel(1, "one"), TestModel(2, "two")),
+                TestModel::class.java, 60000)
+        heapOnlyStore.cacheObject("id", TestModel(3, "three"), TestModel::class.java, 1)
+        Thread.sleep(5)
+
+        heapOnlyStore.getItem<TestModel>("3", TestModel::class.java).test().assertNoValues()
+
+        heapOnlyStore.getAllItems(TestModel::class.java).test()
+                .assertValue { it.toSet() == setOf(TestModel(1, "one"), TestModel(2, "two")) }
+    }
+
+    @Test
+    fun deleteListById() {
+        val heapOnlyStore = MemoryStore(Config.serializer, KeyIndex(), ObjectCache(), false)
+        heapOnlyStore.cacheObject("id", JSONObject("{\"id\":1,\"value\":\"one\"}"),
+                TestModel::class.java)
+
+        heapOnlyStore.deleteListById(listOf("1"), TestModel::class.java).test().assertComplete()
+
+        heapOnlyStore.getItem<TestModel>("1", TestModel::class.java).test()
+                .assertNoValues()
+                .assertComplete()
+    }
+
     companion object {
         private var initialize = true
     }
-
-    //    @Test
-    //    public void deleteListById() {
-    //        memoryStore.deleteListById(Collections.singletonList("1"), TestModel.class);
-    //    }
 }